@@ -23,6 +23,7 @@ const byte DATA_TYPE_CONTROL_SPEED_BACKWARD = (byte)4;
 const byte DATA_TYPE_CONTROL_DIRECTION = (byte)5;
 const byte DATA_TYPE_INIT_RANGING = (byte)6;
 const byte DATA_TYPE_STOP_RANGING = (byte)7;
+const byte DATA_TYPE_PING = (byte)8;
 const int MAX_RANGE = 250;
 const int STRAIGHT = 90;
 
@@ -232,6 +233,11 @@ void processRemoteData(){
         // stop range detection
         stopRangeDetection();
         break;
+      case DATA_TYPE_PING:
+        // do nothing. The frame was already echoed
+        // by getRemoteData(), the remote measures the
+        // round trip time with it.
+        break;
     }   
   }
 }
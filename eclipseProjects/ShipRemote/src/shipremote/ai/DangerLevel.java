@@ -4,16 +4,19 @@ import shipremote.ai.base.IShipAIDecision;
 import shipremote.ai.base.ShipState;
 
 /**
- * A danger level. Base of the DangerLevelAI.
+ * A danger level. Base of the DangerLevelAI. Once entered, the level is kept
+ * while the distance is in the exit range of its Range and at least for the
+ * minimum dwell time, unless a more dangerous level is entered.
  * @author Andreas Gnther
  *
  */
 public abstract class DangerLevel {
   private int level = 0;
   private Range levelRange;
+  private long minDwellTime = 0;
 
   /**
-   * Constructor.
+   * Constructor. The level has no hysteresis and no dwell time.
    * @param level The level of this DangerLevel.
    * @param minRange Minimum value of the Range.
    * @param maxRange Maximum value of the Range.
@@ -23,6 +26,23 @@ public abstract class DangerLevel {
     this.levelRange = new Range(minRange, maxRange);
   }
 
+  /**
+   * Constructor.
+   * @param level The level of this DangerLevel.
+   * @param minRange Minimum value of the Range.
+   * @param maxRange Maximum value of the Range.
+   * @param hysteresis Distance by which the exit range is wider than the
+   *          Range on both sides.
+   * @param minDwellTime Minimum time in milliseconds the level is kept.
+   */
+  public DangerLevel(int level, int minRange, int maxRange, int hysteresis,
+      long minDwellTime) {
+    this.level = level;
+    this.levelRange = new Range(minRange, maxRange, minRange - hysteresis,
+        maxRange + hysteresis);
+    this.minDwellTime = minDwellTime;
+  }
+
   /**
    * Gets the level of this DangerLevel.
    * @return The level.
@@ -46,6 +66,22 @@ public abstract class DangerLevel {
   public void setLevelRange(Range levelRange) {
     this.levelRange = levelRange;
   }
+
+  /**
+   * Gets the minimum time the level is kept once it was entered.
+   * @return The minimum dwell time in milliseconds.
+   */
+  public long getMinDwellTime() {
+    return minDwellTime;
+  }
+
+  /**
+   * Sets the minimum time the level is kept once it was entered.
+   * @param minDwellTime The minimum dwell time in milliseconds.
+   */
+  public void setMinDwellTime(long minDwellTime) {
+    this.minDwellTime = minDwellTime;
+  }
   
   /**
    * Gets the IShipAIDecision for this DangerLevel.
@@ -8,18 +8,50 @@ import shipremote.ai.base.IShipAIDecision;
 import shipremote.ai.base.ShipState;
 
 /**
- * Implementation of a the danger level ai.
+ * Implementation of a the danger level ai. The danger levels are compiled
+ * into a DangerLevelDecisionTable when the AI is constructed, so a decision
+ * is an array lookup and allocates nothing. The constructor fails if the
+ * table does not give the same decisions as the scan of the danger levels.
+ * <p>
+ * The ai keeps the current DangerLevel between calls. A more dangerous level
+ * is entered at once, a less dangerous one only after the distance left the
+ * exit range of the current level and its minimum dwell time has passed, so
+ * a distance around a boundary does not send new commands on every frame.
+ * The time is the one of the ShipState. Every ai needs an instance of its
+ * own.
+ * </p>
  * @author Andreas Gnther
  *
  */
 public class DangerLevelAI implements IShipAI {
+  // the states the table is verified with besides the distance
+  private static final int[] VERIFY_DIRECTIONS = { 0, 90, 180 };
+  private static final int[] VERIFY_SPEEDS = { 0, 100 };
   private List<DangerLevel> dangerLevels = null;
+  private DangerLevelDecisionTable decisionTable = null;
+  private DangerLevel currentLevel = null;
+  private IShipAIDecision currentDecision = null;
+  private long enterTime = 0;
+  private int rawLevel = 0;
+  private final long[] transitionCounts =
+      new long[DangerLevelFactory.MAX_DANGERLEVEL + 1];
+  private long transitionCount = 0;
+  private long rawTransitionCount = 0;
+  private long heldCount = 0;
 
   /**
    * Constructor.
+   * @throws IllegalStateException If the decision table differs from the
+   *           scan of the danger levels.
    */
   public DangerLevelAI() {
     this.createDangerLevels();
+    this.decisionTable = new DangerLevelDecisionTable(this.dangerLevels);
+    final int mismatch = this.verifyDecisionTable();
+    if (mismatch >= 0) {
+      throw new IllegalStateException("Decision table differs from the "
+          + "danger levels at distance " + mismatch + ".");
+    }
   }
 
   private void createDangerLevels() {
@@ -30,14 +62,173 @@ public class DangerLevelAI implements IShipAI {
     }
   }
 
+  /**
+   * Gets the compiled danger levels.
+   * @return The DangerLevelDecisionTable.
+   */
+  public DangerLevelDecisionTable getDecisionTable() {
+    return this.decisionTable;
+  }
+
   @Override
-  public IShipAIDecision getDecision(ShipState data) {
-    for (DangerLevel dangerLevel : this.dangerLevels) {
-      if (dangerLevel.getLevelRange().isInRange(data.getObjectDistance())) {
-        return dangerLevel.getDecision(data);
-      }
+  public synchronized IShipAIDecision getDecision(ShipState data) {
+    final int distance = data.getObjectDistance();
+    final DangerLevel level;
+    final IShipAIDecision decision;
+    if (this.decisionTable.contains(distance)) {
+      level = this.decisionTable.getLevel(distance);
+      decision = this.decisionTable.getDecision(distance);
+    } else {
+      // e.g. a 16 bit value of a v2 frame
+      level = DangerLevelDecisionTable.findLevel(this.dangerLevels, distance);
+      decision = level != null ? level.getDecision(data) : DangerLevel
+          .getDefaultDecision(data);
+    }
+    final int levelNumber = getLevelNumber(level);
+    if (this.currentDecision != null && levelNumber != this.rawLevel) {
+      this.rawTransitionCount++;
+    }
+    this.rawLevel = levelNumber;
+
+    if (this.currentDecision == null) {
+      // the first decision
+      this.enterLevel(level, decision, data.getTime());
+      return decision;
+    }
+    if (level == this.currentLevel) {
+      this.currentDecision = decision;
+      return decision;
+    }
+    if (levelNumber > getLevelNumber(this.currentLevel)
+        || this.mayLeaveLevel(distance, data.getTime())) {
+      this.enterLevel(level, decision, data.getTime());
+      this.transitionCounts[levelNumber]++;
+      this.transitionCount++;
+      return decision;
+    }
+    this.heldCount++;
+    return this.currentDecision;
+  }
+
+  /**
+   * Gets the DangerLevel of the last decision.
+   * @return The DangerLevel, null if the distance was in no range.
+   */
+  public synchronized DangerLevel getCurrentLevel() {
+    return this.currentLevel;
+  }
+
+  /**
+   * Gets the number of times a DangerLevel was entered.
+   * @param level The level of the DangerLevel, 0 for a distance in no range.
+   * @return The transition count.
+   */
+  public synchronized long getTransitionCount(int level) {
+    return this.transitionCounts[level];
+  }
+
+  /**
+   * Gets the number of level changes.
+   * @return The transition count of all levels.
+   */
+  public synchronized long getTransitionCount() {
+    return this.transitionCount;
+  }
+
+  /**
+   * Gets the number of level changes without hysteresis and dwell time, i.e.
+   * the changes of the level of the distance alone.
+   * @return The raw transition count.
+   */
+  public synchronized long getRawTransitionCount() {
+    return this.rawTransitionCount;
+  }
+
+  /**
+   * Gets the number of decisions that kept the current level although the
+   * distance was in another one.
+   * @return The held count.
+   */
+  public synchronized long getHeldCount() {
+    return this.heldCount;
+  }
+
+  /**
+   * Forgets the current level and clears the counters.
+   */
+  public synchronized void reset() {
+    this.currentLevel = null;
+    this.currentDecision = null;
+    this.enterTime = 0;
+    this.rawLevel = 0;
+    for (int i = 0; i < this.transitionCounts.length; i++) {
+      this.transitionCounts[i] = 0;
+    }
+    this.transitionCount = 0;
+    this.rawTransitionCount = 0;
+    this.heldCount = 0;
+  }
+
+  /**
+   * Gets the decision by scanning the ranges of the danger levels, the
+   * reference for the decision table.
+   * @param data The ShipState as base for the decision.
+   * @return A new IShipAIDecision.
+   */
+  public IShipAIDecision getDecisionByScan(ShipState data) {
+    DangerLevel dangerLevel = DangerLevelDecisionTable.findLevel(
+        this.dangerLevels, data.getObjectDistance());
+    if (dangerLevel != null) {
+      return dangerLevel.getDecision(data);
     }
     return DangerLevel.getDefaultDecision(data);
   }
 
+  /**
+   * Compares the decision table with the scan for every distance of the
+   * table. The scan is done for several directions and speeds, so a danger
+   * level whose decision depends on more than the distance is found too.
+   * @return The first distance with a different decision, -1 if the table
+   *         is equivalent to the scan.
+   */
+  public int verifyDecisionTable() {
+    for (int i = 0; i <= DangerLevelDecisionTable.MAX_DISTANCE; i++) {
+      for (final int direction : VERIFY_DIRECTIONS) {
+        for (final int speed : VERIFY_SPEEDS) {
+          final ShipState state = new ShipState(i, direction, speed, false);
+          final ImmutableDecision expected = new ImmutableDecision(this
+              .getDecisionByScan(state));
+          if (!expected.isSameAs(this.decisionTable.getDecision(i))) {
+            return i;
+          }
+        }
+      }
+    }
+    return -1;
+  }
+
+  private void enterLevel(DangerLevel level, IShipAIDecision decision,
+      long time) {
+    this.currentLevel = level;
+    this.currentDecision = decision;
+    this.enterTime = time;
+  }
+
+  private boolean mayLeaveLevel(int distance, long time) {
+    if (this.currentLevel == null) {
+      return true;
+    }
+    if (this.currentLevel.getLevelRange().isInExitRange(distance)) {
+      return false;
+    }
+    final long elapsed = time - this.enterTime;
+    // a time running backwards, e.g. a new replay, does not hold the level
+    return elapsed < 0
+        || elapsed >= this.currentLevel.getMinDwellTime() * 1000000L;
+  }
+
+  private static int getLevelNumber(DangerLevel level) {
+    return level != null ? level.getLevel() : 0;
+  }
+
 }
@@ -0,0 +1,131 @@
+package shipremote.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import shipremote.ai.base.IShipAIDecision;
+import shipremote.ai.base.ShipState;
+
+/**
+ * The compiled form of a list of DangerLevels: the DangerLevel and the
+ * decision for every sonar distance from 0 to MAX_DISTANCE, looked up by
+ * index instead of a scan of the ranges. Equal decisions share one immutable
+ * instance. Only valid for DangerLevels whose decision depends on nothing but
+ * the distance, like the ones of the DangerLevelFactory.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class DangerLevelDecisionTable {
+
+  /**
+   * The largest distance in the table, the range of a sonar frame.
+   */
+  public static final int MAX_DISTANCE = 255;
+
+  private final DangerLevel[] levels;
+  private final IShipAIDecision[] decisions;
+  private final int decisionCount;
+
+  /**
+   * Constructor. Evaluates the DangerLevels once for every distance, in the
+   * same order as DangerLevelAI does.
+   * 
+   * @param dangerLevels
+   *          The DangerLevels to compile.
+   */
+  public DangerLevelDecisionTable(final List<DangerLevel> dangerLevels) {
+    this.levels = new DangerLevel[MAX_DISTANCE + 1];
+    this.decisions = new IShipAIDecision[MAX_DISTANCE + 1];
+    final List<ImmutableDecision> shared = new ArrayList<ImmutableDecision>();
+    for (int distance = 0; distance <= MAX_DISTANCE; distance++) {
+      final DangerLevel level = findLevel(dangerLevels, distance);
+      final ShipState state = new ShipState(distance, 90, 0, false);
+      final IShipAIDecision decision = level != null ? level
+          .getDecision(state) : DangerLevel.getDefaultDecision(state);
+      this.levels[distance] = level;
+      this.decisions[distance] = share(shared, decision);
+    }
+    this.decisionCount = shared.size();
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Checks whether a distance is in the table.
+   * 
+   * @param distance
+   *          The distance to an object.
+   * @return True from 0 to MAX_DISTANCE, else false.
+   */
+  public boolean contains(final int distance) {
+    return distance >= 0 && distance <= MAX_DISTANCE;
+  }
+
+  /**
+   * Gets the decision for a distance.
+   * 
+   * @param distance
+   *          The distance to an object, see contains().
+   * @return The shared IShipAIDecision. Must not be changed.
+   */
+  public IShipAIDecision getDecision(final int distance) {
+    return this.decisions[distance];
+  }
+
+  /**
+   * Gets the DangerLevel of a distance.
+   * 
+   * @param distance
+   *          The distance to an object, see contains().
+   * @return The DangerLevel, null if no range contains the distance.
+   */
+  public DangerLevel getLevel(final int distance) {
+    return this.levels[distance];
+  }
+
+  /**
+   * Gets the number of different decisions in the table.
+   * 
+   * @return The number of shared decisions.
+   */
+  public int getDecisionCount() {
+    return this.decisionCount;
+  }
+
+  /**
+   * Finds the first DangerLevel whose range contains a distance.
+   * 
+   * @param dangerLevels
+   *          The DangerLevels in the order of the scan.
+   * @param distance
+   *          The distance to an object.
+   * @return The DangerLevel, null if no range contains the distance.
+   */
+  public static DangerLevel findLevel(final List<DangerLevel> dangerLevels,
+      final int distance) {
+    for (final DangerLevel dangerLevel : dangerLevels) {
+      if (dangerLevel.getLevelRange().isInRange(distance)) {
+        return dangerLevel;
+      }
+    }
+    return null;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private static IShipAIDecision share(final List<ImmutableDecision> shared,
+      final IShipAIDecision decision) {
+    for (final ImmutableDecision candidate : shared) {
+      if (candidate.isSameAs(decision)) {
+        return candidate;
+      }
+    }
+    final ImmutableDecision copy = new ImmutableDecision(decision);
+    shared.add(copy);
+    return copy;
+  }
+
+}
@@ -15,6 +15,17 @@ public class DangerLevelFactory {
    */
   public static final int MAX_DANGERLEVEL = 4;
 
+  /**
+   * Distance in cm a level is kept beyond its range, so a distance around a
+   * boundary does not switch the level on every frame.
+   */
+  public static final int HYSTERESIS = 10;
+
+  /**
+   * Minimum time in milliseconds a level is kept once it was entered.
+   */
+  public static final long MIN_DWELL_TIME = 500;
+
   /**
    * Gets a DangerLevel by a level value.
    * @param level The level of danger.
@@ -36,7 +47,8 @@ public class DangerLevelFactory {
   }
 
   private static DangerLevel getDangerLevelFour() {
-    return new DangerLevel(4, 0, 100) {
+    return new DangerLevel(4, 0, 100, HYSTERESIS,
+        MIN_DWELL_TIME) {
       @Override
       public IShipAIDecision getDecision(ShipState shipState) {
         // reset the oar and set the speed to full backward.
@@ -50,7 +62,8 @@ public class DangerLevelFactory {
   }
 
   private static DangerLevel getDangerLevelThree() {
-    return new DangerLevel(3, 100, 150) {
+    return new DangerLevel(3, 100, 150, HYSTERESIS,
+        MIN_DWELL_TIME) {
       @Override
       public IShipAIDecision getDecision(ShipState shipState) {
         // steer more left and reduce the speed.
@@ -64,7 +77,8 @@ public class DangerLevelFactory {
   }
 
   private static DangerLevel getDangerLevelTwo() {
-    return new DangerLevel(2, 150, 200) {
+    return new DangerLevel(2, 150, 200, HYSTERESIS,
+        MIN_DWELL_TIME) {
       @Override
       public IShipAIDecision getDecision(ShipState shipState) {
         // steer left but leave the speed.
@@ -78,7 +92,8 @@ public class DangerLevelFactory {
   }
 
   private static DangerLevel getDangerLevelOne() {
-    return new DangerLevel(1, 200, 250) {
+    return new DangerLevel(1, 200, 250, HYSTERESIS,
+        MIN_DWELL_TIME) {
       @Override
       public IShipAIDecision getDecision(ShipState shipState) {
         // leave the speed and angle as set.
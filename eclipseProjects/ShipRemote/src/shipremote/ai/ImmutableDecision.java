@@ -0,0 +1,82 @@
+package shipremote.ai;
+
+import shipremote.ai.base.IShipAIDecision;
+
+/**
+ * An IShipAIDecision that cannot be changed, so one instance is shared by all
+ * distances of a DangerLevelDecisionTable.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+final class ImmutableDecision implements IShipAIDecision {
+
+  private final int speed;
+  private final boolean isSpeedBackward;
+  private final int direction;
+
+  /**
+   * Constructor. Copies a decision.
+   * 
+   * @param decision
+   *          The IShipAIDecision to copy.
+   */
+  ImmutableDecision(final IShipAIDecision decision) {
+    this.speed = decision.getSpeed();
+    this.isSpeedBackward = decision.isSpeedBackward();
+    this.direction = decision.getDirection();
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param speed
+   *          The speed.
+   * @param isSpeedBackward
+   *          True for backward, false for forward.
+   * @param direction
+   *          The direction of the ship.
+   */
+  ImmutableDecision(final int speed, final boolean isSpeedBackward,
+      final int direction) {
+    this.speed = speed;
+    this.isSpeedBackward = isSpeedBackward;
+    this.direction = direction;
+  }
+
+  @Override
+  public int getSpeed() {
+    return this.speed;
+  }
+
+  @Override
+  public boolean isSpeedBackward() {
+    return this.isSpeedBackward;
+  }
+
+  @Override
+  public int getDirection() {
+    return this.direction;
+  }
+
+  /**
+   * Checks whether a decision has the same values.
+   * 
+   * @param decision
+   *          The IShipAIDecision to compare.
+   * @return True if speed, speed direction and direction are equal, else
+   *         false.
+   */
+  boolean isSameAs(final IShipAIDecision decision) {
+    return decision != null && this.speed == decision.getSpeed()
+        && this.isSpeedBackward == decision.isSpeedBackward()
+        && this.direction == decision.getDirection();
+  }
+
+  @Override
+  public String toString() {
+    return "Decision(" + (this.isSpeedBackward ? "-" : "") + this.speed
+        + ", " + this.direction + ")";
+  }
+
+}
@@ -1,22 +1,39 @@
 package shipremote.ai;
 
 /**
- * Defines the range from a minimum value to a maximum value.
+ * Defines the range from a minimum value to a maximum value. A value enters
+ * the range between min and max and may leave it only outside of the exit
+ * range between exitMin and exitMax, which is at least as wide.
  * @author Andreas Gnther
  *
  */
 public class Range {
   private int min = 0;
   private int max = 0;
+  private int exitMin = 0;
+  private int exitMax = 0;
 
   /**
-   * Constructor.
+   * Constructor. The exit range is the range itself.
    * @param min Minimum of range.
    * @param max Maximum of range.
    */
   public Range(int min, int max) {
+    this(min, max, min, max);
+  }
+
+  /**
+   * Constructor.
+   * @param min Minimum of range.
+   * @param max Maximum of range.
+   * @param exitMin Minimum of the exit range, at most min.
+   * @param exitMax Maximum of the exit range, at least max.
+   */
+  public Range(int min, int max, int exitMin, int exitMax) {
     this.min = min;
     this.max = max;
+    this.exitMin = Math.min(min, exitMin);
+    this.exitMax = Math.max(max, exitMax);
   }
 
   /**
@@ -28,11 +45,12 @@ public class Range {
   }
 
   /**
-   * Sets the minimum value.
+   * Sets the minimum value. The exit range grows if it would be narrower.
    * @param min The minimum value.
    */
   public void setMin(int min) {
     this.min = min;
+    this.exitMin = Math.min(min, this.exitMin);
   }
 
   /**
@@ -44,11 +62,44 @@ public class Range {
   }
 
   /**
-   * Sets the maximum value.
+   * Sets the maximum value. The exit range grows if it would be narrower.
    * @param max The maximum value.
    */
   public void setMax(int max) {
     this.max = max;
+    this.exitMax = Math.max(max, this.exitMax);
+  }
+
+  /**
+   * Gets the minimum value of the exit range.
+   * @return The minimum value.
+   */
+  public int getExitMin() {
+    return exitMin;
+  }
+
+  /**
+   * Sets the minimum value of the exit range.
+   * @param exitMin The minimum value, at most min.
+   */
+  public void setExitMin(int exitMin) {
+    this.exitMin = Math.min(this.min, exitMin);
+  }
+
+  /**
+   * Gets the maximum value of the exit range.
+   * @return The maximum value.
+   */
+  public int getExitMax() {
+    return exitMax;
+  }
+
+  /**
+   * Sets the maximum value of the exit range.
+   * @param exitMax The maximum value, at least max.
+   */
+  public void setExitMax(int exitMax) {
+    this.exitMax = Math.max(this.max, exitMax);
   }
 
   /**
@@ -63,11 +114,23 @@ public class Range {
     return false;
   }
 
+  /**
+   * Checks whether a value that was in the range has not left it yet.
+   * @param value Value to check.
+   * @return True if the value is inside of the exit range, else false.
+   */
+  public boolean isInExitRange(int value) {
+    return value > this.exitMin && value <= this.exitMax;
+  }
+
   @Override
   public String toString() {
     StringBuilder strBuilder = new StringBuilder();
     strBuilder.append(Range.class.getSimpleName());
     strBuilder.append("(" + this.min + " - " + this.max);
+    if (this.exitMin != this.min || this.exitMax != this.max) {
+      strBuilder.append(", exit " + this.exitMin + " - " + this.exitMax);
+    }
     return strBuilder.toString();
   }
 
@@ -9,6 +9,15 @@ import shipremote.ai.base.IShipAI;
  */
 public class ShipAIFactory {
 
+  /**
+   * Name of the DangerLevelAI, the default.
+   */
+  public static final String DANGER_LEVEL_AI = "dangerlevel";
+  /**
+   * Name of the TimeToCollisionAI.
+   */
+  public static final String TIME_TO_COLLISION_AI = "ttc";
+
   /**
    * Gets a IShipAI.
    * @return A IShipAI.
@@ -16,4 +25,20 @@ public class ShipAIFactory {
   public static IShipAI getShipAI(){
     return new DangerLevelAI();
   }
+
+  /**
+   * Gets a IShipAI by its name. Every call creates a new instance, because an
+   * ai like the TimeToCollisionAI keeps state.
+   * @param name DANGER_LEVEL_AI or TIME_TO_COLLISION_AI.
+   * @return A IShipAI.
+   * @throws IllegalArgumentException If the name is unknown.
+   */
+  public static IShipAI getShipAI(final String name) {
+    if (DANGER_LEVEL_AI.equals(name)) {
+      return new DangerLevelAI();
+    } else if (TIME_TO_COLLISION_AI.equals(name)) {
+      return new TimeToCollisionAI();
+    }
+    throw new IllegalArgumentException("Unknown ai: " + name);
+  }
 }
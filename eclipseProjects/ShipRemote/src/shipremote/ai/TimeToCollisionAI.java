@@ -0,0 +1,236 @@
+package shipremote.ai;
+
+import shipremote.ai.base.IShipAI;
+import shipremote.ai.base.IShipAIDecision;
+import shipremote.ai.base.ShipState;
+
+/**
+ * An ai that decides by the predicted time to collision instead of the raw
+ * distance. The last HISTORY_SIZE distances are kept with the time of their
+ * ShipState, the closing rate is the slope of a least squares line through
+ * the ones of the last HISTORY_TIME. A fast approach is answered earlier
+ * than by the DangerLevelAI. The distance sets a floor like the
+ * DangerLevels do: the ship gets the more severe of the maneuver of the
+ * distance and the maneuver of the time to collision, so closing in never
+ * gets a milder maneuver than not closing in.
+ * <p>
+ * The ai keeps state, so every controller needs an instance of its own. A
+ * history older than MAX_SAMPLE_GAP or a time running backwards, e.g. after a
+ * replay, starts a new history.
+ * </p>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class TimeToCollisionAI implements IShipAI {
+
+  /**
+   * Maximum number of distances kept for the closing rate.
+   */
+  public static final int HISTORY_SIZE = 8;
+  /**
+   * Age in nanoseconds up to which a distance is used for the closing rate, so
+   * a slow sonar does not average over a turn of the ship.
+   */
+  public static final long HISTORY_TIME = 1000000000L;
+  /**
+   * Time to collision in seconds below which the ship goes full backward.
+   */
+  public static final double BACKWARD_TIME = 1.2;
+  /**
+   * Time to collision in seconds below which the ship slows down and steers
+   * hard left.
+   */
+  public static final double EVADE_TIME = 2.0;
+  /**
+   * Time to collision in seconds below which the ship steers left.
+   */
+  public static final double STEER_TIME = 3.0;
+  /**
+   * Distance below which the ship goes full backward whatever the closing
+   * rate is, the same as the nearest DangerLevel.
+   */
+  public static final int MIN_DISTANCE = 100;
+  /**
+   * Distance below which the ship at least slows down and steers hard left.
+   */
+  public static final int EVADE_DISTANCE = 150;
+  /**
+   * Distance below which the ship at least steers left.
+   */
+  public static final int STEER_DISTANCE = 200;
+
+  private static final long MAX_SAMPLE_GAP = 2000000000L;
+  private static final double NANOS_PER_SECOND = 1e9;
+  // closing rates below this in cm/s are noise
+  private static final double MIN_CLOSING_RATE = 5.0;
+
+  private static final ImmutableDecision BACKWARD = new ImmutableDecision(
+      100, true, 90);
+  private static final ImmutableDecision EVADE = new ImmutableDecision(60,
+      false, 45);
+  private static final ImmutableDecision STEER = new ImmutableDecision(100,
+      false, 60);
+  private static final ImmutableDecision CRUISE = new ImmutableDecision(100,
+      false, 90);
+  // ordered by severity
+  private static final int MANEUVER_CRUISE = 0;
+  private static final int MANEUVER_STEER = 1;
+  private static final int MANEUVER_EVADE = 2;
+  private static final int MANEUVER_BACKWARD = 3;
+  private static final ImmutableDecision[] MANEUVERS = { CRUISE, STEER,
+      EVADE, BACKWARD };
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final long[] times = new long[HISTORY_SIZE];
+  private final int[] distances = new int[HISTORY_SIZE];
+  private int sampleCount = 0;
+  private int nextSample = 0;
+  private double closingRate = 0;
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.ai.base.IShipAI#getDecision(shipremote.ai.base.ShipState)
+   */
+  @Override
+  public IShipAIDecision getDecision(final ShipState data) {
+    final int distance = data.getObjectDistance();
+    this.addSample(data.getTime(), distance);
+    this.closingRate = this.computeClosingRate();
+
+    final int maneuver = Math.max(getDistanceManeuver(distance), this
+        .getTimeManeuver(distance));
+    return MANEUVERS[maneuver];
+  }
+
+  /**
+   * Gets the closing rate of the last decision.
+   *
+   * @return The closing rate in cm/s, negative if the distance grows.
+   */
+  public double getClosingRate() {
+    return this.closingRate;
+  }
+
+  /**
+   * Gets the predicted time to collision for a distance with the closing rate
+   * of the last decision.
+   *
+   * @param distance
+   *          The distance in cm.
+   * @return The time in seconds, Double.POSITIVE_INFINITY if the ship is not
+   *         closing in.
+   */
+  public double getTimeToCollision(final int distance) {
+    if (this.closingRate < MIN_CLOSING_RATE) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return distance / this.closingRate;
+  }
+
+  /**
+   * Gets the number of distances in the history.
+   *
+   * @return The sample count, at most HISTORY_SIZE.
+   */
+  public int getSampleCount() {
+    return this.sampleCount;
+  }
+
+  /**
+   * Discards the history.
+   */
+  public void reset() {
+    this.sampleCount = 0;
+    this.nextSample = 0;
+    this.closingRate = 0;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private static int getDistanceManeuver(final int distance) {
+    if (distance <= MIN_DISTANCE) {
+      return MANEUVER_BACKWARD;
+    } else if (distance <= EVADE_DISTANCE) {
+      return MANEUVER_EVADE;
+    } else if (distance <= STEER_DISTANCE) {
+      return MANEUVER_STEER;
+    }
+    return MANEUVER_CRUISE;
+  }
+
+  private int getTimeManeuver(final int distance) {
+    if (this.sampleCount < 2) {
+      // no closing rate yet
+      return MANEUVER_CRUISE;
+    }
+    final double timeToCollision = this.getTimeToCollision(distance);
+    if (timeToCollision < BACKWARD_TIME) {
+      return MANEUVER_BACKWARD;
+    } else if (timeToCollision < EVADE_TIME) {
+      return MANEUVER_EVADE;
+    } else if (timeToCollision < STEER_TIME) {
+      return MANEUVER_STEER;
+    }
+    return MANEUVER_CRUISE;
+  }
+
+  private void addSample(final long time, final int distance) {
+    if (this.sampleCount > 0) {
+      final long lastTime = this.times[(this.nextSample + HISTORY_SIZE - 1)
+          % HISTORY_SIZE];
+      if (time < lastTime || time - lastTime > MAX_SAMPLE_GAP) {
+        this.reset();
+      }
+    }
+    this.times[this.nextSample] = time;
+    this.distances[this.nextSample] = distance;
+    this.nextSample = (this.nextSample + 1) % HISTORY_SIZE;
+    if (this.sampleCount < HISTORY_SIZE) {
+      this.sampleCount++;
+    }
+  }
+
+  private double computeClosingRate() {
+    if (this.sampleCount < 2) {
+      return 0;
+    }
+    // relative to the newest sample, so the nanoseconds do not lose precision
+    final long origin = this.times[(this.nextSample + HISTORY_SIZE - 1)
+        % HISTORY_SIZE];
+    int count = 0;
+    double sumT = 0;
+    double sumD = 0;
+    for (int i = 0; i < this.sampleCount; i++) {
+      if (origin - this.times[i] <= HISTORY_TIME) {
+        sumT += (this.times[i] - origin) / NANOS_PER_SECOND;
+        sumD += this.distances[i];
+        count++;
+      }
+    }
+    final double meanT = sumT / count;
+    final double meanD = sumD / count;
+    double covariance = 0;
+    double variance = 0;
+    for (int i = 0; i < this.sampleCount; i++) {
+      if (origin - this.times[i] > HISTORY_TIME) {
+        continue;
+      }
+      final double t = (this.times[i] - origin) / NANOS_PER_SECOND - meanT;
+      covariance += t * (this.distances[i] - meanD);
+      variance += t * t;
+    }
+    if (variance == 0) {
+      return 0;
+    }
+    return -covariance / variance;
+  }
+
+}
@@ -0,0 +1,99 @@
+package shipremote.ai.base;
+
+/**
+ * A reusable message that carries a decision of a ShipAIWorker back to the
+ * controller, together with the distance it was made for and its times. The
+ * controller keeps one instance and lets the worker fill it, see
+ * ShipAIWorker.receiveDecision().
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class ShipAIDecisionMessage implements IShipAIDecision {
+
+  // /////////////////////////////////
+  // fields
+  // /////////////////////////////////
+  private int speed = 0;
+  private boolean isSpeedBackward = false;
+  private int direction = 90;
+  private int objectDistance = 0;
+  private long sequence = 0;
+  private long publishTime = 0;
+  private long decisionTime = 0;
+
+  // /////////////////////////////////
+  // public properties
+  // /////////////////////////////////
+  @Override
+  public int getSpeed() {
+    return this.speed;
+  }
+
+  @Override
+  public boolean isSpeedBackward() {
+    return this.isSpeedBackward;
+  }
+
+  @Override
+  public int getDirection() {
+    return this.direction;
+  }
+
+  /**
+   * Gets the distance the decision was made for.
+   * 
+   * @return The object distance of the evaluated ShipState.
+   */
+  public int getObjectDistance() {
+    return this.objectDistance;
+  }
+
+  /**
+   * Gets the number of the evaluated ShipState. Gaps show states that were
+   * overwritten before the worker took them.
+   * 
+   * @return The sequence, starting at 1.
+   */
+  public long getSequence() {
+    return this.sequence;
+  }
+
+  /**
+   * Gets the time the evaluated ShipState was published.
+   * 
+   * @return The time in nanoseconds of the clock of the worker.
+   */
+  public long getPublishTime() {
+    return this.publishTime;
+  }
+
+  /**
+   * Gets the time the decision was made.
+   * 
+   * @return The time in nanoseconds of the clock of the worker.
+   */
+  public long getDecisionTime() {
+    return this.decisionTime;
+  }
+
+  // /////////////////////////////////
+  // package methods
+  // /////////////////////////////////
+  void set(final IShipAIDecision decision, final int objectDistance,
+      final long sequence, final long publishTime, final long decisionTime) {
+    this.speed = decision.getSpeed();
+    this.isSpeedBackward = decision.isSpeedBackward();
+    this.direction = decision.getDirection();
+    this.objectDistance = objectDistance;
+    this.sequence = sequence;
+    this.publishTime = publishTime;
+    this.decisionTime = decisionTime;
+  }
+
+  void copyFrom(final ShipAIDecisionMessage message) {
+    this.set(message, message.objectDistance, message.sequence,
+        message.publishTime, message.decisionTime);
+  }
+
+}
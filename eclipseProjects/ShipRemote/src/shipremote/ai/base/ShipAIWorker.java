@@ -0,0 +1,256 @@
+package shipremote.ai.base;
+
+import shipremote.communication.ExecutionMode;
+import shipremote.communication.IClock;
+import shipremote.communication.LatencyHistogram;
+
+/**
+ * A long-lived worker that runs an IShipAI on a thread of its own. ShipStates
+ * are published to a single slot mailbox: a state that was not taken yet is
+ * overwritten by the next one, so the worker always evaluates the freshest
+ * state and never works through a backlog. The decisions go back the same
+ * way, the listener is informed and the controller takes the latest decision
+ * into its ShipAIDecisionMessage.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class ShipAIWorker implements Runnable {
+
+  /**
+   * Message identifier. A Message with this id is send when the AI processing
+   * was finished.
+   */
+  public static final int DATA_PROCESSED_BY_AI = 0x102;
+
+  private static final long NANOS_PER_MICRO = 1000;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final IShipAI ai;
+  private final IClock clock;
+  private final ExecutionMode executionMode;
+  private final Runnable listener;
+  private final ShipAIDecisionMessage outbox = new ShipAIDecisionMessage();
+  private final LatencyHistogram evaluationHistogram = new LatencyHistogram();
+  private final LatencyHistogram stalenessHistogram = new LatencyHistogram();
+  private Thread thread = null;
+  private ShipState pendingState = null;
+  private long pendingTime = 0;
+  private long publishedCount = 0;
+  private boolean isDecisionReady = false;
+  private volatile boolean isRunning = false;
+  private volatile long overwrittenCount = 0;
+  private volatile long evaluationCount = 0;
+  private volatile long threadCount = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param ai
+   *          The IShipAI to run.
+   * @param clock
+   *          The IClock for the times of the decisions.
+   * @param executionMode
+   *          The ExecutionMode of the worker thread.
+   * @param listener
+   *          Informed on the worker thread when a decision is ready, e.g. to
+   *          post DATA_PROCESSED_BY_AI to the controller.
+   */
+  public ShipAIWorker(final IShipAI ai, final IClock clock,
+      final ExecutionMode executionMode, final Runnable listener) {
+    this.ai = ai;
+    this.clock = clock;
+    this.executionMode = executionMode;
+    this.listener = listener;
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Starts the worker thread. Does nothing if it is running.
+   */
+  public synchronized void start() {
+    if (this.isRunning) {
+      return;
+    }
+    this.isRunning = true;
+    this.thread = this.executionMode.newThread(this, "ShipAIWorker");
+    this.threadCount++;
+    this.thread.start();
+  }
+
+  /**
+   * Stops the worker thread after the current evaluation. A pending state is
+   * kept for the next start.
+   */
+  public synchronized void stop() {
+    this.isRunning = false;
+    this.thread = null;
+    this.notifyAll();
+  }
+
+  /**
+   * Publishes a ShipState to the worker. Overwrites the pending state if the
+   * worker has not taken it yet.
+   * 
+   * @param state
+   *          The ShipState to evaluate. Must not be changed afterwards.
+   */
+  public synchronized void publish(final ShipState state) {
+    if (this.pendingState != null) {
+      this.overwrittenCount++;
+    }
+    this.pendingState = state;
+    this.pendingTime = this.clock.nanoTime();
+    this.publishedCount++;
+    this.notifyAll();
+  }
+
+  /**
+   * Evaluates the pending state on the calling thread, e.g. in step with a
+   * VirtualClock while the worker thread is not started.
+   * 
+   * @return True if a state was evaluated, else false.
+   */
+  public boolean processPending() {
+    final ShipState state;
+    final long publishTime;
+    final long sequence;
+    synchronized (this) {
+      if (this.pendingState == null) {
+        return false;
+      }
+      state = this.pendingState;
+      publishTime = this.pendingTime;
+      sequence = this.publishedCount;
+      this.pendingState = null;
+    }
+    this.evaluate(state, sequence, publishTime);
+    return true;
+  }
+
+  /**
+   * Takes the latest decision.
+   * 
+   * @param message
+   *          The ShipAIDecisionMessage to fill.
+   * @return True if a new decision was copied into the message, false if
+   *         there was none since the last call.
+   */
+  public boolean receiveDecision(final ShipAIDecisionMessage message) {
+    synchronized (this) {
+      if (!this.isDecisionReady) {
+        return false;
+      }
+      message.copyFrom(this.outbox);
+      this.isDecisionReady = false;
+    }
+    this.stalenessHistogram.record((this.clock.nanoTime() - message
+        .getPublishTime())
+        / NANOS_PER_MICRO);
+    return true;
+  }
+
+  /**
+   * Runs the worker loop.
+   */
+  public void run() {
+    final Thread self = Thread.currentThread();
+    while (this.waitForState(self)) {
+      this.processPending();
+    }
+  }
+
+  /**
+   * Gets the number of threads the worker started.
+   * 
+   * @return The thread count, one per start().
+   */
+  public long getThreadCount() {
+    return this.threadCount;
+  }
+
+  /**
+   * Gets the number of published states.
+   * 
+   * @return The published count.
+   */
+  public synchronized long getPublishedCount() {
+    return this.publishedCount;
+  }
+
+  /**
+   * Gets the number of states that were overwritten before the worker took
+   * them.
+   * 
+   * @return The overwritten count.
+   */
+  public long getOverwrittenCount() {
+    return this.overwrittenCount;
+  }
+
+  /**
+   * Gets the number of evaluated states.
+   * 
+   * @return The evaluation count.
+   */
+  public long getEvaluationCount() {
+    return this.evaluationCount;
+  }
+
+  /**
+   * Gets the time the IShipAI needed per evaluation.
+   * 
+   * @return The LatencyHistogram in microseconds.
+   */
+  public LatencyHistogram getEvaluationHistogram() {
+    return this.evaluationHistogram;
+  }
+
+  /**
+   * Gets the age of the decisions when the controller took them, from the
+   * publication of the state to receiveDecision().
+   * 
+   * @return The LatencyHistogram in microseconds.
+   */
+  public LatencyHistogram getStalenessHistogram() {
+    return this.stalenessHistogram;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private synchronized boolean waitForState(final Thread self) {
+    // a restarted worker replaces the thread of the previous run
+    while (this.isRunning && this.thread == self && this.pendingState == null) {
+      try {
+        this.wait();
+      } catch (final InterruptedException e) {
+        return false;
+      }
+    }
+    return this.isRunning && this.thread == self;
+  }
+
+  private void evaluate(final ShipState state, final long sequence,
+      final long publishTime) {
+    final long start = this.clock.nanoTime();
+    final IShipAIDecision decision = this.ai.getDecision(state);
+    final long end = this.clock.nanoTime();
+    synchronized (this) {
+      this.outbox.set(decision, state.getObjectDistance(), sequence,
+          publishTime, end);
+      this.isDecisionReady = true;
+    }
+    this.evaluationHistogram.record((end - start) / NANOS_PER_MICRO);
+    this.evaluationCount++;
+    this.listener.run();
+  }
+
+}
@@ -15,12 +15,13 @@ public class ShipState implements IShipAIDecision {
   private int direction = 90;
   private int speed = 0;
   private boolean isSpeedBackward = false;
+  private long time = 0;
 
   // /////////////////////////////////
   // constructor
   // /////////////////////////////////
   /**
-   * Constructor.
+   * Constructor. The time of the state is the time of creation.
    * 
    * @param objectDistance
    *          Distance to an object.
@@ -39,6 +40,29 @@ public class ShipState implements IShipAIDecision {
     this.direction = direction;
     this.speed = speed;
     this.isSpeedBackward = isSpeedBackward;
+    this.time = System.nanoTime();
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param objectDistance
+   *          Distance to an object.
+   * @param direction
+   *          Current ship direction.
+   * @param speed
+   *          Current ship speed
+   * @param isSpeedBackward
+   *          Indicates if the speed value is meant for backward (true) or
+   *          forward (false) direction.
+   * @param time
+   *          The time the distance was measured in nanoseconds, e.g. by the
+   *          IClock of the controller.
+   */
+  public ShipState(int objectDistance, int direction, int speed,
+      boolean isSpeedBackward, long time) {
+    this(objectDistance, direction, speed, isSpeedBackward);
+    this.time = time;
   }
 
   // /////////////////////////////////
@@ -107,4 +131,20 @@ public class ShipState implements IShipAIDecision {
     this.isSpeedBackward = isSpeedBackward;
   }
 
+  /**
+   * Gets the time the distance was measured.
+   * @return The time in nanoseconds.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Sets the time the distance was measured.
+   * @param time The time in nanoseconds.
+   */
+  public void setTime(long time) {
+    this.time = time;
+  }
+
 }
@@ -0,0 +1,67 @@
+package shipremote.ai.filter;
+
+/**
+ * An exponential moving average. Cheap and smooth, but an outlier still moves
+ * the output by alpha times its error.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class ExponentialFilter implements ISonarFilter {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final double alpha;
+  private double value = 0;
+  private boolean hasValue = false;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param alpha
+   *          The weight of a new sample, greater than 0 and at most 1.
+   */
+  public ExponentialFilter(final double alpha) {
+    if (alpha <= 0 || alpha > 1) {
+      throw new IllegalArgumentException("Alpha must be in (0, 1]: " + alpha);
+    }
+    this.alpha = alpha;
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#filter(int, long)
+   */
+  public int filter(final int distance, final long time) {
+    if (this.hasValue) {
+      this.value += this.alpha * (distance - this.value);
+    } else {
+      this.value = distance;
+      this.hasValue = true;
+    }
+    return (int) Math.round(this.value);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#reset()
+   */
+  public void reset() {
+    this.hasValue = false;
+  }
+
+  @Override
+  public String toString() {
+    return "exponential:" + this.alpha;
+  }
+
+}
@@ -0,0 +1,29 @@
+package shipremote.ai.filter;
+
+/**
+ * Interface for a filter of the sonar distances before they reach the AI.
+ * A filter keeps its state in primitive fields and does not allocate per
+ * sample. Filters are not thread safe, they run on the controller thread.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface ISonarFilter {
+
+  /**
+   * Filters the next sonar distance.
+   * 
+   * @param distance
+   *          The measured distance in cm.
+   * @param time
+   *          The time of the measurement in nanoseconds, e.g. of the IClock
+   *          of the controller.
+   * @return The filtered distance in cm.
+   */
+  public int filter(int distance, long time);
+
+  /**
+   * Forgets all samples.
+   */
+  public void reset();
+}
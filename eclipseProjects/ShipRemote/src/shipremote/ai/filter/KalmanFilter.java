@@ -0,0 +1,132 @@
+package shipremote.ai.filter;
+
+/**
+ * A Kalman filter with a constant velocity model: the state is the distance
+ * and its rate of change, the acceleration is white noise. Follows an
+ * approaching obstacle without the lag of a plain average. The time between
+ * two samples is taken from the sample times.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class KalmanFilter implements ISonarFilter {
+
+  private static final double NANOS_PER_SECOND = 1000000000.0;
+  // used until two samples with different times are known
+  private static final double DEFAULT_DT = 0.1;
+  // nothing is known about the speed of the first sample
+  private static final double INITIAL_VELOCITY_VARIANCE = 10000;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final double accelerationVariance;
+  private final double measurementVariance;
+  private double distance = 0;
+  private double velocity = 0;
+  // covariance of distance and velocity
+  private double p00 = 0;
+  private double p01 = 0;
+  private double p11 = 0;
+  private long lastTime = 0;
+  private double lastDt = DEFAULT_DT;
+  private boolean hasValue = false;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param accelerationNoise
+   *          The standard deviation of the acceleration in cm/s^2, how fast
+   *          the distance may change its rate.
+   * @param measurementNoise
+   *          The standard deviation of a sonar measurement in cm.
+   */
+  public KalmanFilter(final double accelerationNoise,
+      final double measurementNoise) {
+    this.accelerationVariance = accelerationNoise * accelerationNoise;
+    this.measurementVariance = measurementNoise * measurementNoise;
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#filter(int, long)
+   */
+  public int filter(final int distance, final long time) {
+    if (!this.hasValue) {
+      this.distance = distance;
+      this.velocity = 0;
+      this.p00 = this.measurementVariance;
+      this.p01 = 0;
+      this.p11 = INITIAL_VELOCITY_VARIANCE;
+      this.lastTime = time;
+      this.hasValue = true;
+      return distance;
+    }
+    if (time > this.lastTime) {
+      this.lastDt = (time - this.lastTime) / NANOS_PER_SECOND;
+    }
+    this.lastTime = time;
+    this.predict(this.lastDt);
+    this.update(distance);
+    return (int) Math.max(0, Math.round(this.distance));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#reset()
+   */
+  public void reset() {
+    this.hasValue = false;
+    this.lastDt = DEFAULT_DT;
+  }
+
+  /**
+   * Gets the estimated rate of change of the distance.
+   * 
+   * @return The velocity in cm/s, negative while approaching.
+   */
+  public double getVelocity() {
+    return this.velocity;
+  }
+
+  @Override
+  public String toString() {
+    return "kalman:" + Math.sqrt(this.accelerationVariance) + ":"
+        + Math.sqrt(this.measurementVariance);
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private void predict(final double dt) {
+    this.distance += this.velocity * dt;
+    // P = F P F' + Q with F = [1 dt; 0 1]
+    final double dt2 = dt * dt;
+    final double q = this.accelerationVariance;
+    this.p00 += dt * (2 * this.p01 + dt * this.p11) + q * dt2 * dt2 / 4;
+    this.p01 += dt * this.p11 + q * dt2 * dt / 2;
+    this.p11 += q * dt2;
+  }
+
+  private void update(final int measurement) {
+    final double s = this.p00 + this.measurementVariance;
+    final double k0 = this.p00 / s;
+    final double k1 = this.p01 / s;
+    final double residual = measurement - this.distance;
+    this.distance += k0 * residual;
+    this.velocity += k1 * residual;
+    // P = (I - K H) P with H = [1 0]
+    this.p11 -= k1 * this.p01;
+    this.p01 -= k0 * this.p01;
+    this.p00 -= k0 * this.p00;
+  }
+
+}
@@ -0,0 +1,95 @@
+package shipremote.ai.filter;
+
+/**
+ * A sliding median over the last samples. Removes single outliers completely
+ * and delays an edge by half the window. The window is a ring buffer of the
+ * samples in arrival order plus a copy kept sorted by insertion.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class MedianFilter implements ISonarFilter {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final int[] window;
+  private final int[] sorted;
+  private int count = 0;
+  private int next = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param windowSize
+   *          The number of samples, odd sizes have a true middle.
+   */
+  public MedianFilter(final int windowSize) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("Window size must be positive: "
+          + windowSize);
+    }
+    this.window = new int[windowSize];
+    this.sorted = new int[windowSize];
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#filter(int, long)
+   */
+  public int filter(final int distance, final long time) {
+    if (this.count == this.window.length) {
+      this.removeSorted(this.window[this.next]);
+    } else {
+      this.count++;
+    }
+    this.window[this.next] = distance;
+    this.next = (this.next + 1) % this.window.length;
+    this.insertSorted(distance);
+    return this.sorted[this.count / 2];
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#reset()
+   */
+  public void reset() {
+    this.count = 0;
+    this.next = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "median:" + this.window.length;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  // the sorted part holds count - 1 values when called
+  private void insertSorted(final int value) {
+    int i = this.count - 1;
+    while (i > 0 && this.sorted[i - 1] > value) {
+      this.sorted[i] = this.sorted[i - 1];
+      i--;
+    }
+    this.sorted[i] = value;
+  }
+
+  private void removeSorted(final int value) {
+    int i = 0;
+    while (this.sorted[i] != value) {
+      i++;
+    }
+    System.arraycopy(this.sorted, i + 1, this.sorted, i, this.count - i - 1);
+  }
+
+}
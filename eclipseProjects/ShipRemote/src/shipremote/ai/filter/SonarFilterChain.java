@@ -0,0 +1,110 @@
+package shipremote.ai.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pipeline of ISonarFilters, each filter gets the output of the previous
+ * one. Created from a spec like "median:5,kalman:50:8", see parse().
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class SonarFilterChain implements ISonarFilter {
+
+  private final ISonarFilter[] filters;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param filters
+   *          The filters in the order they are applied. No filter passes the
+   *          distances unchanged.
+   */
+  public SonarFilterChain(final ISonarFilter... filters) {
+    this.filters = filters.clone();
+  }
+
+  /**
+   * Creates a chain from a spec. The spec is a comma separated list of
+   * median:windowSize, exponential:alpha and
+   * kalman:accelerationNoise:measurementNoise. An empty spec or "none"
+   * creates a chain without filters.
+   * 
+   * @param spec
+   *          The filter spec.
+   * @return The SonarFilterChain.
+   */
+  public static SonarFilterChain parse(final String spec) {
+    final List<ISonarFilter> filters = new ArrayList<ISonarFilter>();
+    for (final String part : spec.split(",")) {
+      final String[] fields = part.trim().split(":");
+      final String name = fields[0];
+      if (name.length() == 0 || name.equals("none")) {
+        continue;
+      }
+      try {
+        if (name.equals("median")) {
+          filters.add(new MedianFilter(Integer.parseInt(fields[1])));
+        } else if (name.equals("exponential")) {
+          filters.add(new ExponentialFilter(Double.parseDouble(fields[1])));
+        } else if (name.equals("kalman")) {
+          filters.add(new KalmanFilter(Double.parseDouble(fields[1]), Double
+              .parseDouble(fields[2])));
+        } else {
+          throw new IllegalArgumentException("Unknown filter: " + part);
+        }
+      } catch (final ArrayIndexOutOfBoundsException e) {
+        throw new IllegalArgumentException("Missing parameter: " + part);
+      }
+    }
+    return new SonarFilterChain(filters.toArray(new ISonarFilter[filters
+        .size()]));
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#filter(int, long)
+   */
+  public int filter(final int distance, final long time) {
+    int value = distance;
+    for (int i = 0; i < this.filters.length; i++) {
+      value = this.filters[i].filter(value, time);
+    }
+    return value;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.ai.filter.ISonarFilter#reset()
+   */
+  public void reset() {
+    for (int i = 0; i < this.filters.length; i++) {
+      this.filters[i].reset();
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (this.filters.length == 0) {
+      return "none";
+    }
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < this.filters.length; i++) {
+      if (i > 0) {
+        text.append(',');
+      }
+      text.append(this.filters[i]);
+    }
+    return text.toString();
+  }
+
+}
@@ -0,0 +1,46 @@
+package shipremote.communication;
+
+/**
+ * Adapts an IDataReceiverListener to an IBatchDataReceiverListener by handing
+ * over the frames of a batch one by one.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class BatchListenerAdapter implements IBatchDataReceiverListener {
+
+  private final IDataReceiverListener listener;
+
+  /**
+   * Constructor.
+   * 
+   * @param listener
+   *          The IDataReceiverListener to inform.
+   */
+  public BatchListenerAdapter(final IDataReceiverListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Gets the adapted listener.
+   * 
+   * @return The IDataReceiverListener.
+   */
+  public IDataReceiverListener getListener() {
+    return this.listener;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.IBatchDataReceiverListener#dataReceived(shipremote
+   * .communication.ShipData[], int)
+   */
+  public void dataReceived(final ShipData[] receivedData, final int count) {
+    for (int i = 0; i < count; i++) {
+      this.listener.dataReceived(receivedData[i]);
+    }
+  }
+
+}
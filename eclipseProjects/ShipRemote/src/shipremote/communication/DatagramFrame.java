@@ -0,0 +1,137 @@
+package shipremote.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a datagram used by the UDPClient. A datagram carries a flag byte,
+ * a 32 bit sequence number and one data frame:
+ *
+ * <pre>
+ * | flags | sequence (4 bytes) | DATA_START | type | value | DATA_END |
+ * </pre>
+ *
+ * Frames of reliable types are sent with FLAG_RELIABLE and have to be
+ * acknowledged by a datagram with FLAG_ACK and the same sequence number.
+ *
+ * @author Andreas Gnther
+ *
+ */
+public final class DatagramFrame {
+
+  /**
+   * Length of the header in front of the data frame.
+   */
+  public static final int HEADER_LENGTH = 5;
+  /**
+   * Length of a datagram in bytes.
+   */
+  public static final int LENGTH = HEADER_LENGTH
+      + ShipCommandFactory.FRAME_LENGTH;
+  /**
+   * Flag for a frame that has to be acknowledged by the receiver.
+   */
+  public static final byte FLAG_RELIABLE = 0x01;
+  /**
+   * Flag for an acknowledgement.
+   */
+  public static final byte FLAG_ACK = 0x02;
+
+  private static final int POS_SEQUENCE = 1;
+
+  private DatagramFrame() {
+  }
+
+  /**
+   * Writes a datagram at the current position of a ByteBuffer.
+   *
+   * @param target
+   *          The ByteBuffer to write to. Needs at least LENGTH remaining bytes.
+   * @param flags
+   *          The flags of the datagram.
+   * @param sequence
+   *          The sequence number.
+   * @param dataType
+   *          The type of the data frame.
+   * @param value
+   *          The value of the data frame.
+   */
+  public static void put(ByteBuffer target, byte flags, int sequence,
+      ShipDataType dataType, int value) {
+    target.put(flags);
+    target.putInt(sequence);
+    ShipCommandFactory.putFrame(target, dataType, value);
+  }
+
+  /**
+   * Checks whether a ByteBuffer holds a complete datagram, starting at index
+   * zero.
+   *
+   * @param source
+   *          The received datagram.
+   * @return True if the datagram is valid, else false.
+   */
+  public static boolean isDatagram(ByteBuffer source) {
+    return source.limit() >= LENGTH
+        && ShipCommandFactory.isFrame(source, HEADER_LENGTH);
+  }
+
+  /**
+   * Gets the flags of a datagram.
+   *
+   * @param source
+   *          The received datagram.
+   * @return The flags.
+   */
+  public static byte getFlags(ByteBuffer source) {
+    return source.get(0);
+  }
+
+  /**
+   * Gets the sequence number of a datagram.
+   *
+   * @param source
+   *          The received datagram.
+   * @return The sequence number.
+   */
+  public static int getSequence(ByteBuffer source) {
+    return source.getInt(POS_SEQUENCE);
+  }
+
+  /**
+   * Gets the type of the data frame of a datagram.
+   *
+   * @param source
+   *          The received datagram.
+   * @return The ShipDataType.
+   */
+  public static ShipDataType getDataType(ByteBuffer source) {
+    return ShipCommandFactory.getFrameType(source, HEADER_LENGTH);
+  }
+
+  /**
+   * Gets the value of the data frame of a datagram.
+   *
+   * @param source
+   *          The received datagram.
+   * @return The unsigned value.
+   */
+  public static int getDataValue(ByteBuffer source) {
+    return ShipCommandFactory.getFrameValue(source, HEADER_LENGTH);
+  }
+
+  /**
+   * Checks whether frames of a type have to be acknowledged. Alive and
+   * ranging frames are sent reliable, for all others only the latest value
+   * matters.
+   *
+   * @param dataType
+   *          The ShipDataType.
+   * @return True if the type is sent reliable, else false.
+   */
+  public static boolean isReliable(ShipDataType dataType) {
+    return dataType == ShipDataType.ALIVE
+        || dataType == ShipDataType.INIT_RANGING
+        || dataType == ShipDataType.STOP_RANGING;
+  }
+
+}
@@ -0,0 +1,90 @@
+package shipremote.communication;
+
+import java.lang.reflect.Method;
+
+/**
+ * Defines on which kind of thread a client listens and the AI is evaluated.
+ * Selected at construction, e.g. of a TCPClient or a ShipController.
+ *
+ * @author Andreas Gnther
+ *
+ */
+public enum ExecutionMode {
+
+  /**
+   * Platform threads. The only mode on Android.
+   */
+  PLATFORM {
+    @Override
+    public Thread newThread(final Runnable task, final String name) {
+      return new Thread(task, name);
+    }
+  },
+  /**
+   * Virtual threads of Java 21 and later, clients read blocking. Falls back
+   * to platform threads if the JVM has no virtual threads, see
+   * isVirtualThreadAvailable().
+   */
+  VIRTUAL {
+    @Override
+    public Thread newThread(final Runnable task, final String name) {
+      if (VirtualThreads.UNSTARTED == null) {
+        return new Thread(task, name);
+      }
+      try {
+        final Object builder = VirtualThreads.NAME.invoke(
+            VirtualThreads.OF_VIRTUAL.invoke(null), name);
+        return (Thread) VirtualThreads.UNSTARTED.invoke(builder, task);
+      } catch (final Exception e) {
+        throw new IllegalStateException("Cannot create a virtual thread.", e);
+      }
+    }
+  };
+
+  /**
+   * Creates a thread that is not started yet.
+   *
+   * @param task
+   *          The task the thread runs.
+   * @param name
+   *          The name of the thread.
+   * @return The new Thread.
+   */
+  public abstract Thread newThread(Runnable task, String name);
+
+  /**
+   * Checks whether the JVM provides virtual threads.
+   *
+   * @return True if VIRTUAL creates virtual threads, false if it falls back
+   *         to platform threads.
+   */
+  public static boolean isVirtualThreadAvailable() {
+    return VirtualThreads.UNSTARTED != null;
+  }
+
+  // looked up by reflection, the sources stay compatible with Android
+  private static final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method UNSTARTED;
+
+    static {
+      Method ofVirtual = null;
+      Method name = null;
+      Method unstarted = null;
+      try {
+        final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+        ofVirtual = Thread.class.getMethod("ofVirtual");
+        name = builder.getMethod("name", String.class);
+        unstarted = builder.getMethod("unstarted", Runnable.class);
+      } catch (final Exception e) {
+        unstarted = null;
+      }
+      OF_VIRTUAL = ofVirtual;
+      NAME = name;
+      UNSTARTED = unstarted;
+    }
+  }
+
+}
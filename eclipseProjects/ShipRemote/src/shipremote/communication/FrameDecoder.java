@@ -0,0 +1,346 @@
+package shipremote.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder for data frames received from the ship. Received bytes
+ * are collected in a reusable ring buffer, complete frames are taken out in the
+ * order they arrived. A frame starts with ShipCommandFactory.DATA_START and has
+ * to end with ShipCommandFactory.DATA_END, otherwise the decoder drops the
+ * start byte and searches for the next DATA_START. Version 2 frames (see
+ * ShipFrameV2) start with ShipFrameV2.START and are accepted if their length
+ * and CRC are valid, so a stream may switch versions between two frames.
+ *
+ * <pre>
+ * decoder.put(receivedBytes, 0, count);
+ * while (decoder.nextFrame()) {
+ *   handle(decoder.getFrameType(), decoder.getFrameValue());
+ * }
+ * </pre>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class FrameDecoder {
+
+  /**
+   * Length of a data frame in bytes.
+   */
+  public static final int FRAME_LENGTH = ShipCommandFactory.FRAME_LENGTH;
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final int POS_TYPE = 1;
+  private static final int POS_VALUE = 2;
+  private static final int POS_END = 3;
+  private static final int V2_FRAME = 0;
+  private static final int V2_INCOMPLETE = 1;
+  private static final int V2_SKIPPED = 2;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final byte[] buffer;
+  private final int mask;
+  private int readIndex = 0;
+  private int writeIndex = 0;
+  private ShipDataType frameType = ShipDataType.INVALID;
+  private int frameValue = 0;
+  private int frameVersion = 1;
+  private long frameTimestamp = -1;
+  private volatile long frameCount = 0;
+  private volatile long droppedByteCount = 0;
+  private volatile long resyncedByteCount = 0;
+  private volatile long crcErrorCount = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor. Creates a decoder with a default capacity.
+   */
+  public FrameDecoder() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param capacity
+   *          Minimum number of bytes the ring buffer can hold. Rounded up to
+   *          the next power of two.
+   */
+  public FrameDecoder(final int capacity) {
+    // room for at least one frame of any version
+    int size = 16;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.buffer = new byte[size];
+    this.mask = size - 1;
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Gets the number of bytes that fit into the decoder before frames have to
+   * be taken out.
+   *
+   * @return The number of free bytes.
+   */
+  public int getFreeCapacity() {
+    return this.buffer.length - this.size();
+  }
+
+  /**
+   * Copies received bytes into the decoder.
+   *
+   * @param data
+   *          The received bytes.
+   * @param offset
+   *          Index of the first byte to copy.
+   * @param length
+   *          Number of bytes to copy.
+   * @return The number of bytes copied. Less than length if the decoder is
+   *         full, call nextFrame() and put the rest afterwards.
+   */
+  public int put(final byte[] data, final int offset, final int length) {
+    final int count = Math.min(length, this.getFreeCapacity());
+    final int start = this.writeIndex & this.mask;
+    final int firstPart = Math.min(count, this.buffer.length - start);
+    System.arraycopy(data, offset, this.buffer, start, firstPart);
+    System.arraycopy(data, offset + firstPart, this.buffer, 0, count
+        - firstPart);
+    this.writeIndex += count;
+    return count;
+  }
+
+  /**
+   * Copies the remaining bytes of a ByteBuffer into the decoder. The position
+   * of the source is moved by the number of bytes copied.
+   *
+   * @param source
+   *          A ByteBuffer in read mode.
+   * @return The number of bytes copied. Less than the remaining bytes of the
+   *         source if the decoder is full.
+   */
+  public int put(final ByteBuffer source) {
+    final int count = Math.min(source.remaining(), this.getFreeCapacity());
+    final int start = this.writeIndex & this.mask;
+    final int firstPart = Math.min(count, this.buffer.length - start);
+    source.get(this.buffer, start, firstPart);
+    source.get(this.buffer, 0, count - firstPart);
+    this.writeIndex += count;
+    return count;
+  }
+
+  /**
+   * Takes the next complete frame out of the decoder. Bytes that do not
+   * belong to a valid frame are skipped. The type and value of the frame are
+   * available by getFrameType() and getFrameValue() until the next call.
+   *
+   * @return True if a frame was decoded, false if more bytes are needed.
+   */
+  public boolean nextFrame() {
+    while (this.size() >= FRAME_LENGTH) {
+      final byte start = this.byteAt(0);
+      if (start == ShipFrameV2.START) {
+        final int result = this.nextFrameV2();
+        if (result == V2_FRAME) {
+          return true;
+        } else if (result == V2_INCOMPLETE) {
+          return false;
+        }
+        continue;
+      }
+      if (start != ShipCommandFactory.DATA_START) {
+        // garbage in front of a frame
+        this.readIndex++;
+        this.droppedByteCount++;
+        continue;
+      }
+      final ShipDataType type = ShipDataType.valueOf(this.byteAt(POS_TYPE));
+      if (type == ShipDataType.INVALID
+          || this.byteAt(POS_END) != ShipCommandFactory.DATA_END) {
+        // not a frame start, resynchronise on the next DATA_START
+        this.readIndex++;
+        this.resyncedByteCount++;
+        continue;
+      }
+      this.frameType = type;
+      this.frameValue = (int) this.byteAt(POS_VALUE) & 0xFF;
+      this.frameVersion = 1;
+      this.frameTimestamp = -1;
+      this.readIndex += FRAME_LENGTH;
+      this.frameCount++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Gets the protocol version of the last decoded frame.
+   *
+   * @return 1 or ShipFrameV2.VERSION.
+   */
+  public int getFrameVersion() {
+    return this.frameVersion;
+  }
+
+  /**
+   * Checks whether the last decoded frame carried a timestamp.
+   *
+   * @return True for v2 frames with timestamp, else false.
+   */
+  public boolean hasFrameTimestamp() {
+    return this.frameTimestamp >= 0;
+  }
+
+  /**
+   * Gets the timestamp of the last decoded frame.
+   *
+   * @return The unsigned 32 bit timestamp in microseconds, -1 if the frame
+   *         had none.
+   */
+  public long getFrameTimestamp() {
+    return this.frameTimestamp;
+  }
+
+  /**
+   * Gets the number of v2 frames dropped because of a wrong CRC.
+   *
+   * @return The CRC error count.
+   */
+  public long getCrcErrorCount() {
+    return this.crcErrorCount;
+  }
+
+  /**
+   * Gets the type of the last decoded frame.
+   *
+   * @return The ShipDataType.
+   */
+  public ShipDataType getFrameType() {
+    return this.frameType;
+  }
+
+  /**
+   * Gets the value of the last decoded frame.
+   *
+   * @return The unsigned value of the frame.
+   */
+  public int getFrameValue() {
+    return this.frameValue;
+  }
+
+  /**
+   * Gets the last decoded frame as ShipData.
+   *
+   * @return The ShipData, shared for values from 0 to 255.
+   */
+  public ShipData getFrameData() {
+    return ShipData.valueOf(this.frameType, this.frameValue);
+  }
+
+  /**
+   * Gets the number of frames decoded so far.
+   *
+   * @return The frame count.
+   */
+  public long getFrameCount() {
+    return this.frameCount;
+  }
+
+  /**
+   * Gets the number of bytes skipped while searching for a DATA_START.
+   *
+   * @return The dropped byte count.
+   */
+  public long getDroppedByteCount() {
+    return this.droppedByteCount;
+  }
+
+  /**
+   * Gets the number of bytes skipped because a DATA_START was not followed by
+   * a valid frame.
+   *
+   * @return The resynced byte count.
+   */
+  public long getResyncedByteCount() {
+    return this.resyncedByteCount;
+  }
+
+  /**
+   * Discards all buffered bytes. The counters are kept.
+   */
+  public void reset() {
+    this.readIndex = 0;
+    this.writeIndex = 0;
+    this.frameType = ShipDataType.INVALID;
+    this.frameValue = 0;
+    this.frameVersion = 1;
+    this.frameTimestamp = -1;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private int nextFrameV2() {
+    final int length = (int) this.byteAt(ShipFrameV2.POS_LENGTH) & 0xFF;
+    if (!ShipFrameV2.isValidLength(length)) {
+      this.readIndex++;
+      this.resyncedByteCount++;
+      return V2_SKIPPED;
+    }
+    final int frameLength = ShipFrameV2.PREFIX_LENGTH + length;
+    if (this.size() < frameLength) {
+      return V2_INCOMPLETE;
+    }
+    final int crcIndex = frameLength - ShipFrameV2.CRC_LENGTH;
+    int crc = ShipFrameV2.initialCrc();
+    for (int i = 0; i < crcIndex; i++) {
+      crc = ShipFrameV2.updateCrc(crc, this.byteAt(i));
+    }
+    if (crc != this.unsignedAt(crcIndex, 2)) {
+      // corrupted or not a frame start, resynchronise
+      this.readIndex++;
+      this.resyncedByteCount++;
+      this.crcErrorCount++;
+      return V2_SKIPPED;
+    }
+    final ShipDataType type = ShipDataType.valueOf(this
+        .byteAt(ShipFrameV2.POS_TYPE));
+    if (type == ShipDataType.INVALID) {
+      this.readIndex++;
+      this.resyncedByteCount++;
+      return V2_SKIPPED;
+    }
+    final boolean hasTimestamp = (this.byteAt(ShipFrameV2.POS_FLAGS)
+        & ShipFrameV2.FLAG_TIMESTAMP) != 0;
+    this.frameType = type;
+    this.frameValue = (int) this.unsignedAt(ShipFrameV2.POS_VALUE, 2);
+    this.frameVersion = ShipFrameV2.VERSION;
+    this.frameTimestamp = hasTimestamp ? this.unsignedAt(
+        ShipFrameV2.POS_TIMESTAMP, 4) : -1;
+    this.readIndex += frameLength;
+    this.frameCount++;
+    return V2_FRAME;
+  }
+
+  private long unsignedAt(final int offset, final int length) {
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      value = (value << 8) | ((int) this.byteAt(offset + i) & 0xFF);
+    }
+    return value;
+  }
+
+  private int size() {
+    return this.writeIndex - this.readIndex;
+  }
+
+  private byte byteAt(final int offset) {
+    return this.buffer[(this.readIndex + offset) & this.mask];
+  }
+
+}
@@ -0,0 +1,272 @@
+package shipremote.communication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A binary journal of sent and received frames. Records of fixed width are
+ * appended to memory-mapped segment files, a new segment is started when the
+ * current one is full. Appending a record does not allocate, only the
+ * rollover to the next segment does.
+ * <p>
+ * A segment starts with a header, followed by the records:
+ * </p>
+ * 
+ * <pre>
+ * header: | magic (4) | record size (4) | wall clock ms (8) | nanoTime (8) |
+ *         | reserved (8) |
+ * record: | nanoTime (8) | direction (1) | type (1) | reserved (2) |
+ *         | value (4) |
+ * </pre>
+ * 
+ * The direction of an unused record is 0. The nanoTime of the header maps the
+ * record timestamps to the wall clock. Segments are named journal-NNNNN.bin
+ * and numbered on from the highest segment already in the directory. Use a
+ * FrameJournalReader to read a journal.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class FrameJournal implements IFrameTap {
+
+  /**
+   * Magic number at the start of every segment ("SRJ1").
+   */
+  public static final int MAGIC = 0x53524A31;
+  /**
+   * Length of the segment header in bytes.
+   */
+  public static final int HEADER_SIZE = 32;
+  /**
+   * Length of a record in bytes.
+   */
+  public static final int RECORD_SIZE = 16;
+  /**
+   * Default size of a segment in bytes.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  static final String SEGMENT_PREFIX = "journal-";
+  static final String SEGMENT_SUFFIX = ".bin";
+  static final int POS_RECORD_SIZE = 4;
+  static final int POS_WALL_CLOCK = 8;
+  static final int POS_NANO_TIME = 16;
+  static final int POS_DIRECTION = 8;
+  static final int POS_TYPE = 9;
+  static final int POS_VALUE = 12;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final File directory;
+  private final int segmentSize;
+  private MappedByteBuffer segment = null;
+  private int segmentIndex;
+  private int position = 0;
+  private long recordCount = 0;
+  private int segmentCount = 0;
+  private boolean isClosed = false;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor. Uses DEFAULT_SEGMENT_SIZE.
+   * 
+   * @param directory
+   *          The directory for the segment files.
+   * @throws IOException
+   */
+  public FrameJournal(final File directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param directory
+   *          The directory for the segment files. Created if missing.
+   * @param segmentSize
+   *          The size of a segment file in bytes.
+   * @throws IOException
+   */
+  public FrameJournal(final File directory, final int segmentSize)
+      throws IOException {
+    if (segmentSize < HEADER_SIZE + RECORD_SIZE) {
+      throw new IllegalArgumentException("segmentSize is too small.");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create " + directory);
+    }
+    this.directory = directory;
+    // only whole records
+    this.segmentSize = HEADER_SIZE + (segmentSize - HEADER_SIZE)
+        / RECORD_SIZE * RECORD_SIZE;
+    this.segmentIndex = findLastSegmentIndex(directory) + 1;
+    this.openSegment();
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Appends a record with the current System.nanoTime().
+   * 
+   * @param direction
+   *          DIRECTION_IN or DIRECTION_OUT.
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame.
+   */
+  public void frame(final int direction, final ShipDataType dataType,
+      final int value) {
+    this.append(System.nanoTime(), direction, dataType, value);
+  }
+
+  /**
+   * Appends a record. Errors while starting a new segment are printed and
+   * close the journal, the caller is never interrupted.
+   * 
+   * @param timestamp
+   *          The timestamp in nanoseconds.
+   * @param direction
+   *          DIRECTION_IN or DIRECTION_OUT.
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame.
+   */
+  public synchronized void append(final long timestamp, final int direction,
+      final ShipDataType dataType, final int value) {
+    if (this.isClosed) {
+      return;
+    }
+    if (this.position + RECORD_SIZE > this.segmentSize) {
+      try {
+        this.segment.force();
+        this.segmentIndex++;
+        this.openSegment();
+      } catch (final IOException e) {
+        e.printStackTrace();
+        this.isClosed = true;
+        return;
+      }
+    }
+    final MappedByteBuffer buffer = this.segment;
+    final int pos = this.position;
+    buffer.putLong(pos, timestamp);
+    buffer.put(pos + POS_TYPE, dataType.getValue());
+    buffer.putInt(pos + POS_VALUE, value);
+    // written last, marks the record as used
+    buffer.put(pos + POS_DIRECTION, (byte) direction);
+    this.position = pos + RECORD_SIZE;
+    this.recordCount++;
+  }
+
+  /**
+   * Gets the number of appended records.
+   * 
+   * @return The record count.
+   */
+  public synchronized long getRecordCount() {
+    return this.recordCount;
+  }
+
+  /**
+   * Gets the number of segments written by this journal.
+   * 
+   * @return The segment count.
+   */
+  public synchronized int getSegmentCount() {
+    return this.segmentCount;
+  }
+
+  /**
+   * Gets the directory of the segment files.
+   * 
+   * @return The directory.
+   */
+  public File getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * Writes the current segment to the storage device.
+   */
+  public synchronized void flush() {
+    if (!this.isClosed) {
+      this.segment.force();
+    }
+  }
+
+  /**
+   * Flushes and closes the journal. Further records are ignored.
+   */
+  public synchronized void close() {
+    this.flush();
+    this.isClosed = true;
+    this.segment = null;
+  }
+
+  // ///////////////////////////////
+  // package methods
+  // ///////////////////////////////
+  static String getSegmentName(final int index) {
+    final String number = String.valueOf(index);
+    final StringBuilder name = new StringBuilder(SEGMENT_PREFIX);
+    for (int i = number.length(); i < 5; i++) {
+      name.append('0');
+    }
+    return name.append(number).append(SEGMENT_SUFFIX).toString();
+  }
+
+  static int getSegmentIndex(final String name) {
+    if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+          name.length() - SEGMENT_SUFFIX.length()));
+    } catch (final NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private void openSegment() throws IOException {
+    final File file = new File(this.directory,
+        getSegmentName(this.segmentIndex));
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      // the mapping stays valid after the file is closed
+      this.segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+          this.segmentSize);
+    } finally {
+      raf.close();
+    }
+    this.segment.putInt(0, MAGIC);
+    this.segment.putInt(POS_RECORD_SIZE, RECORD_SIZE);
+    this.segment.putLong(POS_WALL_CLOCK, System.currentTimeMillis());
+    this.segment.putLong(POS_NANO_TIME, System.nanoTime());
+    this.position = HEADER_SIZE;
+    this.segmentCount++;
+  }
+
+  private static int findLastSegmentIndex(final File directory) {
+    int last = -1;
+    final String[] names = directory.list();
+    if (names != null) {
+      for (final String name : names) {
+        last = Math.max(last, getSegmentIndex(name));
+      }
+    }
+    return last;
+  }
+
+}
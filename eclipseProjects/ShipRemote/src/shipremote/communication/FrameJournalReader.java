@@ -0,0 +1,183 @@
+package shipremote.communication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a FrameJournal. The segments are mapped read-only and
+ * the getters read the current record directly from the mapping, nothing is
+ * copied.
+ * 
+ * <pre>
+ * FrameJournalReader reader = new FrameJournalReader(directory);
+ * while (reader.next()) {
+ *   handle(reader.getTimestamp(), reader.getDirection(), reader.getDataType(),
+ *       reader.getDataValue());
+ * }
+ * </pre>
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class FrameJournalReader {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final File directory;
+  private final int[] segmentIndexes;
+  private int nextSegment = 0;
+  private MappedByteBuffer segment = null;
+  private int recordSize = FrameJournal.RECORD_SIZE;
+  private int position = 0;
+  private long segmentWallClock = 0;
+  private long segmentNanoTime = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param directory
+   *          The directory of the segment files.
+   */
+  public FrameJournalReader(final File directory) {
+    this.directory = directory;
+    final String[] names = directory.list();
+    final int[] indexes = new int[names == null ? 0 : names.length];
+    int count = 0;
+    for (int i = 0; i < indexes.length; i++) {
+      final int index = FrameJournal.getSegmentIndex(names[i]);
+      if (index >= 0) {
+        indexes[count++] = index;
+      }
+    }
+    this.segmentIndexes = new int[count];
+    System.arraycopy(indexes, 0, this.segmentIndexes, 0, count);
+    Arrays.sort(this.segmentIndexes);
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Moves to the next record.
+   * 
+   * @return True if there is a record, false at the end of the journal.
+   * @throws IOException
+   *           If a segment cannot be read or has an invalid record size.
+   */
+  public boolean next() throws IOException {
+    while (true) {
+      if (this.segment != null) {
+        final int nextPosition = this.position + this.recordSize;
+        if (nextPosition + this.recordSize <= this.segment.limit()
+            && this.isUsed(nextPosition)) {
+          this.position = nextPosition;
+          return true;
+        }
+      }
+      if (!this.openNextSegment()) {
+        return false;
+      }
+      if (this.isUsed(this.position)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Gets the timestamp of the current record.
+   * 
+   * @return The System.nanoTime() of the record.
+   */
+  public long getTimestamp() {
+    return this.segment.getLong(this.position);
+  }
+
+  /**
+   * Gets the wall clock time of the current record, derived from the segment
+   * header.
+   * 
+   * @return The time in milliseconds since 1970.
+   */
+  public long getWallClockTime() {
+    return this.segmentWallClock + (this.getTimestamp() - this.segmentNanoTime)
+        / 1000000L;
+  }
+
+  /**
+   * Gets the direction of the current record.
+   * 
+   * @return IFrameTap.DIRECTION_IN or IFrameTap.DIRECTION_OUT.
+   */
+  public int getDirection() {
+    return this.segment.get(this.position + FrameJournal.POS_DIRECTION);
+  }
+
+  /**
+   * Gets the type of the current record.
+   * 
+   * @return The ShipDataType.
+   */
+  public ShipDataType getDataType() {
+    return ShipDataType.valueOf(this.segment.get(this.position
+        + FrameJournal.POS_TYPE));
+  }
+
+  /**
+   * Gets the value of the current record.
+   * 
+   * @return The value.
+   */
+  public int getDataValue() {
+    return this.segment.getInt(this.position + FrameJournal.POS_VALUE);
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private boolean isUsed(final int recordPosition) {
+    return this.segment.get(recordPosition + FrameJournal.POS_DIRECTION) != 0;
+  }
+
+  private boolean openNextSegment() throws IOException {
+    while (this.nextSegment < this.segmentIndexes.length) {
+      final File file = new File(this.directory, FrameJournal
+          .getSegmentName(this.segmentIndexes[this.nextSegment++]));
+      final RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        this.segment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+            raf.length());
+      } finally {
+        raf.close();
+      }
+      if (this.segment.limit() < FrameJournal.HEADER_SIZE
+          || this.segment.getInt(0) != FrameJournal.MAGIC) {
+        // not a journal segment
+        continue;
+      }
+      this.recordSize = this.segment.getInt(FrameJournal.POS_RECORD_SIZE);
+      if (this.recordSize != FrameJournal.RECORD_SIZE) {
+        // e.g. a zeroed header, next() would not move on
+        this.segment = null;
+        throw new IOException("Invalid record size " + this.recordSize
+            + " in " + file);
+      }
+      this.segmentWallClock = this.segment.getLong(FrameJournal.POS_WALL_CLOCK);
+      this.segmentNanoTime = this.segment.getLong(FrameJournal.POS_NANO_TIME);
+      this.position = FrameJournal.HEADER_SIZE;
+      if (this.position + this.recordSize <= this.segment.limit()) {
+        return true;
+      }
+    }
+    this.segment = null;
+    return false;
+  }
+
+}
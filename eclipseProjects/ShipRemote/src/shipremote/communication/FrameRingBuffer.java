@@ -0,0 +1,245 @@
+package shipremote.communication;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A single producer, multi consumer ring buffer of pre-allocated frame slots
+ * between the network reader and the data listeners. The reader publishes
+ * every decoded frame without locking and without waiting. Each listener is
+ * served by a RingConsumer with its own thread and its own sequence, so a slow
+ * listener neither stalls the reader nor the other listeners. A consumer that
+ * falls more than the capacity behind skips the overwritten frames and counts
+ * them as lost.
+ * <p>
+ * A slot stores the lower 32 bits of its sequence together with the type and
+ * the value of the frame in one long, so a consumer reads a frame atomically
+ * and detects an overwritten slot by the sequence tag.
+ * </p>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class FrameRingBuffer {
+
+  private static final ShipDataType[] TYPES = ShipDataType.values();
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final AtomicLongArray slots;
+  private final int mask;
+  private final WaitStrategy waitStrategy;
+  private final ExecutionMode executionMode;
+  private volatile long cursor = -1;
+  private volatile RingConsumer[] consumers = new RingConsumer[0];
+  private volatile boolean isRunning = false;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   *
+   * @param capacity
+   *          Minimum number of frame slots. Rounded up to the next power of
+   *          two.
+   * @param waitStrategy
+   *          The WaitStrategy of the consumers.
+   */
+  public FrameRingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+    this(capacity, waitStrategy, ExecutionMode.PLATFORM);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param capacity
+   *          Minimum number of frame slots. Rounded up to the next power of
+   *          two.
+   * @param waitStrategy
+   *          The WaitStrategy of the consumers. Do not spin on virtual
+   *          threads, they share few carrier threads.
+   * @param executionMode
+   *          The ExecutionMode of the consumer threads.
+   */
+  public FrameRingBuffer(final int capacity, final WaitStrategy waitStrategy,
+      final ExecutionMode executionMode) {
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new AtomicLongArray(size);
+    this.mask = size - 1;
+    this.waitStrategy = waitStrategy;
+    this.executionMode = executionMode;
+    for (int i = 0; i < size; i++) {
+      // no slot matches a sequence before it was written
+      this.slots.set(i, toSlot(i - size, ShipDataType.INVALID, 0));
+    }
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Gets the number of frame slots.
+   *
+   * @return The capacity.
+   */
+  public int getCapacity() {
+    return this.mask + 1;
+  }
+
+  /**
+   * Gets the WaitStrategy of the consumers.
+   *
+   * @return The WaitStrategy.
+   */
+  public WaitStrategy getWaitStrategy() {
+    return this.waitStrategy;
+  }
+
+  /**
+   * Gets the ExecutionMode of the consumer threads.
+   *
+   * @return The ExecutionMode.
+   */
+  public ExecutionMode getExecutionMode() {
+    return this.executionMode;
+  }
+
+  /**
+   * Gets the sequence of the last published frame.
+   *
+   * @return The cursor, -1 if nothing was published yet.
+   */
+  public long getCursor() {
+    return this.cursor;
+  }
+
+  /**
+   * Gets the consumers of the ring buffer.
+   *
+   * @return The RingConsumers. The array must not be modified.
+   */
+  public RingConsumer[] getConsumers() {
+    return this.consumers;
+  }
+
+  /**
+   * Publishes a frame to all consumers. Must only be called by one producer
+   * thread.
+   *
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame.
+   */
+  public void publish(final ShipDataType dataType, final int value) {
+    final long sequence = this.cursor + 1;
+    this.slots.set((int) sequence & this.mask,
+        toSlot(sequence, dataType, value));
+    this.cursor = sequence;
+    final RingConsumer[] current = this.consumers;
+    for (int i = 0; i < current.length; i++) {
+      current[i].signal();
+    }
+  }
+
+  /**
+   * Adds a consumer for a listener that is informed frame by frame.
+   *
+   * @param listener
+   *          The listener to inform.
+   * @return The RingConsumer.
+   */
+  public RingConsumer addConsumer(final IDataReceiverListener listener) {
+    return this.addConsumer(new BatchListenerAdapter(listener));
+  }
+
+  /**
+   * Adds a consumer for a listener. The consumer receives the frames
+   * published after this call, all frames available at once in one batch. It
+   * is started at once if the ring buffer is running.
+   *
+   * @param listener
+   *          The listener to inform.
+   * @return The RingConsumer.
+   */
+  public synchronized RingConsumer addConsumer(
+      final IBatchDataReceiverListener listener) {
+    final RingConsumer consumer = new RingConsumer(this, listener);
+    final RingConsumer[] current = this.consumers;
+    final RingConsumer[] extended = new RingConsumer[current.length + 1];
+    System.arraycopy(current, 0, extended, 0, current.length);
+    extended[current.length] = consumer;
+    this.consumers = extended;
+    if (this.isRunning) {
+      consumer.start();
+    }
+    return consumer;
+  }
+
+  /**
+   * Starts the threads of all consumers.
+   */
+  public synchronized void start() {
+    if (this.isRunning) {
+      return;
+    }
+    this.isRunning = true;
+    for (final RingConsumer consumer : this.consumers) {
+      consumer.start();
+    }
+  }
+
+  /**
+   * Asks all consumers to stop without waiting for them.
+   */
+  public synchronized void halt() {
+    this.isRunning = false;
+    for (final RingConsumer consumer : this.consumers) {
+      consumer.halt();
+    }
+  }
+
+  /**
+   * Stops all consumers and waits until their threads have finished.
+   *
+   * @throws InterruptedException
+   */
+  public void stop() throws InterruptedException {
+    this.halt();
+    for (final RingConsumer consumer : this.consumers) {
+      consumer.join();
+    }
+  }
+
+  // ///////////////////////////////
+  // package methods
+  // ///////////////////////////////
+  long getSlot(final long sequence) {
+    return this.slots.get((int) sequence & this.mask);
+  }
+
+  static boolean isSlotOf(final long slot, final long sequence) {
+    return (int) (slot >>> 32) == (int) sequence;
+  }
+
+  static ShipDataType getSlotType(final long slot) {
+    return TYPES[(int) (slot >>> 16) & 0xFFFF];
+  }
+
+  static int getSlotValue(final long slot) {
+    return (int) slot & 0xFFFF;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private static long toSlot(final long sequence, final ShipDataType dataType,
+      final int value) {
+    return (sequence << 32) | (dataType.ordinal() << 16) | (value & 0xFFFF);
+  }
+
+}
@@ -0,0 +1,22 @@
+package shipremote.communication;
+
+/**
+ * Interface for a listener that is informed once for all frames a client
+ * decoded from one read.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface IBatchDataReceiverListener {
+  /**
+   * Called when data is received. The array is owned by the client and reused
+   * for the next batch. The ShipData are immutable and may be kept after the
+   * call returns.
+   * 
+   * @param receivedData
+   *          The received data, oldest first.
+   * @param count
+   *          The number of valid entries in receivedData.
+   */
+  public void dataReceived(ShipData[] receivedData, int count);
+}
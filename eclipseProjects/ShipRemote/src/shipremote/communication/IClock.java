@@ -0,0 +1,43 @@
+package shipremote.communication;
+
+/**
+ * Interface for the time source of a controller. Provides the current time
+ * and runs periodic tasks, e.g. the alive timer. A clock may be shared, e.g.
+ * by a controller and a TelemetryPublisher, so every task is cancelled by the
+ * IClockTask returned for it. A RealTimeClock follows the
+ * system time, a VirtualClock only moves when it is advanced, e.g. by a
+ * ReplayClient.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface IClock {
+
+  /**
+   * Gets the current time.
+   * 
+   * @return The time in nanoseconds, like System.nanoTime().
+   */
+  public long nanoTime();
+
+  /**
+   * Schedules a task for repeated execution.
+   * 
+   * @param task
+   *          The task to run.
+   * @param delay
+   *          Delay in milliseconds before the first execution.
+   * @param period
+   *          Time in milliseconds between executions.
+   * @return The IClockTask to cancel the task.
+   */
+  public IClockTask schedule(Runnable task, long delay, long period);
+
+  /**
+   * Checks whether the clock follows the system time.
+   * 
+   * @return True for the system time, false for a clock that only moves when
+   *         it is advanced.
+   */
+  public boolean isRealTime();
+}
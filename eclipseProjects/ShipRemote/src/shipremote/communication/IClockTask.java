@@ -0,0 +1,17 @@
+package shipremote.communication;
+
+/**
+ * A task scheduled on an IClock. Several components may share one clock, so
+ * each of them cancels only the tasks it scheduled.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface IClockTask {
+
+  /**
+   * Cancels the task. It is not run anymore, a run in progress is finished.
+   * Cancelling a task twice does nothing.
+   */
+  public void cancel();
+}
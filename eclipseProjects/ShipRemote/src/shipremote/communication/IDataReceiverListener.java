@@ -9,6 +9,9 @@ package shipremote.communication;
 public interface IDataReceiverListener {
   /**
    * Called when data is received..
+   * Depending on the client this is the network thread or a listener thread
+   * of its own, so the call must not block for long.
+   * The ShipData is immutable and may be kept after the call returns.
    * @param receivedData The received data.
    */
   public void dataReceived(ShipData receivedData);
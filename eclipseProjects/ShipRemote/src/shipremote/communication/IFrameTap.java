@@ -0,0 +1,33 @@
+package shipremote.communication;
+
+/**
+ * Interface for a tap that sees every frame a client or controller sends or
+ * receives, e.g. a FrameJournal. Called on the sending or receiving thread,
+ * so it must be fast and thread safe.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface IFrameTap {
+
+  /**
+   * Direction of a received frame.
+   */
+  public static final int DIRECTION_IN = 1;
+  /**
+   * Direction of a sent frame.
+   */
+  public static final int DIRECTION_OUT = 2;
+
+  /**
+   * Called for every frame.
+   * 
+   * @param direction
+   *          DIRECTION_IN or DIRECTION_OUT.
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame.
+   */
+  public void frame(int direction, ShipDataType dataType, int value);
+}
@@ -67,6 +67,19 @@ public interface INetworkClient {
    */
   public abstract boolean sendData(ShipData shipCommand) throws IOException;
 
+  /**
+   * Sends data to the host without the need of a ShipData object.
+   * 
+   * @param dataType
+   *          The type of the data to send.
+   * @param value
+   *          The value of the data to send.
+   * @return true if the data was send successfully, false otherwise.
+   * @throws IOException
+   */
+  public abstract boolean sendData(ShipDataType dataType, int value)
+      throws IOException;
+
   /**
    * Reads data from the host, if available.
    * 
@@ -84,6 +97,16 @@ public interface INetworkClient {
    */
   public abstract void addDataReceiverListener(IDataReceiverListener listener);
 
+  /**
+   * Adds a IBatchDataReceiverListener that is informed once for all frames
+   * decoded from one read.
+   * 
+   * @param listener
+   *          An IBatchDataReceiverListener.
+   */
+  public abstract void addBatchDataReceiverListener(
+      IBatchDataReceiverListener listener);
+
   /**
    * Starts the listening for data.
    */
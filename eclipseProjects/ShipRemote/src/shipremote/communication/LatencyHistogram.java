@@ -0,0 +1,155 @@
+package shipremote.communication;
+
+/**
+ * A log-linear histogram for latencies that does not allocate while recording.
+ * Every power of two is split into SUB_BUCKET_COUNT linear buckets, so a
+ * reported percentile is at most 1/SUB_BUCKET_COUNT above the recorded value.
+ * Values are recorded in microseconds up to about 35 minutes.
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 30;
+  private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+      * SUB_BUCKET_COUNT;
+  private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long totalCount = 0;
+  private long maxValue = 0;
+  private long sum = 0;
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Records a value. Values above the range are recorded as the highest
+   * value.
+   *
+   * @param value
+   *          The latency in microseconds.
+   */
+  public synchronized void record(final long value) {
+    final long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+    this.counts[getBucket(clamped)]++;
+    this.totalCount++;
+    this.sum += clamped;
+    if (clamped > this.maxValue) {
+      this.maxValue = clamped;
+    }
+  }
+
+  /**
+   * Gets the number of recorded values.
+   *
+   * @return The count.
+   */
+  public synchronized long getCount() {
+    return this.totalCount;
+  }
+
+  /**
+   * Gets the highest recorded value.
+   *
+   * @return The maximum in microseconds.
+   */
+  public synchronized long getMax() {
+    return this.maxValue;
+  }
+
+  /**
+   * Gets the mean of the recorded values.
+   *
+   * @return The mean in microseconds, 0 if nothing was recorded.
+   */
+  public synchronized long getMean() {
+    return this.totalCount == 0 ? 0 : this.sum / this.totalCount;
+  }
+
+  /**
+   * Gets the value below or at which a percentage of the recorded values
+   * lie.
+   *
+   * @param percentile
+   *          The percentile, e.g. 99.9.
+   * @return The upper bound of the bucket in microseconds, never above the
+   *         maximum. 0 if nothing was recorded.
+   */
+  public synchronized long getValueAtPercentile(final double percentile) {
+    if (this.totalCount == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0
+        * this.totalCount));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += this.counts[i];
+      if (seen >= rank) {
+        return Math.min(getBucketUpperBound(i), this.maxValue);
+      }
+    }
+    return this.maxValue;
+  }
+
+  /**
+   * Removes all recorded values.
+   */
+  public synchronized void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      this.counts[i] = 0;
+    }
+    this.totalCount = 0;
+    this.maxValue = 0;
+    this.sum = 0;
+  }
+
+  /**
+   * Gets a short summary with count, p50, p99, p999 and maximum in
+   * milliseconds.
+   *
+   * @return The summary.
+   */
+  @Override
+  public synchronized String toString() {
+    return "n=" + this.totalCount + " p50=" + toMillis(this
+        .getValueAtPercentile(50.0)) + "ms p99="
+        + toMillis(this.getValueAtPercentile(99.0)) + "ms p999="
+        + toMillis(this.getValueAtPercentile(99.9)) + "ms max="
+        + toMillis(this.maxValue) + "ms";
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private static int getBucket(final long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS))
+        & (SUB_BUCKET_COUNT - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  private static long getBucketUpperBound(final int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) {
+      return bucket;
+    }
+    final int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+    final long subBucket = bucket % SUB_BUCKET_COUNT;
+    final long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return (1L << exponent) + (subBucket + 1) * width - 1;
+  }
+
+  private static String toMillis(final long micros) {
+    return (micros / 1000) + "." + (micros % 1000 / 100);
+  }
+
+}
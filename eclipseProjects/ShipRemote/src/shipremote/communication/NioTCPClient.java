@@ -0,0 +1,481 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * A TCP client that sends and receives data via a non-blocking SocketChannel.
+ * The listener thread sleeps in a Selector and only wakes up when bytes
+ * arrived or the socket can be written again. It only reads and decodes:
+ * decoded frames are published to a FrameRingBuffer and delivered to every
+ * listener by a consumer thread of its own, so a slow listener does not stall
+ * the socket.
+ * <p>
+ * Sent commands are collected in an OutboundCommandQueue that keeps the newest
+ * value per command. While listening, the listener thread is the only writer
+ * and flushes the queue with one gathering write.
+ * </p>
+ * <p>
+ * After connecting the client offers protocol version 2 (see ShipFrameV2).
+ * Commands are sent as v1 frames until the ship answered with a v2 VERSION
+ * frame, so old firmware keeps working.
+ * </p>
+ * <p>
+ * If the listener thread loses the connection, the next sendData() throws an
+ * IOException with the reason.
+ * </p>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class NioTCPClient implements Runnable, INetworkClient {
+
+  // /////////////////////////////
+  // fields
+  // /////////////////////////////
+
+  private static final int READ_BUFFER_SIZE = 512;
+  private static final int RING_CAPACITY = 256;
+  private String host = "";
+  private int port = 0;
+  private int connectionTimeout = 10000;
+  private SocketChannel channel = null;
+  private Selector selector = null;
+  private SelectionKey selectionKey = null;
+  private final ByteBuffer readBuffer;
+  private final OutboundCommandQueue commandQueue;
+  private final FrameDecoder frameDecoder;
+  private final FrameRingBuffer frameRingBuffer;
+  private final Object writeLock = new Object();
+  private Thread listenerThread = null;
+  private volatile IOException listenerException = null;
+  private volatile IFrameTap frameTap = null;
+  private volatile boolean isListening = false;
+  private volatile boolean isConnected = false;
+  private volatile boolean isWriteRequested = false;
+
+  // ///////////////////////////
+  // constructor
+  // ///////////////////////////
+  /**
+   * Constructor. The listeners wait for data with WaitStrategy.PARK.
+   */
+  public NioTCPClient() {
+    this(WaitStrategy.PARK);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param waitStrategy
+   *          The WaitStrategy of the listener threads.
+   */
+  public NioTCPClient(final WaitStrategy waitStrategy) {
+    this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    this.commandQueue = new OutboundCommandQueue();
+    this.frameDecoder = new FrameDecoder();
+    this.frameRingBuffer = new FrameRingBuffer(RING_CAPACITY, waitStrategy);
+  }
+
+  // ///////////////////////////
+  // getter
+  // ///////////////////////////
+  /**
+   * Gets the FrameDecoder of the client. Provides the counters for decoded
+   * frames and skipped bytes.
+   *
+   * @return The FrameDecoder.
+   */
+  public FrameDecoder getFrameDecoder() {
+    return this.frameDecoder;
+  }
+
+  /**
+   * Gets the protocol version the commands are sent with.
+   *
+   * @return 1 or ShipFrameV2.VERSION.
+   */
+  public int getProtocolVersion() {
+    return this.commandQueue.getProtocolVersion();
+  }
+
+  /**
+   * Gets the OutboundCommandQueue of the client. Provides the counters for
+   * offered, replaced, skipped and sent commands.
+   *
+   * @return The OutboundCommandQueue.
+   */
+  public OutboundCommandQueue getCommandQueue() {
+    return this.commandQueue;
+  }
+
+  /**
+   * Sets a tap that sees every received frame and every sent command, e.g. a
+   * FrameJournal. Sent commands are tapped when they are queued.
+   *
+   * @param frameTap
+   *          The IFrameTap, null to remove it.
+   */
+  public void setFrameTap(final IFrameTap frameTap) {
+    this.frameTap = frameTap;
+  }
+
+  /**
+   * Gets the FrameRingBuffer between the listener thread and the listeners.
+   * Provides the sequence, lag and lost count of every listener.
+   *
+   * @return The FrameRingBuffer.
+   */
+  public FrameRingBuffer getFrameRingBuffer() {
+    return this.frameRingBuffer;
+  }
+
+  // ////////////////////////////////
+  // INetworkClient implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#isConnected()
+   */
+  public boolean isConnected() {
+    return this.isConnected;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#getConnectionTimeout()
+   */
+  public int getConnectionTimeout() {
+    return this.connectionTimeout;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#setConnectionTimeout(int)
+   */
+  public void setConnectionTimeout(final int connectionTimeout) {
+    this.connectionTimeout = connectionTimeout;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#connect(java.lang.String,
+   * int)
+   */
+  public void connect(final String host, final int port)
+      throws UnknownHostException, IOException {
+    this.host = host;
+    this.port = port;
+
+    final InetSocketAddress remoteAddr = new InetSocketAddress(this.host,
+        this.port);
+    this.channel = SocketChannel.open();
+    try {
+      // connect blocking to honor the connection timeout
+      this.channel.socket().connect(remoteAddr, this.connectionTimeout);
+      this.channel.socket().setTcpNoDelay(true);
+      this.channel.configureBlocking(false);
+      this.selector = Selector.open();
+      this.selectionKey = this.channel.register(this.selector,
+          SelectionKey.OP_READ);
+    } catch (final IOException e) {
+      this.closeChannel();
+      this.resetListenerFields();
+      throw e;
+    }
+    this.isConnected = true;
+    // version handshake, the answer is handled by the listener thread
+    this.sendData(ShipDataType.VERSION, ShipFrameV2.VERSION);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#disconnect()
+   */
+  public void disconnect() throws IOException, InterruptedException {
+
+    this.stopListening();
+    if (this.listenerThread != null) {
+      this.listenerThread.join();
+      this.listenerThread = null;
+    }
+    this.frameRingBuffer.stop();
+    if (this.channel != null) {
+      try {
+        this.closeChannel();
+      } finally {
+        this.resetListenerFields();
+      }
+    }
+  }
+
+  private void closeChannel() throws IOException {
+    try {
+      if (this.selector != null) {
+        this.selector.close();
+      }
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  private void resetListenerFields() {
+    this.channel = null;
+    this.selector = null;
+    this.selectionKey = null;
+    this.readBuffer.clear();
+    this.frameDecoder.reset();
+    this.commandQueue.clear();
+    this.isWriteRequested = false;
+    this.listenerException = null;
+    this.host = "";
+    this.port = 0;
+    this.isConnected = false;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipData)
+   */
+  public boolean sendData(final ShipData shipCommand) throws IOException {
+    if (shipCommand == null) {
+      return false;
+    }
+    return this.sendData(shipCommand.getDataType(), shipCommand
+        .getDataValue());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipDataType, int)
+   */
+  public boolean sendData(final ShipDataType dataType, final int value)
+      throws IOException {
+    final IOException reason = this.listenerException;
+    if (reason != null) {
+      final IOException e = new IOException("Listening canceled: " + reason);
+      e.initCause(reason);
+      throw e;
+    }
+    if (!this.channelAndDataAvailable(dataType)) {
+      return false;
+    }
+    this.commandQueue.offer(dataType, value);
+    final IFrameTap tap = this.frameTap;
+    if (tap != null) {
+      tap.frame(IFrameTap.DIRECTION_OUT, dataType, value);
+    }
+    if (this.isListening) {
+      // the listener thread is the single writer
+      this.requestWrite();
+    } else {
+      this.flushPendingData();
+    }
+    return true;
+  }
+
+  private void requestWrite() {
+    this.isWriteRequested = true;
+    final Selector sel = this.selector;
+    if (sel != null) {
+      sel.wakeup();
+    }
+  }
+
+  private boolean channelAndDataAvailable(final ShipDataType dataType) {
+    return this.channel != null && this.isConnected && dataType != null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#readData()
+   */
+  public byte[] readData() throws IOException {
+    byte[] receivedData = null;
+    if (this.channel != null) {
+      final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+      final int byteCount = this.channel.read(buffer);
+      if (byteCount > 0) {
+        receivedData = new byte[byteCount];
+        buffer.flip();
+        buffer.get(receivedData);
+      }
+    }
+    return receivedData;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addDataReceiverListener(shipremote
+   * .communication.IDataReceiverListener)
+   */
+  public void addDataReceiverListener(final IDataReceiverListener listener) {
+    if (listener != null) {
+      this.frameRingBuffer.addConsumer(listener);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addBatchDataReceiverListener(shipremote
+   * .communication.IBatchDataReceiverListener)
+   */
+  public void addBatchDataReceiverListener(
+      final IBatchDataReceiverListener listener) {
+    if (listener != null) {
+      this.frameRingBuffer.addConsumer(listener);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#listen()
+   */
+  public void listen() {
+    this.listenerThread = new Thread(this);
+    this.isListening = true;
+    this.frameRingBuffer.start();
+    this.listenerThread.start();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#stopListening()
+   */
+  public void stopListening() {
+    this.isListening = false;
+    this.frameRingBuffer.halt();
+    final Selector sel = this.selector;
+    if (sel != null) {
+      sel.wakeup();
+    }
+  }
+
+  @Override
+  /**
+   * Runs the listening logic. Blocks in the Selector until the channel is
+   * readable, writable or the client is woken up.
+   */
+  public void run() {
+    while (this.isListening) {
+      try {
+        this.selector.select();
+        if (!this.isListening) {
+          break;
+        }
+        if (this.isWriteRequested) {
+          this.isWriteRequested = false;
+          this.flushPendingData();
+        }
+        final Iterator<SelectionKey> keys = this.selector.selectedKeys()
+            .iterator();
+        while (keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          if (key.isValid() && key.isWritable()) {
+            this.flushPendingData();
+          }
+          if (key.isValid() && key.isReadable()) {
+            this.readAvailableData();
+          }
+        }
+      } catch (final IOException e) {
+        this.handleException(e);
+        // stops the thread
+        this.isListening = false;
+        this.isConnected = false;
+      }
+    }
+    this.flushBeforeExit();
+  }
+
+  private void flushPendingData() throws IOException {
+    synchronized (this.writeLock) {
+      final boolean isComplete = this.commandQueue.flush(this.channel);
+      if (Thread.currentThread() == this.listenerThread) {
+        // wait for OP_WRITE only while bytes are left
+        this.selectionKey.interestOps(isComplete ? SelectionKey.OP_READ
+            : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    }
+  }
+
+  private void flushBeforeExit() {
+    if (this.isConnected && this.commandQueue.hasPending()) {
+      try {
+        // e.g. a stop-ranging command sent right before stopListening()
+        this.flushPendingData();
+      } catch (final IOException e) {
+        this.handleException(e);
+      }
+    }
+  }
+
+  private void readAvailableData() throws IOException {
+    final int byteCount = this.channel.read(this.readBuffer);
+    if (byteCount < 0) {
+      throw new IOException("Connection closed by host.");
+    }
+    this.processReceivedBytes();
+  }
+
+  private void processReceivedBytes() {
+    final IFrameTap tap = this.frameTap;
+    this.readBuffer.flip();
+    while (this.readBuffer.hasRemaining()) {
+      this.frameDecoder.put(this.readBuffer);
+      while (this.frameDecoder.nextFrame()) {
+        if (this.frameDecoder.getFrameType() == ShipDataType.VERSION) {
+          this.handleVersionFrame();
+        } else {
+          // hand the frame over to the listener threads
+          this.frameRingBuffer.publish(this.frameDecoder.getFrameType(),
+              this.frameDecoder.getFrameValue());
+        }
+        if (tap != null) {
+          tap.frame(IFrameTap.DIRECTION_IN, this.frameDecoder.getFrameType(),
+              this.frameDecoder.getFrameValue());
+        }
+      }
+    }
+    this.readBuffer.clear();
+  }
+
+  private void handleVersionFrame() {
+    // old firmware only echoes our v1 frame
+    if (this.frameDecoder.getFrameVersion() >= ShipFrameV2.VERSION
+        && this.frameDecoder.getFrameValue() >= ShipFrameV2.VERSION) {
+      this.commandQueue.setProtocolVersion(ShipFrameV2.VERSION);
+    }
+  }
+
+  private void handleException(final IOException e) {
+    // thrown by the next sendData()
+    this.listenerException = e;
+  }
+
+}
@@ -0,0 +1,302 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * A queue for commands the remote sends to the ship that keeps only the newest
+ * value per command. Any thread may offer commands, a single writer thread
+ * flushes all pending commands with one gathering write.
+ * <p>
+ * SPEED_FORWARD and SPEED_BACKWARD share one slot because together they
+ * define the speed of the ship, INIT_RANGING and STOP_RANGING share one slot
+ * because together they define the ranging state. Speed and direction commands
+ * that are equal to the last sent value are skipped.
+ * </p>
+ * <p>
+ * Frames are encoded in the protocol version set by setProtocolVersion(),
+ * version 1 until the version handshake succeeded.
+ * </p>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class OutboundCommandQueue {
+
+  private static final int SLOT_RANGING = 0;
+  private static final int SLOT_SPEED = 1;
+  private static final int SLOT_DIRECTION = 2;
+  private static final int SLOT_ALIVE = 3;
+  private static final int SLOT_PING = 4;
+  private static final int SLOT_VERSION = 5;
+  private static final int SLOT_COUNT = 6;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final ShipDataType[] pendingType = new ShipDataType[SLOT_COUNT];
+  private final int[] pendingValue = new int[SLOT_COUNT];
+  private final ShipDataType[] lastSentType = new ShipDataType[SLOT_COUNT];
+  private final int[] lastSentValue = new int[SLOT_COUNT];
+  private final ByteBuffer[] frames = new ByteBuffer[SLOT_COUNT];
+  private final ByteBuffer[] batch = new ByteBuffer[SLOT_COUNT];
+  private int protocolVersion = 1;
+  private boolean isTimestampEnabled = false;
+  private int batchOffset = 0;
+  private int batchLength = 0;
+  private long offeredCount = 0;
+  private long replacedCount = 0;
+  private long skippedCount = 0;
+  private long sentCount = 0;
+  private long writeCount = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   */
+  public OutboundCommandQueue() {
+    for (int i = 0; i < SLOT_COUNT; i++) {
+      this.frames[i] = ByteBuffer
+          .allocateDirect(ShipFrameV2.LENGTH_WITH_TIMESTAMP);
+    }
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Offers a command. Replaces a pending command of the same slot that was
+   * not flushed yet.
+   *
+   * @param dataType
+   *          The type of the command.
+   * @param value
+   *          The value of the command.
+   */
+  public synchronized void offer(final ShipDataType dataType, final int value) {
+    final int slot = getSlot(dataType);
+    if (this.pendingType[slot] != null) {
+      this.replacedCount++;
+    }
+    this.pendingType[slot] = dataType;
+    this.pendingValue[slot] = value & ShipFrameV2.MAX_VALUE;
+    this.offeredCount++;
+  }
+
+  /**
+   * Sets the protocol version used to encode the next frames.
+   *
+   * @param protocolVersion
+   *          1 or ShipFrameV2.VERSION.
+   */
+  public synchronized void setProtocolVersion(final int protocolVersion) {
+    this.protocolVersion = protocolVersion;
+  }
+
+  /**
+   * Gets the protocol version used to encode frames.
+   *
+   * @return The protocol version.
+   */
+  public synchronized int getProtocolVersion() {
+    return this.protocolVersion;
+  }
+
+  /**
+   * Sets whether v2 frames carry a microsecond timestamp. Ignored for
+   * version 1.
+   *
+   * @param isTimestampEnabled
+   *          True to send timestamps, else false.
+   */
+  public synchronized void setTimestampEnabled(
+      final boolean isTimestampEnabled) {
+    this.isTimestampEnabled = isTimestampEnabled;
+  }
+
+  /**
+   * Checks whether commands are waiting to be written.
+   *
+   * @return True if a flush would write data, else false.
+   */
+  public synchronized boolean hasPending() {
+    if (this.batchOffset < this.batchLength) {
+      return true;
+    }
+    for (int i = 0; i < SLOT_COUNT; i++) {
+      if (this.pendingType[i] != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the pending commands to a channel. Must only be called by one
+   * writer at a time. If the channel does not accept all bytes the rest is
+   * kept and written first by the next flush.
+   *
+   * @param channel
+   *          The channel to write to.
+   * @return True if everything was written, false if bytes are left.
+   * @throws IOException
+   */
+  public boolean flush(final GatheringByteChannel channel) throws IOException {
+    if (!this.isBatchPending()) {
+      this.collectBatch();
+    }
+    while (this.isBatchPending()) {
+      final long written = channel.write(this.batch, this.batchOffset,
+          this.batchLength - this.batchOffset);
+      this.countWrite();
+      while (this.isBatchPending()
+          && !this.batch[this.batchOffset].hasRemaining()) {
+        this.batchOffset++;
+      }
+      if (written == 0 && this.isBatchPending()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drops all pending commands and forgets the last sent values, e.g. after a
+   * new connection was established. The protocol version falls back to 1.
+   */
+  public synchronized void clear() {
+    this.protocolVersion = 1;
+    for (int i = 0; i < SLOT_COUNT; i++) {
+      this.pendingType[i] = null;
+      this.lastSentType[i] = null;
+    }
+    this.batchOffset = 0;
+    this.batchLength = 0;
+  }
+
+  /**
+   * Gets the number of offered commands.
+   *
+   * @return The offered count.
+   */
+  public synchronized long getOfferedCount() {
+    return this.offeredCount;
+  }
+
+  /**
+   * Gets the number of commands that were replaced by a newer one before they
+   * were written.
+   *
+   * @return The replaced count.
+   */
+  public synchronized long getReplacedCount() {
+    return this.replacedCount;
+  }
+
+  /**
+   * Gets the number of commands that were not written because they were equal
+   * to the last sent value.
+   *
+   * @return The skipped count.
+   */
+  public synchronized long getSkippedCount() {
+    return this.skippedCount;
+  }
+
+  /**
+   * Gets the number of frames handed to the channel.
+   *
+   * @return The sent frame count.
+   */
+  public synchronized long getSentCount() {
+    return this.sentCount;
+  }
+
+  /**
+   * Gets the number of gathering writes.
+   *
+   * @return The write count.
+   */
+  public synchronized long getWriteCount() {
+    return this.writeCount;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private boolean isBatchPending() {
+    return this.batchOffset < this.batchLength;
+  }
+
+  private synchronized void countWrite() {
+    this.writeCount++;
+  }
+
+  private synchronized void collectBatch() {
+    this.batchOffset = 0;
+    this.batchLength = 0;
+    for (int i = 0; i < SLOT_COUNT; i++) {
+      final ShipDataType type = this.pendingType[i];
+      if (type == null) {
+        continue;
+      }
+      this.pendingType[i] = null;
+      if (this.isLastSent(i, type, this.pendingValue[i])) {
+        this.skippedCount++;
+        continue;
+      }
+      this.lastSentType[i] = type;
+      this.lastSentValue[i] = this.pendingValue[i];
+      final ByteBuffer frame = this.frames[i];
+      frame.clear();
+      this.putFrame(frame, type, this.pendingValue[i]);
+      frame.flip();
+      this.batch[this.batchLength++] = frame;
+      this.sentCount++;
+    }
+  }
+
+  private void putFrame(final ByteBuffer frame, final ShipDataType type,
+      final int value) {
+    if (this.protocolVersion < ShipFrameV2.VERSION) {
+      ShipCommandFactory.putCommandFrame(frame, type, value);
+    } else if (this.isTimestampEnabled) {
+      ShipFrameV2.put(frame, type, value, ShipFrameV2.currentTimestamp());
+    } else {
+      ShipFrameV2.put(frame, type, value);
+    }
+  }
+
+  private boolean isLastSent(final int slot, final ShipDataType type,
+      final int value) {
+    if (slot != SLOT_SPEED && slot != SLOT_DIRECTION) {
+      // alive and ranging commands are always sent
+      return false;
+    }
+    return this.lastSentType[slot] == type
+        && this.lastSentValue[slot] == value;
+  }
+
+  private static int getSlot(final ShipDataType dataType) {
+    switch (dataType) {
+      case INIT_RANGING:
+      case STOP_RANGING:
+        return SLOT_RANGING;
+      case SPEED_FORWARD:
+      case SPEED_BACKWARD:
+        return SLOT_SPEED;
+      case DIRECTION:
+        return SLOT_DIRECTION;
+      case PING:
+        return SLOT_PING;
+      case VERSION:
+        return SLOT_VERSION;
+      default:
+        return SLOT_ALIVE;
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+package shipremote.communication;
+
+/**
+ * Measures the round trip time of PING frames. The remote sends PING frames
+ * with a running id, the ship echoes every frame it receives. The time
+ * between sending and receiving the echo is recorded in a LatencyHistogram.
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class PingTracker {
+
+  private static final int ID_COUNT = 256;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final long[] sentAt = new long[ID_COUNT];
+  private final boolean[] isPending = new boolean[ID_COUNT];
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  private int nextId = 0;
+  private long sentCount = 0;
+  private long receivedCount = 0;
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Registers a new ping.
+   *
+   * @param now
+   *          The send time from System.nanoTime().
+   * @return The id to send as value of the PING frame.
+   */
+  public synchronized int nextPing(final long now) {
+    final int id = this.nextId;
+    this.nextId = (this.nextId + 1) % ID_COUNT;
+    this.sentAt[id] = now;
+    this.isPending[id] = true;
+    this.sentCount++;
+    return id;
+  }
+
+  /**
+   * Records the round trip time of a received PING echo.
+   *
+   * @param id
+   *          The value of the received PING frame.
+   * @param now
+   *          The receive time from System.nanoTime().
+   * @return True if the echo belonged to a pending ping, false for unknown
+   *         ids and duplicates.
+   */
+  public synchronized boolean pingReceived(final int id, final long now) {
+    final int index = id & (ID_COUNT - 1);
+    if (!this.isPending[index]) {
+      return false;
+    }
+    this.isPending[index] = false;
+    this.receivedCount++;
+    this.histogram.record((now - this.sentAt[index]) / 1000);
+    return true;
+  }
+
+  /**
+   * Gets the histogram of the round trip times.
+   *
+   * @return The LatencyHistogram in microseconds.
+   */
+  public LatencyHistogram getHistogram() {
+    return this.histogram;
+  }
+
+  /**
+   * Gets the number of sent pings.
+   *
+   * @return The sent count.
+   */
+  public synchronized long getSentCount() {
+    return this.sentCount;
+  }
+
+  /**
+   * Gets the number of received echoes.
+   *
+   * @return The received count.
+   */
+  public synchronized long getReceivedCount() {
+    return this.receivedCount;
+  }
+
+}
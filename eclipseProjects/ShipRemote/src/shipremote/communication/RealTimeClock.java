@@ -0,0 +1,97 @@
+package shipremote.communication;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * An IClock that follows System.nanoTime() and runs its tasks on a
+ * java.util.Timer. The Timer thread is started with the first task and ends
+ * when the last task is cancelled.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class RealTimeClock implements IClock {
+
+  private Timer timer = null;
+  private int taskCount = 0;
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.IClock#nanoTime()
+   */
+  public long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.IClock#schedule(java.lang.Runnable, long,
+   * long)
+   */
+  public synchronized IClockTask schedule(final Runnable task,
+      final long delay, final long period) {
+    if (this.timer == null) {
+      // a canceled Timer does not take new tasks
+      this.timer = new Timer();
+    }
+    final TimerClockTask clockTask = new TimerClockTask(task);
+    this.timer.schedule(clockTask.timerTask, delay, period);
+    this.taskCount++;
+    return clockTask;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.IClock#isRealTime()
+   */
+  public boolean isRealTime() {
+    return true;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private synchronized void taskCancelled() {
+    this.taskCount--;
+    if (this.taskCount == 0 && this.timer != null) {
+      this.timer.cancel();
+      this.timer = null;
+    }
+  }
+
+  private final class TimerClockTask implements IClockTask {
+
+    private final TimerTask timerTask;
+    private boolean isCancelled = false;
+
+    private TimerClockTask(final Runnable runnable) {
+      this.timerTask = new TimerTask() {
+        @Override
+        public void run() {
+          runnable.run();
+        }
+      };
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see shipremote.communication.IClockTask#cancel()
+     */
+    public void cancel() {
+      synchronized (RealTimeClock.this) {
+        if (this.isCancelled) {
+          return;
+        }
+        this.isCancelled = true;
+        this.timerTask.cancel();
+        RealTimeClock.this.taskCancelled();
+      }
+    }
+  }
+
+}
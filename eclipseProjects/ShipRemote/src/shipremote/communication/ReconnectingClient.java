@@ -0,0 +1,406 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.Random;
+
+/**
+ * An INetworkClient that wraps another client and reconnects it when the
+ * connection drops. A supervisor thread watches the wrapped client and
+ * reconnects with a jittered exponential backoff. After a reconnect the
+ * session is resumed: listening is started again and the ranging state, the
+ * last speed and the last direction are sent to the ship.
+ * <p>
+ * A drop is detected when the wrapped client reports isConnected() == false
+ * or when sendData() throws an IOException.
+ * </p>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class ReconnectingClient implements Runnable, INetworkClient {
+
+  // /////////////////////////////
+  // fields
+  // /////////////////////////////
+
+  private static final long CHECK_INTERVAL = 250;
+  private static final long MIN_BACKOFF = 100;
+  private static final long MAX_BACKOFF = 10000;
+  private final INetworkClient client;
+  private final Random random = new Random();
+  private final Object lock = new Object();
+  private String host = "";
+  private int port = 0;
+  private Thread supervisorThread = null;
+  private volatile boolean isSupervising = false;
+  private volatile boolean isListening = false;
+  private volatile boolean isReconnecting = false;
+  // a write failed, the wrapped client may still report isConnected()
+  private volatile boolean sendFailed = false;
+
+  // session state, guarded by lock
+  private ShipDataType lastRangingType = null;
+  private ShipDataType lastSpeedType = null;
+  private int lastSpeedValue = 0;
+  private boolean isDirectionSent = false;
+  private int lastDirectionValue = 0;
+
+  private volatile long reconnectCount = 0;
+  private volatile long failedAttemptCount = 0;
+  private volatile long lastReconnectTime = 0;
+  private volatile long maxReconnectTime = 0;
+  private volatile long totalReconnectTime = 0;
+
+  // ///////////////////////////
+  // constructor
+  // ///////////////////////////
+  /**
+   * Constructor.
+   *
+   * @param client
+   *          The INetworkClient to reconnect.
+   */
+  public ReconnectingClient(final INetworkClient client) {
+    this.client = client;
+  }
+
+  // ///////////////////////////
+  // getter
+  // ///////////////////////////
+  /**
+   * Gets the wrapped client.
+   *
+   * @return The INetworkClient.
+   */
+  public INetworkClient getClient() {
+    return this.client;
+  }
+
+  /**
+   * Checks whether the connection dropped and is being reestablished.
+   *
+   * @return True while reconnecting, else false.
+   */
+  public boolean isReconnecting() {
+    return this.isReconnecting;
+  }
+
+  /**
+   * Gets the number of successful reconnects.
+   *
+   * @return The reconnect count.
+   */
+  public long getReconnectCount() {
+    return this.reconnectCount;
+  }
+
+  /**
+   * Gets the number of connection attempts that failed while reconnecting.
+   *
+   * @return The failed attempt count.
+   */
+  public long getFailedAttemptCount() {
+    return this.failedAttemptCount;
+  }
+
+  /**
+   * Gets the time from detecting the last drop to the resumed session.
+   *
+   * @return The time in milliseconds.
+   */
+  public long getLastReconnectTime() {
+    return this.lastReconnectTime;
+  }
+
+  /**
+   * Gets the longest time from detecting a drop to the resumed session.
+   *
+   * @return The time in milliseconds.
+   */
+  public long getMaxReconnectTime() {
+    return this.maxReconnectTime;
+  }
+
+  /**
+   * Gets the average time from detecting a drop to the resumed session.
+   *
+   * @return The time in milliseconds, 0 if there was no reconnect.
+   */
+  public long getAverageReconnectTime() {
+    final long count = this.reconnectCount;
+    return count == 0 ? 0 : this.totalReconnectTime / count;
+  }
+
+  // ////////////////////////////////
+  // INetworkClient implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#isConnected()
+   */
+  public boolean isConnected() {
+    return this.client.isConnected();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#getConnectionTimeout()
+   */
+  public int getConnectionTimeout() {
+    return this.client.getConnectionTimeout();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#setConnectionTimeout(int)
+   */
+  public void setConnectionTimeout(final int connectionTimeout) {
+    this.client.setConnectionTimeout(connectionTimeout);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#connect(java.lang.String,
+   * int)
+   */
+  public void connect(final String host, final int port)
+      throws UnknownHostException, IOException {
+    // the first connect fails fast, reconnects start after it succeeded
+    this.client.connect(host, port);
+    this.sendFailed = false;
+    this.host = host;
+    this.port = port;
+    this.isSupervising = true;
+    this.supervisorThread = new Thread(this, "ReconnectSupervisor");
+    this.supervisorThread.setDaemon(true);
+    this.supervisorThread.start();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#disconnect()
+   */
+  public void disconnect() throws IOException, InterruptedException {
+    this.isListening = false;
+    this.isSupervising = false;
+    if (this.supervisorThread != null) {
+      this.supervisorThread.interrupt();
+      this.supervisorThread.join();
+      this.supervisorThread = null;
+    }
+    synchronized (this.lock) {
+      this.lastRangingType = null;
+      this.lastSpeedType = null;
+      this.isDirectionSent = false;
+    }
+    this.client.disconnect();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipData)
+   */
+  public boolean sendData(final ShipData shipCommand) throws IOException {
+    if (shipCommand == null) {
+      return false;
+    }
+    return this.sendData(shipCommand.getDataType(), shipCommand
+        .getDataValue());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipDataType, int)
+   */
+  public boolean sendData(final ShipDataType dataType, final int value)
+      throws IOException {
+    if (dataType == null) {
+      return false;
+    }
+    // remember the session even if the connection is down right now
+    this.rememberCommand(dataType, value);
+    try {
+      return this.client.sendData(dataType, value);
+    } catch (final IOException e) {
+      this.sendFailed = true;
+      this.wakeSupervisor();
+      throw e;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#readData()
+   */
+  public byte[] readData() throws IOException {
+    return this.client.readData();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addDataReceiverListener(shipremote
+   * .communication.IDataReceiverListener)
+   */
+  public void addDataReceiverListener(final IDataReceiverListener listener) {
+    this.client.addDataReceiverListener(listener);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addBatchDataReceiverListener(shipremote
+   * .communication.IBatchDataReceiverListener)
+   */
+  public void addBatchDataReceiverListener(
+      final IBatchDataReceiverListener listener) {
+    this.client.addBatchDataReceiverListener(listener);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#listen()
+   */
+  public void listen() {
+    this.isListening = true;
+    this.client.listen();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#stopListening()
+   */
+  public void stopListening() {
+    this.isListening = false;
+    this.client.stopListening();
+  }
+
+  @Override
+  /**
+   * Runs the supervisor. Checks the wrapped client periodically and
+   * reconnects it after a drop.
+   */
+  public void run() {
+    while (this.isSupervising) {
+      try {
+        synchronized (this.lock) {
+          this.lock.wait(CHECK_INTERVAL);
+        }
+        if (this.isSupervising
+            && (this.sendFailed || !this.client.isConnected())) {
+          this.reconnect();
+        }
+      } catch (final InterruptedException e) {
+        // disconnect() stops the supervisor
+      }
+    }
+  }
+
+  // ///////////////////////////
+  // private methods
+  // ///////////////////////////
+  private void wakeSupervisor() {
+    synchronized (this.lock) {
+      this.lock.notifyAll();
+    }
+  }
+
+  private void rememberCommand(final ShipDataType dataType, final int value) {
+    synchronized (this.lock) {
+      switch (dataType) {
+        case INIT_RANGING:
+        case STOP_RANGING:
+          this.lastRangingType = dataType;
+          break;
+        case SPEED_FORWARD:
+        case SPEED_BACKWARD:
+          this.lastSpeedType = dataType;
+          this.lastSpeedValue = value;
+          break;
+        case DIRECTION:
+          this.isDirectionSent = true;
+          this.lastDirectionValue = value;
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private void reconnect() throws InterruptedException {
+    this.isReconnecting = true;
+    final long start = System.currentTimeMillis();
+    System.out.println("Connection lost, reconnecting...");
+    int attempt = 0;
+    while (this.isSupervising) {
+      try {
+        // closes the dead socket and joins the dead listener thread
+        this.client.disconnect();
+        this.client.connect(this.host, this.port);
+        this.resumeSession();
+        this.sendFailed = false;
+        break;
+      } catch (final IOException e) {
+        this.failedAttemptCount++;
+        Thread.sleep(this.getBackoff(attempt++));
+      }
+    }
+    this.isReconnecting = false;
+    if (this.client.isConnected()) {
+      this.recordReconnectTime(System.currentTimeMillis() - start);
+    }
+  }
+
+  private void resumeSession() throws IOException {
+    if (this.isListening) {
+      this.client.listen();
+    }
+    synchronized (this.lock) {
+      if (this.lastRangingType == ShipDataType.INIT_RANGING) {
+        this.client.sendData(ShipDataType.INIT_RANGING, 0);
+      }
+      if (this.lastSpeedType != null) {
+        this.client.sendData(this.lastSpeedType, this.lastSpeedValue);
+      }
+      if (this.isDirectionSent) {
+        this.client.sendData(ShipDataType.DIRECTION, this.lastDirectionValue);
+      }
+    }
+  }
+
+  private long getBackoff(final int attempt) {
+    // the first retry is fast, then the ceiling doubles up to MAX_BACKOFF
+    final long ceiling = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(
+        attempt, 16));
+    final long half = ceiling / 2;
+    return half + (long) (this.random.nextDouble() * half);
+  }
+
+  private void recordReconnectTime(final long time) {
+    this.lastReconnectTime = time;
+    this.maxReconnectTime = Math.max(this.maxReconnectTime, time);
+    this.totalReconnectTime += time;
+    this.reconnectCount++;
+    System.out.println("Reconnected after " + time + "ms (" + this.reconnectCount
+        + " reconnects, avg " + this.getAverageReconnectTime() + "ms, max "
+        + this.maxReconnectTime + "ms)");
+  }
+
+}
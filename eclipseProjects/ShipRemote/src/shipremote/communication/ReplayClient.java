@@ -0,0 +1,401 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An INetworkClient that replays recorded frames instead of talking to a
+ * ship. The frames are delivered through the normal listener path and the
+ * commands sent by the controller are captured together with their time.
+ * <p>
+ * The replay drives a VirtualClock: before a frame is delivered the clock is
+ * advanced to the recorded time, so the tasks of the controller (e.g. the
+ * alive timer) run at the same points of the session for every replay speed.
+ * Frames with the same recorded time are delivered as one batch, like the
+ * frames of one read.
+ * </p>
+ * 
+ * <pre>
+ * VirtualClock clock = new VirtualClock();
+ * ReplayClient client = new ReplayClient(clock);
+ * client.load(new FrameJournalReader(directory));
+ * // create the controller with client and clock, connect and start it
+ * client.replay(100);
+ * List&lt;ReplayCommand&gt; commands = client.getCapturedCommands();
+ * </pre>
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class ReplayClient implements INetworkClient {
+
+  // /////////////////////////////
+  // fields
+  // /////////////////////////////
+
+  /**
+   * Replay speed to deliver the frames as fast as possible.
+   */
+  public static final double AS_FAST_AS_POSSIBLE = 0;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int BATCH_SIZE = 64;
+  private final VirtualClock clock;
+  private final List<IBatchDataReceiverListener> receiverListener;
+  private final ShipDataBatch receivedBatch;
+  private final List<ReplayCommand> recordedCommands = new ArrayList<ReplayCommand>();
+  private final List<ReplayCommand> capturedCommands = new ArrayList<ReplayCommand>();
+  private long[] frameTimes = new long[INITIAL_CAPACITY];
+  private ShipDataType[] frameTypes = new ShipDataType[INITIAL_CAPACITY];
+  private int[] frameValues = new int[INITIAL_CAPACITY];
+  private int frameCount = 0;
+  private long replayStart = 0;
+  private int connectionTimeout = 10000;
+  private volatile boolean isListening = false;
+  private volatile boolean isConnected = false;
+
+  // ///////////////////////////
+  // constructor
+  // ///////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param clock
+   *          The VirtualClock to advance, the controller must use the same
+   *          clock.
+   */
+  public ReplayClient(final VirtualClock clock) {
+    this.clock = clock;
+    this.receiverListener = new CopyOnWriteArrayList<IBatchDataReceiverListener>();
+    this.receivedBatch = new ShipDataBatch(BATCH_SIZE);
+    this.replayStart = clock.nanoTime();
+  }
+
+  // ///////////////////////////
+  // getter
+  // ///////////////////////////
+  /**
+   * Gets the clock advanced by the replay.
+   * 
+   * @return The VirtualClock.
+   */
+  public VirtualClock getClock() {
+    return this.clock;
+  }
+
+  /**
+   * Gets the number of frames to replay.
+   * 
+   * @return The frame count.
+   */
+  public synchronized int getFrameCount() {
+    return this.frameCount;
+  }
+
+  /**
+   * Gets the commands sent in the recorded session.
+   * 
+   * @return A copy of the recorded commands.
+   */
+  public synchronized List<ReplayCommand> getRecordedCommands() {
+    return new ArrayList<ReplayCommand>(this.recordedCommands);
+  }
+
+  /**
+   * Gets the commands the controller sent during the replay.
+   * 
+   * @return A copy of the captured commands.
+   */
+  public synchronized List<ReplayCommand> getCapturedCommands() {
+    return new ArrayList<ReplayCommand>(this.capturedCommands);
+  }
+
+  // ///////////////////////////
+  // public methods
+  // ///////////////////////////
+  /**
+   * Adds a frame to replay. Frames must be added in the recorded order, a
+   * time before the previous frame is moved to the time of the previous
+   * frame.
+   * 
+   * @param time
+   *          The time of the frame in nanoseconds since the session start.
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame.
+   */
+  public synchronized void addFrame(final long time,
+      final ShipDataType dataType, final int value) {
+    if (this.frameCount == this.frameTimes.length) {
+      this.grow();
+    }
+    final int i = this.frameCount++;
+    this.frameTimes[i] = i > 0 ? Math.max(time, this.frameTimes[i - 1])
+        : time;
+    this.frameTypes[i] = dataType;
+    this.frameValues[i] = value;
+  }
+
+  /**
+   * Loads a recorded session. Received frames are replayed, sent commands are
+   * kept as recorded commands. PING and VERSION frames belong to the recorded
+   * connection and are skipped.
+   * 
+   * @param reader
+   *          The FrameJournalReader of the session.
+   * @return The number of loaded frames.
+   * @throws IOException
+   */
+  public synchronized int load(final FrameJournalReader reader)
+      throws IOException {
+    final int count = this.frameCount;
+    boolean isFirst = true;
+    long origin = 0;
+    while (reader.next()) {
+      if (isFirst) {
+        origin = reader.getTimestamp();
+        isFirst = false;
+      }
+      final ShipDataType dataType = reader.getDataType();
+      if (dataType == ShipDataType.PING || dataType == ShipDataType.VERSION) {
+        continue;
+      }
+      final long time = reader.getTimestamp() - origin;
+      if (reader.getDirection() == IFrameTap.DIRECTION_IN) {
+        this.addFrame(time, dataType, reader.getDataValue());
+      } else {
+        this.recordedCommands.add(new ReplayCommand(time, dataType, reader
+            .getDataValue()));
+      }
+    }
+    return this.frameCount - count;
+  }
+
+  /**
+   * Replays all frames on the calling thread. Frames are only delivered while
+   * the client is listening.
+   * 
+   * @param speed
+   *          1 for the recorded timing, 100 for 100 times faster,
+   *          AS_FAST_AS_POSSIBLE to not wait at all.
+   * @return The number of delivered frames.
+   * @throws InterruptedException
+   */
+  public int replay(final double speed) throws InterruptedException {
+    final long start;
+    final long[] times;
+    final ShipDataType[] types;
+    final int[] values;
+    final int count;
+    synchronized (this) {
+      start = this.clock.nanoTime();
+      this.replayStart = start;
+      times = this.frameTimes;
+      types = this.frameTypes;
+      values = this.frameValues;
+      count = this.frameCount;
+    }
+    final long realStart = System.nanoTime();
+    int deliveredCount = 0;
+    for (int i = 0; i < count; i++) {
+      final long time = times[i];
+      if (speed > 0) {
+        this.sleepUntil(realStart + (long) (time / speed));
+      }
+      // runs the timer tasks due before the frame
+      this.clock.advanceTo(start + time);
+      if (this.isListening) {
+        deliveredCount++;
+        if (this.receivedBatch.add(types[i], values[i])) {
+          this.informListenerAboutDataReceived(this.receivedBatch);
+        }
+      }
+      final boolean isEndOfRead = i + 1 == count
+          || times[i + 1] != time;
+      if (isEndOfRead && !this.receivedBatch.isEmpty()) {
+        this.informListenerAboutDataReceived(this.receivedBatch);
+      }
+    }
+    return deliveredCount;
+  }
+
+  /**
+   * Removes the captured commands, e.g. before the next replay.
+   */
+  public synchronized void clearCapturedCommands() {
+    this.capturedCommands.clear();
+  }
+
+  // ////////////////////////////////
+  // INetworkClient implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#isConnected()
+   */
+  public boolean isConnected() {
+    return this.isConnected;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#getConnectionTimeout()
+   */
+  public int getConnectionTimeout() {
+    return this.connectionTimeout;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#setConnectionTimeout(int)
+   */
+  public void setConnectionTimeout(final int connectionTimeout) {
+    this.connectionTimeout = connectionTimeout;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#connect(java.lang.String,
+   * int)
+   */
+  public void connect(final String host, final int port)
+      throws UnknownHostException, IOException {
+    // nothing to connect to, the host and port are ignored
+    this.isConnected = true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#disconnect()
+   */
+  public void disconnect() throws IOException, InterruptedException {
+    this.isListening = false;
+    this.isConnected = false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipData)
+   */
+  public boolean sendData(final ShipData shipCommand) throws IOException {
+    if (shipCommand == null) {
+      return false;
+    }
+    return this.sendData(shipCommand.getDataType(), shipCommand
+        .getDataValue());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipDataType, int)
+   */
+  public synchronized boolean sendData(final ShipDataType dataType,
+      final int value) throws IOException {
+    if (!this.isConnected || dataType == null) {
+      return false;
+    }
+    this.capturedCommands.add(new ReplayCommand(this.clock.nanoTime()
+        - this.replayStart, dataType, value));
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#readData()
+   */
+  public byte[] readData() throws IOException {
+    // frames are only delivered to the listeners
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.INetworkClient#addDataReceiverListener(shipremote
+   * .communication.IDataReceiverListener)
+   */
+  public void addDataReceiverListener(final IDataReceiverListener listener) {
+    if (listener != null) {
+      this.receiverListener.add(new BatchListenerAdapter(listener));
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.INetworkClient#addBatchDataReceiverListener(shipremote
+   * .communication.IBatchDataReceiverListener)
+   */
+  public void addBatchDataReceiverListener(
+      final IBatchDataReceiverListener listener) {
+    if (listener != null) {
+      this.receiverListener.add(listener);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#listen()
+   */
+  public void listen() {
+    this.isListening = true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.INetworkClient#stopListening()
+   */
+  public void stopListening() {
+    this.isListening = false;
+  }
+
+  // ///////////////////////////
+  // private methods
+  // ///////////////////////////
+  private void grow() {
+    final int capacity = this.frameTimes.length * 2;
+    final long[] times = new long[capacity];
+    final ShipDataType[] types = new ShipDataType[capacity];
+    final int[] values = new int[capacity];
+    System.arraycopy(this.frameTimes, 0, times, 0, this.frameCount);
+    System.arraycopy(this.frameTypes, 0, types, 0, this.frameCount);
+    System.arraycopy(this.frameValues, 0, values, 0, this.frameCount);
+    this.frameTimes = times;
+    this.frameTypes = types;
+    this.frameValues = values;
+  }
+
+  private void sleepUntil(final long deadline) throws InterruptedException {
+    final long wait = deadline - System.nanoTime();
+    if (wait > 0) {
+      Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+    }
+  }
+
+  private void informListenerAboutDataReceived(final ShipDataBatch batch) {
+    for (final IBatchDataReceiverListener listener : this.receiverListener) {
+      listener.dataReceived(batch.getData(), batch.getCount());
+    }
+    batch.clear();
+  }
+
+}
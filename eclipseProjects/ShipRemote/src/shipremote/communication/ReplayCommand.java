@@ -0,0 +1,77 @@
+package shipremote.communication;
+
+/**
+ * A command captured by a ReplayClient, or recorded in a FrameJournal.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public final class ReplayCommand {
+
+  private final long time;
+  private final ShipDataType dataType;
+  private final int dataValue;
+
+  /**
+   * Constructor.
+   * 
+   * @param time
+   *          The time of the command in nanoseconds since the replay start.
+   * @param dataType
+   *          The type of the command.
+   * @param dataValue
+   *          The value of the command.
+   */
+  public ReplayCommand(final long time, final ShipDataType dataType,
+      final int dataValue) {
+    this.time = time;
+    this.dataType = dataType;
+    this.dataValue = dataValue;
+  }
+
+  /**
+   * Gets the time of the command.
+   * 
+   * @return The time in nanoseconds since the replay start.
+   */
+  public long getTime() {
+    return this.time;
+  }
+
+  /**
+   * Gets the type of the command.
+   * 
+   * @return The ShipDataType.
+   */
+  public ShipDataType getDataType() {
+    return this.dataType;
+  }
+
+  /**
+   * Gets the value of the command.
+   * 
+   * @return The value.
+   */
+  public int getDataValue() {
+    return this.dataValue;
+  }
+
+  /**
+   * Checks whether another command has the same type and value.
+   * 
+   * @param other
+   *          The other command.
+   * @return True for the same type and value, the time is not compared.
+   */
+  public boolean isSameCommand(final ReplayCommand other) {
+    return other != null && this.dataType == other.dataType
+        && this.dataValue == other.dataValue;
+  }
+
+  @Override
+  public String toString() {
+    return (this.time / 1000000L) + "ms " + this.dataType.name() + "("
+        + this.dataValue + ")";
+  }
+
+}
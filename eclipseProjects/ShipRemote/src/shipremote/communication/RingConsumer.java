@@ -0,0 +1,169 @@
+package shipremote.communication;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the frames of a FrameRingBuffer to one IDataReceiverListener on a
+ * thread of its own. The consumer keeps its own sequence, so it can fall
+ * behind without holding back the producer or other consumers.
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class RingConsumer implements Runnable {
+
+  private static final int BATCH_SIZE = 64;
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final FrameRingBuffer ringBuffer;
+  private final IBatchDataReceiverListener listener;
+  private final ShipDataBatch batch;
+  private volatile Thread thread = null;
+  private volatile long sequence;
+  private volatile long lostCount = 0;
+  private volatile boolean isRunning = false;
+  private volatile boolean isParked = false;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  RingConsumer(final FrameRingBuffer ringBuffer,
+      final IBatchDataReceiverListener listener) {
+    this.ringBuffer = ringBuffer;
+    this.listener = listener;
+    this.batch = new ShipDataBatch(BATCH_SIZE);
+    this.sequence = ringBuffer.getCursor();
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Gets the listener of the consumer.
+   *
+   * @return The IBatchDataReceiverListener.
+   */
+  public IBatchDataReceiverListener getListener() {
+    return this.listener;
+  }
+
+  /**
+   * Gets the sequence of the last frame handed to the listener.
+   *
+   * @return The sequence.
+   */
+  public long getSequence() {
+    return this.sequence;
+  }
+
+  /**
+   * Gets the number of frames the consumer is behind the producer.
+   *
+   * @return The lag in frames.
+   */
+  public long getLag() {
+    return this.ringBuffer.getCursor() - this.sequence;
+  }
+
+  /**
+   * Gets the number of frames that were overwritten before the consumer read
+   * them.
+   *
+   * @return The lost frame count.
+   */
+  public long getLostCount() {
+    return this.lostCount;
+  }
+
+  /**
+   * Runs the consumer loop.
+   */
+  public void run() {
+    final int capacity = this.ringBuffer.getCapacity();
+    final WaitStrategy waitStrategy = this.ringBuffer.getWaitStrategy();
+    final Thread self = Thread.currentThread();
+    long next = this.sequence + 1;
+    // a restarted consumer replaces the thread of the previous run
+    while (this.isRunning && this.thread == self) {
+      final long available = this.ringBuffer.getCursor();
+      if (next > available) {
+        this.waitForFrame(waitStrategy, next);
+        continue;
+      }
+      while (next <= available && this.thread == self) {
+        final long slot = this.ringBuffer.getSlot(next);
+        if (!FrameRingBuffer.isSlotOf(slot, next)) {
+          // overwritten by the producer, continue with the oldest frame
+          final long oldest = this.ringBuffer.getCursor() - capacity + 1;
+          this.lostCount += oldest - next;
+          next = oldest;
+          continue;
+        }
+        if (this.batch.add(FrameRingBuffer.getSlotType(slot),
+            FrameRingBuffer.getSlotValue(slot))) {
+          this.deliverBatch(next);
+        }
+        next++;
+      }
+      if (!this.batch.isEmpty()) {
+        this.deliverBatch(next - 1);
+      }
+    }
+  }
+
+  // ///////////////////////////////
+  // package methods
+  // ///////////////////////////////
+  void start() {
+    this.isRunning = true;
+    this.thread = this.ringBuffer.getExecutionMode().newThread(this,
+        "RingConsumer");
+    this.thread.start();
+  }
+
+  void halt() {
+    this.isRunning = false;
+    final Thread current = this.thread;
+    if (current != null) {
+      LockSupport.unpark(current);
+    }
+  }
+
+  void join() throws InterruptedException {
+    final Thread current = this.thread;
+    if (current != null && current != Thread.currentThread()) {
+      current.join();
+    }
+  }
+
+  void signal() {
+    if (this.isParked) {
+      LockSupport.unpark(this.thread);
+    }
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private void deliverBatch(final long lastSequence) {
+    this.listener.dataReceived(this.batch.getData(), this.batch.getCount());
+    this.batch.clear();
+    this.sequence = lastSequence;
+  }
+
+  private void waitForFrame(final WaitStrategy waitStrategy, final long next) {
+    if (waitStrategy != WaitStrategy.PARK) {
+      waitStrategy.idle();
+      return;
+    }
+    this.isParked = true;
+    // check again, the producer may have published before isParked was set
+    if (this.ringBuffer.getCursor() < next && this.isRunning) {
+      waitStrategy.idle();
+    }
+    this.isParked = false;
+  }
+
+}
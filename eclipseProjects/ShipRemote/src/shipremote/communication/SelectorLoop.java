@@ -0,0 +1,197 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An event loop that serves many ShipConnections with one Selector and one
+ * thread. Registrations and write requests of other threads are queued and
+ * handled by the loop thread after a wakeup.
+ *
+ * @author Andreas Gnther
+ *
+ */
+class SelectorLoop implements Runnable {
+
+  private final Selector selector;
+  private final Thread thread;
+  private final ConcurrentLinkedQueue<ShipConnection> registrations;
+  private final ConcurrentLinkedQueue<ShipConnection> writeRequests;
+  private volatile boolean isRunning = false;
+  private final AtomicInteger connectionCount = new AtomicInteger();
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          The name of the loop thread.
+   * @throws IOException
+   */
+  public SelectorLoop(String name) throws IOException {
+    this.selector = Selector.open();
+    this.registrations = new ConcurrentLinkedQueue<ShipConnection>();
+    this.writeRequests = new ConcurrentLinkedQueue<ShipConnection>();
+    this.thread = new Thread(this, name);
+    this.thread.setDaemon(true);
+  }
+
+  /**
+   * Starts the loop thread.
+   */
+  public void start() {
+    this.isRunning = true;
+    this.thread.start();
+  }
+
+  /**
+   * Stops the loop thread and waits for it. Open connections are closed.
+   * Must not be called by the loop thread.
+   *
+   * @throws InterruptedException
+   */
+  public void stop() throws InterruptedException {
+    this.isRunning = false;
+    this.selector.wakeup();
+    this.thread.join();
+  }
+
+  /**
+   * Gets the number of connections registered with this loop.
+   *
+   * @return The connection count.
+   */
+  public int getConnectionCount() {
+    return this.connectionCount.get();
+  }
+
+  /**
+   * Hands a connected channel over to the loop.
+   *
+   * @param connection
+   *          The ShipConnection.
+   */
+  public void register(ShipConnection connection) {
+    this.connectionCount.incrementAndGet();
+    this.registrations.add(connection);
+    this.selector.wakeup();
+  }
+
+  /**
+   * Called once by a ShipConnection when it was closed.
+   */
+  public void connectionClosed() {
+    this.connectionCount.decrementAndGet();
+  }
+
+  /**
+   * Asks the loop to flush the command queue of a connection.
+   *
+   * @param connection
+   *          The ShipConnection.
+   */
+  public void requestWrite(ShipConnection connection) {
+    this.writeRequests.add(connection);
+    this.selector.wakeup();
+  }
+
+  /**
+   * Runs the loop.
+   */
+  public void run() {
+    while (this.isRunning) {
+      try {
+        this.selector.select();
+      } catch (IOException e) {
+        e.printStackTrace();
+        break;
+      }
+      this.registerPending();
+      this.flushRequested();
+      final Iterator<SelectionKey> keys = this.selector.selectedKeys()
+          .iterator();
+      while (keys.hasNext()) {
+        final SelectionKey key = keys.next();
+        keys.remove();
+        this.handleKey(key);
+      }
+    }
+    this.closeAll();
+  }
+
+  private void registerPending() {
+    ShipConnection connection;
+    while ((connection = this.registrations.poll()) != null) {
+      try {
+        connection.setSelectionKey(connection.getChannel().register(
+            this.selector, SelectionKey.OP_READ, connection));
+        // commands sent before the registration
+        this.flush(connection);
+      } catch (IOException e) {
+        connection.fail(e);
+      }
+    }
+  }
+
+  private void flushRequested() {
+    ShipConnection connection;
+    while ((connection = this.writeRequests.poll()) != null) {
+      if (connection.getSelectionKey() != null && connection.isConnected()) {
+        this.flush(connection);
+      }
+    }
+  }
+
+  private void handleKey(SelectionKey key) {
+    final ShipConnection connection = (ShipConnection) key.attachment();
+    try {
+      if (key.isValid() && key.isWritable()) {
+        this.flush(connection);
+      }
+      if (key.isValid() && key.isReadable()) {
+        connection.readAvailableData();
+      }
+    } catch (IOException e) {
+      this.closeConnection(key, connection, e);
+    }
+  }
+
+  private void flush(ShipConnection connection) {
+    final SelectionKey key = connection.getSelectionKey();
+    try {
+      final boolean isComplete = connection.flushPendingData();
+      if (key.isValid()) {
+        // wait for OP_WRITE only while bytes are left
+        key.interestOps(isComplete ? SelectionKey.OP_READ
+            : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    } catch (IOException e) {
+      this.closeConnection(key, connection, e);
+    }
+  }
+
+  private void closeConnection(SelectionKey key, ShipConnection connection,
+      IOException e) {
+    key.cancel();
+    connection.fail(e);
+  }
+
+  private void closeAll() {
+    ShipConnection connection;
+    while ((connection = this.registrations.poll()) != null) {
+      connection.fail(null);
+    }
+    for (SelectionKey key : this.selector.keys()) {
+      ((ShipConnection) key.attachment()).fail(null);
+    }
+    try {
+      this.selector.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+}
@@ -1,14 +1,22 @@
 package shipremote.communication;
 
+import java.nio.ByteBuffer;
+
 /**
  * Factory class for ship commands. Each command is represented by a data frame
- * as byte array.
+ * as byte array. The put and get methods encode and decode frames in caller
+ * owned ByteBuffers without allocating.
  * 
  * @author Andreas Gnther
  * 
  */
 public class ShipCommandFactory {
 
+  /**
+   * Length of a data frame in bytes.
+   */
+  public static final int FRAME_LENGTH = 4;
+
   final static byte DATA_START = (byte) 255;
   final static byte DATA_EMPTY = (byte) 0;
   final static byte DATA_END = (byte) 0;
@@ -19,6 +27,8 @@ public class ShipCommandFactory {
   final static byte DATA_TYPE_CONTROL_DIRECTION = (byte) 5;
   final static byte DATA_TYPE_INIT_RANGING = (byte) 6;
   final static byte DATA_TYPE_STOP_RANGING = (byte) 7;
+  final static byte DATA_TYPE_PING = (byte) 8;
+  final static byte DATA_TYPE_VERSION = (byte) 9;
 
   /**
    * Gets a alive data frame.
@@ -26,9 +36,7 @@ public class ShipCommandFactory {
    * @return A alive data frame.
    */
   public static byte[] getAliveFrame() {
-    byte[] command = new byte[] { DATA_START, DATA_TYPE_ALIVE, DATA_EMPTY,
-        DATA_END };
-    return command;
+    return createFrame(DATA_TYPE_ALIVE, DATA_EMPTY);
   }
 
   /**
@@ -39,9 +47,7 @@ public class ShipCommandFactory {
    * @return A forward speed frame.
    */
   public static byte[] getForwardSpeedFrame(int speed) {
-    byte[] command = new byte[] { DATA_START, DATA_TYPE_CONTROL_SPEED_FORWARD,
-        (byte) speed, DATA_END };
-    return command;
+    return createFrame(DATA_TYPE_CONTROL_SPEED_FORWARD, speed);
   }
 
   /**
@@ -50,9 +56,7 @@ public class ShipCommandFactory {
    * @return A backward speed frame.
    */
   public static byte[] getBackwardSpeedFrame(int speed) {
-    byte[] command = new byte[] { DATA_START, DATA_TYPE_CONTROL_SPEED_BACKWARD,
-        (byte) speed, DATA_END };
-    return command;
+    return createFrame(DATA_TYPE_CONTROL_SPEED_BACKWARD, speed);
   }
 
   /**
@@ -61,9 +65,7 @@ public class ShipCommandFactory {
    * @return A direction frame.
    */
   public static byte[] getDirectionFrame(int angle) {
-    byte[] command = new byte[] { DATA_START, DATA_TYPE_CONTROL_DIRECTION,
-        (byte) angle, DATA_END };
-    return command;
+    return createFrame(DATA_TYPE_CONTROL_DIRECTION, angle);
   }
 
   /**
@@ -71,9 +73,7 @@ public class ShipCommandFactory {
    * @return A initializing-ranging frame.
    */
   public static byte[] getInitRangingFrame() {
-    byte[] command = new byte[] { DATA_START, DATA_TYPE_INIT_RANGING,
-        DATA_EMPTY, DATA_END };
-    return command;
+    return createFrame(DATA_TYPE_INIT_RANGING, DATA_EMPTY);
   }
 
   /**
@@ -81,9 +81,18 @@ public class ShipCommandFactory {
    * @return A stop-ranging frame.
    */
   public static byte[] getStopRangingFrame() {
-    byte[] command = new byte[] { DATA_START, DATA_TYPE_STOP_RANGING,
-        DATA_EMPTY, DATA_END };
-    return command;
+    return createFrame(DATA_TYPE_STOP_RANGING, DATA_EMPTY);
+  }
+
+  /**
+   * Gets a ping frame. The ship echoes it unchanged.
+   * 
+   * @param id
+   *          The id of the ping.
+   * @return A ping frame.
+   */
+  public static byte[] getPingFrame(int id) {
+    return createFrame(DATA_TYPE_PING, id);
   }
 
   /**
@@ -93,8 +102,140 @@ public class ShipCommandFactory {
    * @return A sonar frame.
    */
   public static byte[] getSonarFrame(int range) {
-    byte[] command = new byte[] { DATA_START, DATA_TYPE_SONAR, (byte) range,
-        DATA_END };
+    return createFrame(DATA_TYPE_SONAR, range);
+  }
+
+  /**
+   * Writes a data frame at the current position of a ByteBuffer. The position
+   * is moved behind the frame.
+   * 
+   * @param target
+   *          The ByteBuffer to write to. Needs at least FRAME_LENGTH remaining
+   *          bytes.
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame. Only the lower 8 bits are sent.
+   */
+  public static void putFrame(ByteBuffer target, ShipDataType dataType,
+      int value) {
+    putFrame(target, dataType.getValue(), value);
+  }
+
+  /**
+   * Writes the frame of a command the remote sends to the ship at the current
+   * position of a ByteBuffer. Types that are no command are written as alive
+   * frame.
+   * 
+   * @param target
+   *          The ByteBuffer to write to. Needs at least FRAME_LENGTH remaining
+   *          bytes.
+   * @param dataType
+   *          The type of the command.
+   * @param value
+   *          The value of the command.
+   */
+  public static void putCommandFrame(ByteBuffer target,
+      ShipDataType dataType, int value) {
+    switch (dataType) {
+      case SPEED_FORWARD:
+      case SPEED_BACKWARD:
+      case DIRECTION:
+      case PING:
+      case VERSION:
+        putFrame(target, dataType.getValue(), value);
+        break;
+      case INIT_RANGING:
+      case STOP_RANGING:
+        putFrame(target, dataType.getValue(), DATA_EMPTY);
+        break;
+      default:
+        putFrame(target, DATA_TYPE_ALIVE, DATA_EMPTY);
+        break;
+    }
+  }
+
+  /**
+   * Gets the shared ShipData of a command the remote sends to the ship. Types
+   * that are no command are mapped to the alive command, like
+   * putCommandFrame() does.
+   * 
+   * @param dataType
+   *          The type of the command.
+   * @param value
+   *          The value of the command. Only the lower 8 bits are sent.
+   * @return The ShipData of the command.
+   */
+  public static ShipData getCommand(ShipDataType dataType, int value) {
+    switch (dataType) {
+      case SPEED_FORWARD:
+      case SPEED_BACKWARD:
+      case DIRECTION:
+      case PING:
+      case VERSION:
+        return ShipData.valueOf(dataType, value & 0xFF);
+      case INIT_RANGING:
+      case STOP_RANGING:
+        return ShipData.valueOf(dataType, DATA_EMPTY);
+      default:
+        return ShipData.valueOf(ShipDataType.ALIVE, DATA_EMPTY);
+    }
+  }
+
+  /**
+   * Checks whether a complete frame starts at an index of a ByteBuffer.
+   * 
+   * @param source
+   *          The ByteBuffer to read from.
+   * @param index
+   *          The index of the first frame byte.
+   * @return True if a frame with start and end byte is at the index, else
+   *         false.
+   */
+  public static boolean isFrame(ByteBuffer source, int index) {
+    return index + FRAME_LENGTH <= source.limit()
+        && source.get(index) == DATA_START
+        && source.get(index + FRAME_LENGTH - 1) == DATA_END;
+  }
+
+  /**
+   * Gets the type of the frame that starts at an index of a ByteBuffer. The
+   * position of the buffer is not changed.
+   * 
+   * @param source
+   *          The ByteBuffer to read from.
+   * @param index
+   *          The index of the first frame byte.
+   * @return The type of the frame.
+   */
+  public static ShipDataType getFrameType(ByteBuffer source, int index) {
+    return ShipDataType.valueOf(source.get(index + 1));
+  }
+
+  /**
+   * Gets the value of the frame that starts at an index of a ByteBuffer. The
+   * position of the buffer is not changed.
+   * 
+   * @param source
+   *          The ByteBuffer to read from.
+   * @param index
+   *          The index of the first frame byte.
+   * @return The unsigned value of the frame.
+   */
+  public static int getFrameValue(ByteBuffer source, int index) {
+    return (int) source.get(index + 2) & 0xFF;
+  }
+
+  private static void putFrame(ByteBuffer target, byte type, int value) {
+    target.put(DATA_START);
+    target.put(type);
+    target.put((byte) value);
+    target.put(DATA_END);
+  }
+
+  private static byte[] createFrame(byte type, int value) {
+    final byte[] command = new byte[FRAME_LENGTH];
+    putFrame(ByteBuffer.wrap(command), type, value);
     return command;
   }
 
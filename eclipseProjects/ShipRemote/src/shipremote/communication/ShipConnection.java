@@ -0,0 +1,319 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The connection to one ship of a fleet. A ShipConnection has no thread of its
+ * own, it is served by the SelectorLoop of the ShipConnectionManager that
+ * created it. Listeners are informed by the loop thread, so they must not
+ * block.
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class ShipConnection implements INetworkClient {
+
+  // /////////////////////////////
+  // fields
+  // /////////////////////////////
+
+  private static final int READ_BUFFER_SIZE = 512;
+  private final SelectorLoop loop;
+  private int connectionTimeout = 10000;
+  private SocketChannel channel = null;
+  private volatile SelectionKey selectionKey = null;
+  private final ByteBuffer readBuffer;
+  private final OutboundCommandQueue commandQueue;
+  private final FrameDecoder frameDecoder;
+  private final ShipDataBatch receivedBatch;
+  private final List<IBatchDataReceiverListener> receiverListener;
+  private final AtomicBoolean isOpen = new AtomicBoolean(false);
+  private volatile boolean isListening = false;
+  private volatile boolean isConnected = false;
+
+  // ///////////////////////////
+  // constructor
+  // ///////////////////////////
+  /**
+   * Constructor. Connections are created by the ShipConnectionManager.
+   *
+   * @param loop
+   *          The SelectorLoop serving this connection.
+   */
+  ShipConnection(final SelectorLoop loop) {
+    this.loop = loop;
+    this.receiverListener = new CopyOnWriteArrayList<IBatchDataReceiverListener>();
+    this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    this.commandQueue = new OutboundCommandQueue();
+    this.frameDecoder = new FrameDecoder();
+    this.receivedBatch = new ShipDataBatch(READ_BUFFER_SIZE
+        / ShipCommandFactory.FRAME_LENGTH);
+  }
+
+  // ///////////////////////////
+  // getter
+  // ///////////////////////////
+  /**
+   * Gets the FrameDecoder of the connection. Provides the counters for decoded
+   * frames and skipped bytes.
+   *
+   * @return The FrameDecoder.
+   */
+  public FrameDecoder getFrameDecoder() {
+    return this.frameDecoder;
+  }
+
+  /**
+   * Gets the OutboundCommandQueue of the connection. Provides the counters for
+   * offered, replaced, skipped and sent commands.
+   *
+   * @return The OutboundCommandQueue.
+   */
+  public OutboundCommandQueue getCommandQueue() {
+    return this.commandQueue;
+  }
+
+  // ////////////////////////////////
+  // INetworkClient implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#isConnected()
+   */
+  public boolean isConnected() {
+    return this.isConnected;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#getConnectionTimeout()
+   */
+  public int getConnectionTimeout() {
+    return this.connectionTimeout;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#setConnectionTimeout(int)
+   */
+  public void setConnectionTimeout(final int connectionTimeout) {
+    this.connectionTimeout = connectionTimeout;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#connect(java.lang.String,
+   * int)
+   */
+  public void connect(final String host, final int port)
+      throws UnknownHostException, IOException {
+    if (this.isOpen.get()) {
+      throw new IOException("Connection is already open.");
+    }
+    final InetSocketAddress remoteAddr = new InetSocketAddress(host, port);
+    final SocketChannel newChannel = SocketChannel.open();
+    try {
+      // connect blocking to honor the connection timeout
+      newChannel.socket().connect(remoteAddr, this.connectionTimeout);
+      newChannel.socket().setTcpNoDelay(true);
+      newChannel.configureBlocking(false);
+    } catch (final IOException e) {
+      newChannel.close();
+      throw e;
+    }
+    this.channel = newChannel;
+    this.selectionKey = null;
+    this.readBuffer.clear();
+    this.frameDecoder.reset();
+    this.commandQueue.clear();
+    this.isOpen.set(true);
+    this.isConnected = true;
+    this.loop.register(this);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#disconnect()
+   */
+  public void disconnect() throws IOException, InterruptedException {
+    this.stopListening();
+    this.close();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipData)
+   */
+  public boolean sendData(final ShipData shipCommand) throws IOException {
+    if (shipCommand == null) {
+      return false;
+    }
+    return this.sendData(shipCommand.getDataType(), shipCommand
+        .getDataValue());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipDataType, int)
+   */
+  public boolean sendData(final ShipDataType dataType, final int value)
+      throws IOException {
+    if (!this.isConnected || dataType == null) {
+      return false;
+    }
+    this.commandQueue.offer(dataType, value);
+    // the loop thread is the single writer
+    this.loop.requestWrite(this);
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#readData()
+   */
+  public byte[] readData() throws IOException {
+    // all received bytes are consumed by the loop thread
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addDataReceiverListener(shipremote
+   * .communication.IDataReceiverListener)
+   */
+  public void addDataReceiverListener(final IDataReceiverListener listener) {
+    if (listener != null) {
+      this.receiverListener.add(new BatchListenerAdapter(listener));
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addBatchDataReceiverListener(shipremote
+   * .communication.IBatchDataReceiverListener)
+   */
+  public void addBatchDataReceiverListener(
+      final IBatchDataReceiverListener listener) {
+    if (listener != null) {
+      this.receiverListener.add(listener);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#listen()
+   */
+  public void listen() {
+    this.isListening = true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#stopListening()
+   */
+  public void stopListening() {
+    this.isListening = false;
+  }
+
+  // ///////////////////////////
+  // SelectorLoop callbacks
+  // ///////////////////////////
+  SocketChannel getChannel() {
+    return this.channel;
+  }
+
+  SelectionKey getSelectionKey() {
+    return this.selectionKey;
+  }
+
+  void setSelectionKey(final SelectionKey selectionKey) {
+    this.selectionKey = selectionKey;
+  }
+
+  boolean flushPendingData() throws IOException {
+    return this.commandQueue.flush(this.channel);
+  }
+
+  void readAvailableData() throws IOException {
+    final int byteCount = this.channel.read(this.readBuffer);
+    if (byteCount < 0) {
+      throw new IOException("Connection closed by host.");
+    }
+    this.readBuffer.flip();
+    while (this.readBuffer.hasRemaining()) {
+      this.frameDecoder.put(this.readBuffer);
+      while (this.frameDecoder.nextFrame()) {
+        if (this.isListening
+            && this.receivedBatch.add(this.frameDecoder.getFrameType(),
+                this.frameDecoder.getFrameValue())) {
+          this.informListenerAboutDataReceived(this.receivedBatch);
+        }
+      }
+    }
+    this.readBuffer.clear();
+    if (!this.receivedBatch.isEmpty()) {
+      // one call for all frames of this read
+      this.informListenerAboutDataReceived(this.receivedBatch);
+    }
+  }
+
+  void fail(final IOException e) {
+    if (e != null) {
+      System.out.println(e.toString());
+      System.out.println("Connection closed!");
+    }
+    try {
+      this.close();
+    } catch (final IOException closeException) {
+      closeException.printStackTrace();
+    }
+  }
+
+  // ///////////////////////////
+  // private methods
+  // ///////////////////////////
+  private void close() throws IOException {
+    if (!this.isOpen.compareAndSet(true, false)) {
+      return;
+    }
+    this.isListening = false;
+    this.isConnected = false;
+    this.loop.connectionClosed();
+    // the loop cancels the key of a closed channel on its next select
+    this.channel.close();
+  }
+
+  private void informListenerAboutDataReceived(final ShipDataBatch batch) {
+    for (final IBatchDataReceiverListener listener : this.receiverListener) {
+      listener.dataReceived(batch.getData(), batch.getCount());
+    }
+    batch.clear();
+  }
+
+}
@@ -0,0 +1,111 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controls a fleet of ships from one process. The connections are spread over
+ * a small number of SelectorLoops, so the number of threads does not grow with
+ * the number of ships.
+ *
+ * <pre>
+ * ShipConnectionManager manager = new ShipConnectionManager();
+ * ShipConnection ship = manager.createConnection();
+ * ship.addDataReceiverListener(listener);
+ * ship.connect(host, port);
+ * ship.listen();
+ * </pre>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public class ShipConnectionManager {
+
+  // /////////////////////////////
+  // fields
+  // /////////////////////////////
+
+  private final SelectorLoop[] loops;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+
+  // ///////////////////////////
+  // constructor
+  // ///////////////////////////
+  /**
+   * Constructor. Starts one SelectorLoop per available processor.
+   *
+   * @throws IOException
+   */
+  public ShipConnectionManager() throws IOException {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param loopCount
+   *          The number of SelectorLoops (threads) to start.
+   * @throws IOException
+   */
+  public ShipConnectionManager(final int loopCount) throws IOException {
+    if (loopCount < 1) {
+      throw new IllegalArgumentException("loopCount must be at least 1.");
+    }
+    this.loops = new SelectorLoop[loopCount];
+    for (int i = 0; i < loopCount; i++) {
+      this.loops[i] = new SelectorLoop("ShipLoop-" + i);
+    }
+    for (final SelectorLoop loop : this.loops) {
+      loop.start();
+    }
+  }
+
+  // ///////////////////////////
+  // public methods
+  // ///////////////////////////
+  /**
+   * Creates a new, unconnected ShipConnection. Connections are assigned to the
+   * loops round-robin.
+   *
+   * @return The ShipConnection.
+   */
+  public ShipConnection createConnection() {
+    final int index = (this.nextLoop.getAndIncrement() & Integer.MAX_VALUE)
+        % this.loops.length;
+    return new ShipConnection(this.loops[index]);
+  }
+
+  /**
+   * Gets the number of SelectorLoops.
+   *
+   * @return The loop count.
+   */
+  public int getLoopCount() {
+    return this.loops.length;
+  }
+
+  /**
+   * Gets the number of open connections of all loops.
+   *
+   * @return The connection count.
+   */
+  public int getConnectionCount() {
+    int count = 0;
+    for (final SelectorLoop loop : this.loops) {
+      count += loop.getConnectionCount();
+    }
+    return count;
+  }
+
+  /**
+   * Stops all loops and closes all connections.
+   *
+   * @throws InterruptedException
+   */
+  public void shutdown() throws InterruptedException {
+    for (final SelectorLoop loop : this.loops) {
+      loop.stop();
+    }
+  }
+
+}
@@ -1,40 +1,73 @@
 package shipremote.communication;
 
+import java.nio.ByteBuffer;
+
 /**
  * Provides data that defines the state of the ship.
+ * <p>
+ * ShipData is immutable. The instances for all types and the values 0 to 255
+ * are created once and shared, valueOf() looks them up in a table. Each
+ * shared instance keeps its encoded frame, so encoding is a copy of 4 bytes.
+ * Only the larger values of protocol version 2 allocate a new instance.
+ * </p>
  * @author Andreas Gnther
  *
  */
-public class ShipData {
+public final class ShipData {
+
+	private static final int TABLE_VALUES = 256;
+	private static final ShipData[][] TABLE = createTable();
 
-	private int dataValue = 0;
-	private ShipDataType dataType = ShipDataType.INVALID;
+	private final int dataValue;
+	private final ShipDataType dataType;
+	private final byte[] frame;
 
 	/**
 	 * Constructor.
 	 * @param dataType Type of data.
 	 * @param dataValue The value of the data.
 	 */
-	public ShipData(ShipDataType dataType, int dataValue) {
+	private ShipData(ShipDataType dataType, int dataValue) {
 		super();
 		this.dataValue = dataValue;
 		this.dataType = dataType;
+		this.frame = new byte[ShipCommandFactory.FRAME_LENGTH];
+		ShipCommandFactory.putFrame(ByteBuffer.wrap(this.frame), dataType, dataValue);
 	}
 
 	/**
-	 * Gets the data.
-	 * @return The data.
+	 * Gets the ShipData for a type and value. Values from 0 to 255 return a
+	 * shared instance.
+	 * @param dataType Type of data.
+	 * @param dataValue The value of the data.
+	 * @return The ShipData.
 	 */
-	public int getDataValue() {
-		return dataValue;
+	public static ShipData valueOf(ShipDataType dataType, int dataValue) {
+		if (dataType == null) {
+			dataType = ShipDataType.INVALID;
+		}
+		if (dataValue >= 0 && dataValue < TABLE_VALUES) {
+			return TABLE[dataType.ordinal()][dataValue];
+		}
+		return new ShipData(dataType, dataValue);
 	}
 
 	/**
-	 * Sets the data.
-	 * @param dataValue The data to set.
+	 * Gets the ShipData for the type and value bytes of a frame.
+	 * @param typeByte The type byte of the frame.
+	 * @param valueByte The value byte of the frame.
+	 * @return The shared ShipData.
 	 */
-	public void setDataValue(int dataValue) {
-		this.dataValue = dataValue;
+	public static ShipData valueOf(byte typeByte, byte valueByte) {
+		return TABLE[ShipDataType.valueOf(typeByte).ordinal()][valueByte & 0xFF];
+	}
+
+	/**
+	 * Gets the data.
+	 * @return The data.
+	 */
+	public int getDataValue() {
+		return dataValue;
 	}
 
 	/**
@@ -46,11 +79,14 @@ public class ShipData {
 	}
 
 	/**
-	 * Sets the type.
-	 * @param dataType The type.
+	 * Writes the encoded frame at the current position of a ByteBuffer. Only
+	 * the lower 8 bits of the value are encoded, like
+	 * ShipCommandFactory.putFrame().
+	 * @param target The ByteBuffer to write to. Needs at least
+	 *          ShipCommandFactory.FRAME_LENGTH remaining bytes.
 	 */
-	public void setDataType(ShipDataType dataType) {
-		this.dataType = dataType;
+	public void putFrame(ByteBuffer target) {
+		target.put(this.frame);
 	}
 
 	@Override
@@ -60,5 +96,16 @@ public class ShipData {
 		str += "(" + Integer.toString(this.dataValue) + ")";
 		return str;
 	}
-	
+
+	private static ShipData[][] createTable() {
+		final ShipDataType[] types = ShipDataType.values();
+		final ShipData[][] table = new ShipData[types.length][TABLE_VALUES];
+		for (int type = 0; type < types.length; type++) {
+			for (int value = 0; value < TABLE_VALUES; value++) {
+				table[type][value] = new ShipData(types[type], value);
+			}
+		}
+		return table;
+	}
+
 }
@@ -0,0 +1,74 @@
+package shipremote.communication;
+
+/**
+ * A reusable batch of received frames. The batch holds the shared ShipData
+ * instances, the array is overwritten by the next batch.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class ShipDataBatch {
+
+  private final ShipData[] data;
+  private int count = 0;
+
+  /**
+   * Constructor.
+   * 
+   * @param capacity
+   *          The maximum number of frames of the batch.
+   */
+  public ShipDataBatch(final int capacity) {
+    this.data = new ShipData[capacity];
+  }
+
+  /**
+   * Appends a frame.
+   * 
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame.
+   * @return True if the batch is full now and has to be delivered.
+   */
+  public boolean add(final ShipDataType dataType, final int value) {
+    this.data[this.count++] = ShipData.valueOf(dataType, value);
+    return this.count == this.data.length;
+  }
+
+  /**
+   * Gets the ShipData of the batch. Only the first getCount() entries are
+   * valid.
+   * 
+   * @return The ShipData array.
+   */
+  public ShipData[] getData() {
+    return this.data;
+  }
+
+  /**
+   * Gets the number of frames in the batch.
+   * 
+   * @return The frame count.
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Checks whether the batch holds no frame.
+   * 
+   * @return True if the batch is empty, else false.
+   */
+  public boolean isEmpty() {
+    return this.count == 0;
+  }
+
+  /**
+   * Empties the batch.
+   */
+  public void clear() {
+    this.count = 0;
+  }
+
+}
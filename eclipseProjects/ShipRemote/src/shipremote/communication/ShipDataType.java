@@ -40,13 +40,33 @@ public enum ShipDataType {
   /**
    * Data frame that contains a direction value.
    */
-  DIRECTION(ShipCommandFactory.DATA_TYPE_CONTROL_DIRECTION), ;
+  DIRECTION(ShipCommandFactory.DATA_TYPE_CONTROL_DIRECTION),
+  /**
+   * Data frame with the id of a round trip time measurement. Echoed by the
+   * ship.
+   */
+  PING(ShipCommandFactory.DATA_TYPE_PING),
+  /**
+   * Data frame with the highest protocol version the sender speaks. Used for
+   * the version handshake, see ShipFrameV2.
+   */
+  VERSION(ShipCommandFactory.DATA_TYPE_VERSION), ;
 
   // ///////////////////////////////
   // fields
   // ///////////////////////////////
+  private static final ShipDataType[] BY_VALUE = new ShipDataType[256];
   private byte value = (byte) 0;
 
+  static {
+    for (int i = 0; i < BY_VALUE.length; i++) {
+      BY_VALUE[i] = INVALID;
+    }
+    for (final ShipDataType type : values()) {
+      BY_VALUE[type.value & 0xFF] = type;
+    }
+  }
+
   // ///////////////////////////////
   // constructor
   // ///////////////////////////////
@@ -72,21 +92,6 @@ public enum ShipDataType {
    * @return The corresponding enumeration type.
    */
   public static ShipDataType valueOf(byte byteValue) {
-    if (byteValue == SPEED_FORWARD.getValue()) {
-      return SPEED_FORWARD;
-    } else if (byteValue == SPEED_BACKWARD.getValue()) {
-      return SPEED_BACKWARD;
-    } else if (byteValue == DIRECTION.getValue()) {
-      return DIRECTION;
-    } else if (byteValue == SONAR.getValue()) {
-      return SONAR;
-    } else if (byteValue == INIT_RANGING.getValue()) {
-      return INIT_RANGING;
-    } else if (byteValue == STOP_RANGING.getValue()) {
-      return STOP_RANGING;
-    } else if (byteValue == ALIVE.getValue()) {
-      return ALIVE;
-    }
-    return INVALID;
+    return BY_VALUE[byteValue & 0xFF];
   }
 }
@@ -0,0 +1,178 @@
+package shipremote.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a version 2 data frame. In contrast to the fixed 4 byte frame of
+ * ShipCommandFactory a v2 frame carries a length, a 16 bit value, an optional
+ * microsecond timestamp and a CRC-16:
+ *
+ * <pre>
+ * | START | length | type | flags | value (2) | [timestamp (4)] | crc (2) |
+ * </pre>
+ *
+ * The length counts the bytes behind the length byte. The CRC-16/CCITT
+ * (polynomial 0x1021, initial value 0xFFFF) covers all bytes in front of it.
+ * All multi byte fields are big endian.
+ * <p>
+ * Version handshake: after connecting the remote sends a v1 VERSION frame
+ * with the value 2. A ship that speaks v2 answers with a v2 VERSION frame,
+ * older firmware only echoes the v1 frame, so both sides stay at v1.
+ * </p>
+ *
+ * @author Andreas Gnther
+ *
+ */
+public final class ShipFrameV2 {
+
+  /**
+   * The protocol version of this frame layout.
+   */
+  public static final int VERSION = 2;
+  /**
+   * First byte of a v2 frame. Differs from ShipCommandFactory.DATA_START.
+   */
+  public static final byte START = (byte) 0xFE;
+  /**
+   * Flag for a frame that carries a timestamp.
+   */
+  public static final byte FLAG_TIMESTAMP = 0x01;
+  /**
+   * Length of a frame without timestamp in bytes.
+   */
+  public static final int LENGTH = 8;
+  /**
+   * Length of a frame with timestamp in bytes.
+   */
+  public static final int LENGTH_WITH_TIMESTAMP = 12;
+  /**
+   * Bytes in front of the first byte counted by the length byte.
+   */
+  public static final int PREFIX_LENGTH = 2;
+  /**
+   * Highest value a v2 frame can carry.
+   */
+  public static final int MAX_VALUE = 0xFFFF;
+
+  static final int POS_LENGTH = 1;
+  static final int POS_TYPE = 2;
+  static final int POS_FLAGS = 3;
+  static final int POS_VALUE = 4;
+  static final int POS_TIMESTAMP = 6;
+  static final int CRC_LENGTH = 2;
+
+  private static final int CRC_INITIAL = 0xFFFF;
+  private static final int[] CRC_TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i << 8;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+      }
+      CRC_TABLE[i] = crc & 0xFFFF;
+    }
+  }
+
+  private ShipFrameV2() {
+  }
+
+  /**
+   * Writes a frame without timestamp at the current position of a
+   * ByteBuffer.
+   *
+   * @param target
+   *          The ByteBuffer to write to. Needs at least LENGTH remaining bytes.
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame. Only the lower 16 bits are sent.
+   */
+  public static void put(ByteBuffer target, ShipDataType dataType, int value) {
+    final int start = target.position();
+    putHeader(target, LENGTH, dataType, (byte) 0, value);
+    putCrc(target, start);
+  }
+
+  /**
+   * Writes a frame with timestamp at the current position of a ByteBuffer.
+   *
+   * @param target
+   *          The ByteBuffer to write to. Needs at least LENGTH_WITH_TIMESTAMP
+   *          remaining bytes.
+   * @param dataType
+   *          The type of the frame.
+   * @param value
+   *          The value of the frame. Only the lower 16 bits are sent.
+   * @param timestamp
+   *          The timestamp in microseconds. Only the lower 32 bits are sent.
+   */
+  public static void put(ByteBuffer target, ShipDataType dataType, int value,
+      long timestamp) {
+    final int start = target.position();
+    putHeader(target, LENGTH_WITH_TIMESTAMP, dataType, FLAG_TIMESTAMP, value);
+    target.putInt((int) timestamp);
+    putCrc(target, start);
+  }
+
+  /**
+   * Checks whether a length byte belongs to a valid frame.
+   *
+   * @param length
+   *          The unsigned value of the length byte.
+   * @return True if the length is valid, else false.
+   */
+  public static boolean isValidLength(int length) {
+    return length == LENGTH - PREFIX_LENGTH
+        || length == LENGTH_WITH_TIMESTAMP - PREFIX_LENGTH;
+  }
+
+  /**
+   * Gets the current microsecond timestamp as sent in frames.
+   *
+   * @return The timestamp in microseconds.
+   */
+  public static long currentTimestamp() {
+    return (System.nanoTime() / 1000) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Adds one byte to a CRC-16.
+   *
+   * @param crc
+   *          The CRC of the bytes so far, CRC_INITIAL for the first byte.
+   * @param b
+   *          The next byte.
+   * @return The updated CRC.
+   */
+  static int updateCrc(int crc, byte b) {
+    return ((crc << 8) ^ CRC_TABLE[((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+  }
+
+  /**
+   * Gets the initial value of the CRC-16.
+   *
+   * @return The initial value.
+   */
+  static int initialCrc() {
+    return CRC_INITIAL;
+  }
+
+  private static void putHeader(ByteBuffer target, int length,
+      ShipDataType dataType, byte flags, int value) {
+    target.put(START);
+    target.put((byte) (length - PREFIX_LENGTH));
+    target.put(dataType.getValue());
+    target.put(flags);
+    target.putShort((short) value);
+  }
+
+  private static void putCrc(ByteBuffer target, int start) {
+    int crc = CRC_INITIAL;
+    for (int i = start; i < target.position(); i++) {
+      crc = updateCrc(crc, target.get(i));
+    }
+    target.putShort((short) crc);
+  }
+
+}
@@ -5,12 +5,23 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 /**
  * A TCPClient that sends and receives data via socket.
+ * <p>
+ * The listener thread only reads and decodes. Decoded frames are published to
+ * a FrameRingBuffer and delivered to every listener by a consumer thread of
+ * its own, so a slow listener does not stall the socket. Batch listeners get
+ * all frames available at once in one call.
+ * </p>
+ * <p>
+ * With ExecutionMode.PLATFORM the listener thread polls the socket with
+ * available(). With ExecutionMode.VIRTUAL the listener and consumer threads
+ * are virtual threads and the listener blocks in read().
+ * </p>
  * 
  * @author Andreas Gnther
  * 
@@ -21,65 +32,104 @@ public class TCPClient implements Runnable, INetworkClient {
   // fields
   // /////////////////////////////
 
-  private static final int FRAME_LENGTH = 4;
+  private static final int READ_BUFFER_SIZE = 512;
+  private static final int RING_CAPACITY = 256;
+  // a blocking read returns this often to check for stopListening()
+  private static final int READ_TIMEOUT = 100;
   private String host = "";
   private int port = 0;
   private int connectionTimeout = 10000;
   private Socket socket = null;
   private InputStream inStream = null;
   private OutputStream outStream = null;
-  private List<IDataReceiverListener> receiverListener = null;
+  private FrameRingBuffer frameRingBuffer = null;
+  private ExecutionMode executionMode = null;
   private Thread listenerTread = null;
-  private boolean isListening = false;
-  private boolean isConnected = false;
+  private volatile boolean isListening = false;
+  private volatile boolean isConnected = false;
+  private FrameDecoder frameDecoder = null;
+  private ByteBuffer sendBuffer = null;
+  private byte[] readBuffer = null;
+  private volatile IFrameTap frameTap = null;
 
   // ///////////////////////////
   // constructor
   // ///////////////////////////
   /**
-   * Constructor.
+   * Constructor. The listeners wait for data with WaitStrategy.PARK.
    */
   public TCPClient() {
-    this.receiverListener = new ArrayList<IDataReceiverListener>();
+    this(WaitStrategy.PARK);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param waitStrategy
+   *          The WaitStrategy of the listener threads.
+   */
+  public TCPClient(final WaitStrategy waitStrategy) {
+    this(waitStrategy, ExecutionMode.PLATFORM);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param waitStrategy
+   *          The WaitStrategy of the listener threads.
+   * @param executionMode
+   *          The ExecutionMode of the listener threads.
+   */
+  public TCPClient(final WaitStrategy waitStrategy,
+      final ExecutionMode executionMode) {
+    this.executionMode = executionMode;
+    this.frameRingBuffer = new FrameRingBuffer(RING_CAPACITY, waitStrategy,
+        executionMode);
+    this.frameDecoder = new FrameDecoder();
+    this.sendBuffer = ByteBuffer.allocate(ShipCommandFactory.FRAME_LENGTH);
+    this.readBuffer = new byte[READ_BUFFER_SIZE];
   }
 
   // ///////////////////////////
-  // private methods
+  // getter
   // ///////////////////////////
+  /**
+   * Gets the FrameDecoder of the client. Provides the counters for decoded
+   * frames and skipped bytes.
+   * 
+   * @return The FrameDecoder.
+   */
+  public FrameDecoder getFrameDecoder() {
+    return this.frameDecoder;
+  }
 
-  private ShipData bytesToShipData(final Byte[] receivedData) {
-    if (receivedData[0] == ShipCommandFactory.DATA_START) {
-      final int value = (int) receivedData[2] & 0xFF;
-      return new ShipData(ShipDataType.valueOf(receivedData[1]), value);
-    }
-    return null;
+  /**
+   * Sets a tap that sees every sent and received frame, e.g. a FrameJournal.
+   * 
+   * @param frameTap
+   *          The IFrameTap, null to remove it.
+   */
+  public void setFrameTap(final IFrameTap frameTap) {
+    this.frameTap = frameTap;
   }
 
-  private byte[] shipDataToBytes(final ShipData shipCommand) {
-    byte[] data = null;
-    switch (shipCommand.getDataType()) {
-      case INIT_RANGING:
-        data = ShipCommandFactory.getInitRangingFrame();
-        break;
-      case STOP_RANGING:
-        data = ShipCommandFactory.getStopRangingFrame();
-        break;
-      case SPEED_FORWARD:
-        data = ShipCommandFactory.getForwardSpeedFrame(shipCommand
-            .getDataValue());
-        break;
-      case SPEED_BACKWARD:
-        data = ShipCommandFactory.getBackwardSpeedFrame(shipCommand
-            .getDataValue());
-        break;
-      case DIRECTION:
-        data = ShipCommandFactory.getDirectionFrame(shipCommand.getDataValue());
-        break;
-      default:
-        data = ShipCommandFactory.getAliveFrame();
-        break;
-    }
-    return data;
+  /**
+   * Gets the ExecutionMode of the listener threads.
+   * 
+   * @return The ExecutionMode.
+   */
+  public ExecutionMode getExecutionMode() {
+    return this.executionMode;
+  }
+
+  /**
+   * Gets the FrameRingBuffer between the listener thread and the listeners.
+   * Provides the sequence, lag and lost count of every listener.
+   * 
+   * @return The FrameRingBuffer.
+   */
+  public FrameRingBuffer getFrameRingBuffer() {
+    return this.frameRingBuffer;
   }
 
   // ////////////////////////////////
@@ -126,6 +176,9 @@ public class TCPClient implements Runnable, INetworkClient {
         this.port);
     this.socket = new Socket();
     this.socket.connect(remoteAddr, this.connectionTimeout);
+    if (this.isBlockingRead()) {
+      this.socket.setSoTimeout(READ_TIMEOUT);
+    }
     this.inStream = this.socket.getInputStream();
     this.outStream = this.socket.getOutputStream();
     this.isConnected = true;
@@ -143,6 +196,7 @@ public class TCPClient implements Runnable, INetworkClient {
     if (this.listenerTread != null) {
       this.listenerTread.join();
     }
+    this.frameRingBuffer.stop();
     if (this.socket != null) {
       try {
         this.socket.close();
@@ -161,6 +215,7 @@ public class TCPClient implements Runnable, INetworkClient {
     this.host = "";
     this.port = 0;
     this.isConnected = false;
+    this.frameDecoder.reset();
   }
 
   /*
@@ -171,16 +226,41 @@ public class TCPClient implements Runnable, INetworkClient {
    * .ShipData)
    */
   public boolean sendData(final ShipData shipCommand) throws IOException {
-    final byte[] data = this.shipDataToBytes(shipCommand);
-    if (this.streamAndDataAvailable(data)) {
-      this.outStream.write(data);
+    if (shipCommand == null) {
+      return false;
+    }
+    return this.sendData(shipCommand.getDataType(), shipCommand
+        .getDataValue());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipDataType, int)
+   */
+  public boolean sendData(final ShipDataType dataType, final int value)
+      throws IOException {
+    if (this.streamAndDataAvailable(dataType)) {
+      synchronized (this.sendBuffer) {
+        this.sendBuffer.clear();
+        ShipCommandFactory.getCommand(dataType, value).putFrame(
+            this.sendBuffer);
+        this.outStream.write(this.sendBuffer.array(), 0, this.sendBuffer
+            .position());
+      }
+      final IFrameTap tap = this.frameTap;
+      if (tap != null) {
+        tap.frame(IFrameTap.DIRECTION_OUT, dataType, value);
+      }
       return true;
     }
     return false;
   }
 
-  private boolean streamAndDataAvailable(final byte[] data) {
-    return this.outStream != null && data != null;
+  private boolean streamAndDataAvailable(final ShipDataType dataType) {
+    return this.outStream != null && dataType != null;
   }
 
   /*
@@ -193,7 +273,7 @@ public class TCPClient implements Runnable, INetworkClient {
     if (this.inStream != null) {
       int byteCount;
       byteCount = this.inStream.available();
-      if (byteCount >= 4) {
+      if (byteCount > 0) {
         receivedData = new byte[byteCount];
         this.inStream.read(receivedData);
       }
@@ -210,7 +290,21 @@ public class TCPClient implements Runnable, INetworkClient {
    */
   public void addDataReceiverListener(final IDataReceiverListener listener) {
     if (listener != null) {
-      this.receiverListener.add(listener);
+      this.frameRingBuffer.addConsumer(listener);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.INetworkClient#addBatchDataReceiverListener(shipremote
+   * .communication.IBatchDataReceiverListener)
+   */
+  public void addBatchDataReceiverListener(
+      final IBatchDataReceiverListener listener) {
+    if (listener != null) {
+      this.frameRingBuffer.addConsumer(listener);
     }
   }
 
@@ -220,8 +314,9 @@ public class TCPClient implements Runnable, INetworkClient {
    * @see shipremote.communication.NetworkClient#listen()
    */
   public void listen() {
-    this.listenerTread = new Thread(this);
+    this.listenerTread = this.executionMode.newThread(this, "TCPClient");
     this.isListening = true;
+    this.frameRingBuffer.start();
     this.listenerTread.start();
   }
 
@@ -232,6 +327,7 @@ public class TCPClient implements Runnable, INetworkClient {
    */
   public void stopListening() {
     this.isListening = false;
+    this.frameRingBuffer.halt();
   }
 
   @Override
@@ -240,34 +336,63 @@ public class TCPClient implements Runnable, INetworkClient {
    */
   public void run() {
     while (this.isListening) {
-      byte[] receivedData;
       try {
-        receivedData = this.readData();
-        if (receivedData != null) {
-          // get the frame bytes
-          final Byte[] shipDataBytes = this.getFrameBytes(receivedData);
-          // convert to ShipData
-          final ShipData shipData = this.bytesToShipData(shipDataBytes);
-          if (shipData != null) {
-            // inform the listener
-            this.informListenerAboutDataReceived(shipData);
-          }
+        final int byteCount = this.readAvailableData(this.readBuffer);
+        if (byteCount > 0) {
+          // decode every complete frame
+          this.processReceivedData(this.readBuffer, byteCount);
         }
       } catch (final IOException e) {
         this.handleException(e);
         // stops the thread
         this.isListening = false;
+        this.isConnected = false;
       }
     }
   }
 
-  private Byte[] getFrameBytes(final byte[] receivedData) {
-    final Byte[] shipDataBytes = new Byte[FRAME_LENGTH];
-    final int len = shipDataBytes.length;
-    for (int i = 0; i < len; i++) {
-      shipDataBytes[i] = new Byte(receivedData[receivedData.length - (len - i)]);
+  private boolean isBlockingRead() {
+    return this.executionMode == ExecutionMode.VIRTUAL;
+  }
+
+  private int readAvailableData(final byte[] buffer) throws IOException {
+    if (this.inStream != null && this.isBlockingRead()) {
+      try {
+        final int byteCount = this.inStream.read(buffer, 0, buffer.length);
+        if (byteCount < 0) {
+          throw new IOException("Connection closed by host.");
+        }
+        return byteCount;
+      } catch (final SocketTimeoutException e) {
+        return 0;
+      }
+    }
+    if (this.inStream != null) {
+      final int byteCount = this.inStream.available();
+      if (byteCount > 0) {
+        return this.inStream.read(buffer, 0, Math.min(byteCount,
+            buffer.length));
+      }
+    }
+    return 0;
+  }
+
+  private void processReceivedData(final byte[] receivedData,
+      final int length) {
+    final IFrameTap tap = this.frameTap;
+    int offset = 0;
+    while (offset < length) {
+      offset += this.frameDecoder.put(receivedData, offset, length - offset);
+      while (this.frameDecoder.nextFrame()) {
+        // hand the frame over to the listener threads
+        this.frameRingBuffer.publish(this.frameDecoder.getFrameType(),
+            this.frameDecoder.getFrameValue());
+        if (tap != null) {
+          tap.frame(IFrameTap.DIRECTION_IN, this.frameDecoder.getFrameType(),
+              this.frameDecoder.getFrameValue());
+        }
+      }
     }
-    return shipDataBytes;
   }
 
   private void handleException(final IOException e) {
@@ -276,10 +401,4 @@ public class TCPClient implements Runnable, INetworkClient {
     e.printStackTrace();
   }
 
-  private void informListenerAboutDataReceived(final ShipData shipData) {
-    for (final IDataReceiverListener listener : this.receiverListener) {
-      listener.dataReceived(shipData);
-    }
-  }
-
 }
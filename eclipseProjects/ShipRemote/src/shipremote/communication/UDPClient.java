@@ -0,0 +1,557 @@
+package shipremote.communication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A UDP client that sends and receives sequenced datagrams via a
+ * DatagramChannel. See DatagramFrame for the layout of a datagram.
+ * <p>
+ * Received frames that are older than the newest frame of the same type are
+ * dropped. Alive and ranging frames are acknowledged by the receiver and
+ * retransmitted until the acknowledgement arrived or the retries are used up.
+ * Counters for lost, reordered and duplicate datagrams are provided. The
+ * receiver remembers the last SEQUENCE_WINDOW sequences, so a late copy of a
+ * delivered frame is counted as duplicate and only the first copy of a missing
+ * frame makes up for its loss.
+ * </p>
+ *
+ * @author Andreas Gnther
+ */
+public class UDPClient implements Runnable, INetworkClient {
+
+  // /////////////////////////////
+  // fields
+  // /////////////////////////////
+
+  private static final int RETRANSMIT_INTERVAL = 200;
+  private static final int MAX_RETRANSMITS = 10;
+  private static final int SEQUENCE_RESTART_DISTANCE = 1000;
+  // sequences below the highest one that are told apart as duplicate or late
+  private static final int SEQUENCE_WINDOW = 64;
+  private static final int SLOT_ALIVE = 0;
+  private static final int SLOT_RANGING = 1;
+  private static final int SLOT_COUNT = 2;
+  private static final int BATCH_SIZE = 64;
+  private String host = "";
+  private int port = 0;
+  private int connectionTimeout = 10000;
+  private DatagramChannel channel = null;
+  private Selector selector = null;
+  private final ByteBuffer receiveBuffer;
+  private final ByteBuffer sendBuffer;
+  private final ByteBuffer ackBuffer;
+  private final ShipDataBatch receivedBatch;
+  private final List<IBatchDataReceiverListener> receiverListener;
+  private Thread listenerThread = null;
+  private volatile boolean isListening = false;
+  private volatile boolean isConnected = false;
+
+  // sender state, guarded by sendBuffer
+  private int nextSequence = 0;
+  private final ShipDataType[] unackedType = new ShipDataType[SLOT_COUNT];
+  private final int[] unackedValue = new int[SLOT_COUNT];
+  private final int[] unackedSequence = new int[SLOT_COUNT];
+  private final long[] unackedSentAt = new long[SLOT_COUNT];
+  private final int[] unackedRetransmits = new int[SLOT_COUNT];
+
+  // receiver state, used by the listener thread only
+  private boolean isFirstDatagram = true;
+  private int highestSequence = 0;
+  // bit n is set if highestSequence - n was received
+  private long receivedWindow = 0;
+  private final int[] lastSequenceByType = new int[ShipDataType.values().length];
+  private final boolean[] isTypeReceived = new boolean[ShipDataType.values().length];
+
+  private volatile long receivedCount = 0;
+  private volatile long lostCount = 0;
+  private volatile long reorderedCount = 0;
+  private volatile long duplicateCount = 0;
+  private volatile long retransmitCount = 0;
+  private volatile long failedCount = 0;
+
+  // ///////////////////////////
+  // constructor
+  // ///////////////////////////
+  /**
+   * Constructor.
+   */
+  public UDPClient() {
+    this.receiverListener = new CopyOnWriteArrayList<IBatchDataReceiverListener>();
+    this.receiveBuffer = ByteBuffer.allocateDirect(DatagramFrame.LENGTH * 4);
+    this.sendBuffer = ByteBuffer.allocateDirect(DatagramFrame.LENGTH);
+    this.ackBuffer = ByteBuffer.allocateDirect(DatagramFrame.LENGTH);
+    this.receivedBatch = new ShipDataBatch(BATCH_SIZE);
+  }
+
+  // ///////////////////////////
+  // getter
+  // ///////////////////////////
+  /**
+   * Gets the number of accepted datagrams.
+   *
+   * @return The received count.
+   */
+  public long getReceivedCount() {
+    return this.receivedCount;
+  }
+
+  /**
+   * Gets the number of datagrams that never arrived, judged by gaps in the
+   * sequence numbers.
+   *
+   * @return The lost count.
+   */
+  public long getLostCount() {
+    return this.lostCount;
+  }
+
+  /**
+   * Gets the number of datagrams that arrived after a datagram with a higher
+   * sequence number.
+   *
+   * @return The reordered count.
+   */
+  public long getReorderedCount() {
+    return this.reorderedCount;
+  }
+
+  /**
+   * Gets the number of datagrams that arrived more than once.
+   *
+   * @return The duplicate count.
+   */
+  public long getDuplicateCount() {
+    return this.duplicateCount;
+  }
+
+  /**
+   * Gets the number of retransmitted reliable frames.
+   *
+   * @return The retransmit count.
+   */
+  public long getRetransmitCount() {
+    return this.retransmitCount;
+  }
+
+  /**
+   * Gets the number of reliable frames that were never acknowledged.
+   *
+   * @return The failed count.
+   */
+  public long getFailedCount() {
+    return this.failedCount;
+  }
+
+  // ////////////////////////////////
+  // INetworkClient implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#isConnected()
+   */
+  public boolean isConnected() {
+    return this.isConnected;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#getConnectionTimeout()
+   */
+  public int getConnectionTimeout() {
+    return this.connectionTimeout;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#setConnectionTimeout(int)
+   */
+  public void setConnectionTimeout(final int connectionTimeout) {
+    this.connectionTimeout = connectionTimeout;
+  }
+
+  /**
+   * Connects the client to a host. UDP has no handshake, the channel is only
+   * bound to the address of the host.
+   *
+   * @param host
+   *          The IP address of the host.
+   * @param port
+   *          The port the host is listening.
+   * @throws UnknownHostException
+   * @throws IOException
+   */
+  public void connect(final String host, final int port)
+      throws UnknownHostException, IOException {
+    this.host = host;
+    this.port = port;
+
+    final InetSocketAddress remoteAddr = new InetSocketAddress(this.host,
+        this.port);
+    if (remoteAddr.isUnresolved()) {
+      throw new UnknownHostException(host);
+    }
+    this.channel = DatagramChannel.open();
+    try {
+      this.channel.configureBlocking(false);
+      this.channel.connect(remoteAddr);
+      this.selector = Selector.open();
+      this.channel.register(this.selector, SelectionKey.OP_READ);
+    } catch (final IOException e) {
+      this.closeChannel();
+      this.resetListenerFields();
+      throw e;
+    }
+    this.isConnected = true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#disconnect()
+   */
+  public void disconnect() throws IOException, InterruptedException {
+
+    this.stopListening();
+    if (this.listenerThread != null) {
+      this.listenerThread.join();
+      this.listenerThread = null;
+    }
+    if (this.channel != null) {
+      try {
+        this.closeChannel();
+      } finally {
+        this.resetListenerFields();
+      }
+    }
+  }
+
+  private void closeChannel() throws IOException {
+    try {
+      if (this.selector != null) {
+        this.selector.close();
+      }
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  private void resetListenerFields() {
+    this.channel = null;
+    this.selector = null;
+    this.host = "";
+    this.port = 0;
+    this.isConnected = false;
+    synchronized (this.sendBuffer) {
+      for (int i = 0; i < SLOT_COUNT; i++) {
+        this.unackedType[i] = null;
+      }
+    }
+    this.isFirstDatagram = true;
+    for (int i = 0; i < this.isTypeReceived.length; i++) {
+      this.isTypeReceived[i] = false;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipData)
+   */
+  public boolean sendData(final ShipData shipCommand) throws IOException {
+    if (shipCommand == null) {
+      return false;
+    }
+    return this.sendData(shipCommand.getDataType(), shipCommand
+        .getDataValue());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#sendData(shipremote.communication
+   * .ShipDataType, int)
+   */
+  public boolean sendData(final ShipDataType dataType, final int value)
+      throws IOException {
+    if (this.channel == null || !this.isConnected || dataType == null) {
+      return false;
+    }
+    synchronized (this.sendBuffer) {
+      final int sequence = this.nextSequence++;
+      if (DatagramFrame.isReliable(dataType)) {
+        final int slot = dataType == ShipDataType.ALIVE ? SLOT_ALIVE
+            : SLOT_RANGING;
+        this.unackedType[slot] = dataType;
+        this.unackedValue[slot] = value;
+        this.unackedSequence[slot] = sequence;
+        this.unackedSentAt[slot] = System.nanoTime();
+        this.unackedRetransmits[slot] = 0;
+      }
+      this.writeDatagram(dataType, value, sequence);
+    }
+    return true;
+  }
+
+  private void writeDatagram(final ShipDataType dataType, final int value,
+      final int sequence) throws IOException {
+    final byte flags = DatagramFrame.isReliable(dataType) ? DatagramFrame.FLAG_RELIABLE
+        : 0;
+    this.sendBuffer.clear();
+    DatagramFrame.put(this.sendBuffer, flags, sequence, dataType, value);
+    this.sendBuffer.flip();
+    this.channel.write(this.sendBuffer);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#readData()
+   */
+  public byte[] readData() throws IOException {
+    byte[] receivedData = null;
+    if (this.channel != null) {
+      final ByteBuffer buffer = ByteBuffer.allocate(DatagramFrame.LENGTH * 4);
+      final int byteCount = this.channel.read(buffer);
+      if (byteCount > 0) {
+        receivedData = new byte[byteCount];
+        buffer.flip();
+        buffer.get(receivedData);
+      }
+    }
+    return receivedData;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addDataReceiverListener(shipremote
+   * .communication.IDataReceiverListener)
+   */
+  public void addDataReceiverListener(final IDataReceiverListener listener) {
+    if (listener != null) {
+      this.receiverListener.add(new BatchListenerAdapter(listener));
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * shipremote.communication.INetworkClient#addBatchDataReceiverListener(shipremote
+   * .communication.IBatchDataReceiverListener)
+   */
+  public void addBatchDataReceiverListener(
+      final IBatchDataReceiverListener listener) {
+    if (listener != null) {
+      this.receiverListener.add(listener);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#listen()
+   */
+  public void listen() {
+    this.listenerThread = new Thread(this);
+    this.isListening = true;
+    this.listenerThread.start();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see shipremote.communication.INetworkClient#stopListening()
+   */
+  public void stopListening() {
+    this.isListening = false;
+    final Selector sel = this.selector;
+    if (sel != null) {
+      sel.wakeup();
+    }
+  }
+
+  @Override
+  /**
+   * Runs the listening logic. Blocks in the Selector until a datagram arrived
+   * or a reliable frame has to be retransmitted.
+   */
+  public void run() {
+    while (this.isListening) {
+      try {
+        this.selector.select(RETRANSMIT_INTERVAL);
+        if (!this.isListening) {
+          break;
+        }
+        this.selector.selectedKeys().clear();
+        this.receiveDatagrams();
+        this.retransmitUnacknowledged();
+      } catch (final PortUnreachableException e) {
+        // the host is not up (yet), keep listening
+        continue;
+      } catch (final IOException e) {
+        this.handleException(e);
+        // stops the thread
+        this.isListening = false;
+        this.isConnected = false;
+      }
+    }
+  }
+
+  private void receiveDatagrams() throws IOException {
+    try {
+      while (true) {
+        this.receiveBuffer.clear();
+        if (this.channel.receive(this.receiveBuffer) == null) {
+          return;
+        }
+        this.receiveBuffer.flip();
+        if (DatagramFrame.isDatagram(this.receiveBuffer)) {
+          this.processDatagram(this.receiveBuffer);
+        }
+      }
+    } finally {
+      if (!this.receivedBatch.isEmpty()) {
+        // one call for all datagrams received since the wakeup
+        this.informListenerAboutDataReceived(this.receivedBatch);
+      }
+    }
+  }
+
+  private void processDatagram(final ByteBuffer datagram) throws IOException {
+    final byte flags = DatagramFrame.getFlags(datagram);
+    final int sequence = DatagramFrame.getSequence(datagram);
+    final ShipDataType dataType = DatagramFrame.getDataType(datagram);
+    if ((flags & DatagramFrame.FLAG_ACK) != 0) {
+      this.acknowledge(sequence);
+      return;
+    }
+    if ((flags & DatagramFrame.FLAG_RELIABLE) != 0) {
+      // acknowledge duplicates too, the first ack may have been lost
+      this.sendAck(sequence, dataType);
+    }
+    if (this.isNewest(sequence, dataType)) {
+      this.receivedCount++;
+      if (this.receivedBatch.add(dataType, DatagramFrame
+          .getDataValue(datagram))) {
+        this.informListenerAboutDataReceived(this.receivedBatch);
+      }
+    }
+  }
+
+  private boolean isNewest(final int sequence, final ShipDataType dataType) {
+    final int type = dataType.ordinal();
+    if (this.isFirstDatagram
+        || this.highestSequence - sequence > SEQUENCE_RESTART_DISTANCE) {
+      // first datagram or the host restarted its sequence
+      this.isFirstDatagram = false;
+      this.highestSequence = sequence;
+      this.receivedWindow = 1;
+      for (int i = 0; i < this.isTypeReceived.length; i++) {
+        this.isTypeReceived[i] = false;
+      }
+    } else if (sequence - this.highestSequence > 0) {
+      final int distance = sequence - this.highestSequence;
+      this.lostCount += distance - 1;
+      this.highestSequence = sequence;
+      this.receivedWindow = distance < SEQUENCE_WINDOW ? this.receivedWindow
+          << distance | 1 : 1;
+    } else {
+      final int age = this.highestSequence - sequence;
+      if (age >= SEQUENCE_WINDOW) {
+        // too late to tell a duplicate from a lost frame, stays lost
+        return false;
+      }
+      final long bit = 1L << age;
+      if ((this.receivedWindow & bit) != 0) {
+        this.duplicateCount++;
+        return false;
+      }
+      // the first copy of a gap, so it was counted as lost before
+      this.receivedWindow |= bit;
+      this.reorderedCount++;
+      this.lostCount--;
+      if (this.isTypeReceived[type]
+          && sequence - this.lastSequenceByType[type] < 0) {
+        // a newer frame of this type was already delivered
+        return false;
+      }
+    }
+    this.isTypeReceived[type] = true;
+    this.lastSequenceByType[type] = sequence;
+    return true;
+  }
+
+  private void sendAck(final int sequence, final ShipDataType dataType)
+      throws IOException {
+    this.ackBuffer.clear();
+    DatagramFrame.put(this.ackBuffer, DatagramFrame.FLAG_ACK, sequence,
+        dataType, 0);
+    this.ackBuffer.flip();
+    this.channel.write(this.ackBuffer);
+  }
+
+  private void acknowledge(final int sequence) {
+    synchronized (this.sendBuffer) {
+      for (int i = 0; i < SLOT_COUNT; i++) {
+        if (this.unackedType[i] != null && this.unackedSequence[i] == sequence) {
+          this.unackedType[i] = null;
+        }
+      }
+    }
+  }
+
+  private void retransmitUnacknowledged() throws IOException {
+    final long now = System.nanoTime();
+    final long interval = RETRANSMIT_INTERVAL * 1000000L;
+    synchronized (this.sendBuffer) {
+      for (int i = 0; i < SLOT_COUNT; i++) {
+        if (this.unackedType[i] == null
+            || now - this.unackedSentAt[i] < interval) {
+          continue;
+        }
+        if (this.unackedRetransmits[i] >= MAX_RETRANSMITS) {
+          this.unackedType[i] = null;
+          this.failedCount++;
+          continue;
+        }
+        this.unackedRetransmits[i]++;
+        this.unackedSentAt[i] = now;
+        this.retransmitCount++;
+        // same sequence, the receiver detects it as duplicate
+        this.writeDatagram(this.unackedType[i], this.unackedValue[i],
+            this.unackedSequence[i]);
+      }
+    }
+  }
+
+  private void handleException(final IOException e) {
+    System.out.println(e.toString());
+    System.out.println("Listening canceled!");
+    e.printStackTrace();
+  }
+
+  private void informListenerAboutDataReceived(final ShipDataBatch batch) {
+    for (final IBatchDataReceiverListener listener : this.receiverListener) {
+      listener.dataReceived(batch.getData(), batch.getCount());
+    }
+    batch.clear();
+  }
+
+}
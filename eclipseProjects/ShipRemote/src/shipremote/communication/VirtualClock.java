@@ -0,0 +1,190 @@
+package shipremote.communication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An IClock that only moves when it is advanced. Due tasks are run by
+ * advanceTo() on the calling thread, in the order of their due time and, for
+ * the same due time, in the order they were scheduled. This makes a replay
+ * independent of the machine speed and the replay speed. A task runs without
+ * the lock of the clock, so it may take locks that another thread holds while
+ * it reads the clock.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class VirtualClock implements IClock {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private static final long NANOS_PER_MILLI = 1000000L;
+  private final List<ScheduledTask> tasks = new ArrayList<ScheduledTask>();
+  // one advance at a time, the tasks run in order
+  private final Object advanceLock = new Object();
+  private long now = 0;
+  private long scheduledCount = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor. The clock starts at 0.
+   */
+  public VirtualClock() {
+    this(0);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param startTime
+   *          The start time in nanoseconds.
+   */
+  public VirtualClock(final long startTime) {
+    this.now = startTime;
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Moves the clock forward and runs all tasks that are due until then. A
+   * time in the past is ignored.
+   * 
+   * @param time
+   *          The new time in nanoseconds.
+   */
+  public void advanceTo(final long time) {
+    synchronized (this.advanceLock) {
+      Runnable runnable = this.nextDueRunnable(time);
+      while (runnable != null) {
+        runnable.run();
+        runnable = this.nextDueRunnable(time);
+      }
+    }
+  }
+
+  /**
+   * Moves the clock forward by the given time.
+   * 
+   * @param nanos
+   *          The time in nanoseconds.
+   */
+  public void advance(final long nanos) {
+    synchronized (this.advanceLock) {
+      this.advanceTo(this.nanoTime() + nanos);
+    }
+  }
+
+  /**
+   * Gets the number of scheduled tasks.
+   * 
+   * @return The task count.
+   */
+  public synchronized int getTaskCount() {
+    return this.tasks.size();
+  }
+
+  // ////////////////////////////////
+  // IClock implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.IClock#nanoTime()
+   */
+  public synchronized long nanoTime() {
+    return this.now;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.IClock#schedule(java.lang.Runnable, long,
+   * long)
+   */
+  public synchronized IClockTask schedule(final Runnable task,
+      final long delay, final long period) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("Non-positive period.");
+    }
+    final ScheduledTask scheduledTask = new ScheduledTask(task, this.now
+        + delay * NANOS_PER_MILLI, period * NANOS_PER_MILLI,
+        this.scheduledCount++);
+    this.tasks.add(scheduledTask);
+    return scheduledTask;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.IClock#isRealTime()
+   */
+  public boolean isRealTime() {
+    return false;
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private synchronized Runnable nextDueRunnable(final long time) {
+    final ScheduledTask task = this.nextDueTask(time);
+    if (task == null) {
+      if (time > this.now) {
+        this.now = time;
+      }
+      return null;
+    }
+    this.now = task.dueTime;
+    task.dueTime += task.period;
+    return task.runnable;
+  }
+
+  private ScheduledTask nextDueTask(final long time) {
+    ScheduledTask next = null;
+    for (int i = 0; i < this.tasks.size(); i++) {
+      final ScheduledTask task = this.tasks.get(i);
+      if (task.dueTime <= time && (next == null || task.isBefore(next))) {
+        next = task;
+      }
+    }
+    return next;
+  }
+
+  private synchronized void remove(final ScheduledTask task) {
+    this.tasks.remove(task);
+  }
+
+  private final class ScheduledTask implements IClockTask {
+
+    private final Runnable runnable;
+    private final long period;
+    private final long order;
+    private long dueTime;
+
+    private ScheduledTask(final Runnable runnable, final long dueTime,
+        final long period, final long order) {
+      this.runnable = runnable;
+      this.dueTime = dueTime;
+      this.period = period;
+      this.order = order;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see shipremote.communication.IClockTask#cancel()
+     */
+    public void cancel() {
+      VirtualClock.this.remove(this);
+    }
+
+    private boolean isBefore(final ScheduledTask other) {
+      return this.dueTime < other.dueTime
+          || (this.dueTime == other.dueTime && this.order < other.order);
+    }
+  }
+
+}
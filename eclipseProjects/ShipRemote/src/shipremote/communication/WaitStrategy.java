@@ -0,0 +1,51 @@
+package shipremote.communication;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Defines how a RingConsumer waits for frames that were not published yet.
+ *
+ * @author Andreas Gnther
+ *
+ */
+public enum WaitStrategy {
+
+  /**
+   * Spins on the cursor. Lowest latency, burns one core per consumer.
+   */
+  BUSY_SPIN {
+    @Override
+    void idle() {
+      // spin
+    }
+  },
+  /**
+   * Yields the processor between checks of the cursor.
+   */
+  YIELD {
+    @Override
+    void idle() {
+      Thread.yield();
+    }
+  },
+  /**
+   * Parks the consumer thread until the producer publishes a frame. Lowest
+   * processor usage.
+   */
+  PARK {
+    @Override
+    void idle() {
+      LockSupport.parkNanos(MAX_PARK_NANOS);
+    }
+  };
+
+  // a lost wakeup costs at most this long
+  private static final long MAX_PARK_NANOS = 10000000L;
+
+  /**
+   * Waits once. Called by the consumer thread as long as no frame is
+   * available.
+   */
+  abstract void idle();
+
+}
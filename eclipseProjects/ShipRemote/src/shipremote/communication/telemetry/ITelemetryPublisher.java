@@ -0,0 +1,20 @@
+package shipremote.communication.telemetry;
+
+/**
+ * A source of received ShipData. Works like java.util.concurrent.Flow.Publisher,
+ * which is not available on Android.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface ITelemetryPublisher {
+
+  /**
+   * Adds a subscriber. onSubscribe() is called before this method returns,
+   * nothing is delivered before the subscriber requested it.
+   * 
+   * @param subscriber
+   *          The ITelemetrySubscriber.
+   */
+  public void subscribe(ITelemetrySubscriber subscriber);
+}
@@ -0,0 +1,44 @@
+package shipremote.communication.telemetry;
+
+import shipremote.communication.ShipData;
+
+/**
+ * Receives ShipData from an ITelemetryPublisher. Works like
+ * java.util.concurrent.Flow.Subscriber: onNext() is only called for requested
+ * data and never concurrently, after onError() or onComplete() nothing is
+ * called anymore.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface ITelemetrySubscriber {
+
+  /**
+   * Called once when subscribing.
+   * 
+   * @param subscription
+   *          The ITelemetrySubscription to request data with.
+   */
+  public void onSubscribe(ITelemetrySubscription subscription);
+
+  /**
+   * Called for every delivered ShipData.
+   * 
+   * @param shipData
+   *          The ShipData.
+   */
+  public void onNext(ShipData shipData);
+
+  /**
+   * Called when the subscription failed, e.g. because its buffer overflowed.
+   * 
+   * @param throwable
+   *          The cause.
+   */
+  public void onError(Throwable throwable);
+
+  /**
+   * Called when the publisher was closed and all buffered data is delivered.
+   */
+  public void onComplete();
+}
@@ -0,0 +1,24 @@
+package shipremote.communication.telemetry;
+
+/**
+ * The link between an ITelemetryPublisher and one ITelemetrySubscriber. Works
+ * like java.util.concurrent.Flow.Subscription.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface ITelemetrySubscription {
+
+  /**
+   * Requests more data. The demand adds up, Long.MAX_VALUE requests all data.
+   * 
+   * @param n
+   *          The number of ShipData to request, greater than 0.
+   */
+  public void request(long n);
+
+  /**
+   * Stops the delivery. Buffered data is discarded.
+   */
+  public void cancel();
+}
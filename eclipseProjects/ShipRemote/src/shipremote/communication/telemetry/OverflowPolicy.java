@@ -0,0 +1,27 @@
+package shipremote.communication.telemetry;
+
+/**
+ * Defines what a subscription does with received ShipData when its buffer is
+ * full because the subscriber did not request enough. The socket reader is
+ * never blocked.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Discards the oldest buffered ShipData.
+   */
+  DROP_OLDEST,
+  /**
+   * Keeps only the latest ShipData, the buffer capacity is 1.
+   */
+  KEEP_LATEST,
+  /**
+   * Keeps everything up to the buffer capacity. An overflow cancels the
+   * subscription and calls onError(), so the subscriber never misses data
+   * silently.
+   */
+  BOUNDED_BUFFER
+}
@@ -0,0 +1,248 @@
+package shipremote.communication.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import shipremote.communication.IBatchDataReceiverListener;
+import shipremote.communication.IClock;
+import shipremote.communication.INetworkClient;
+import shipremote.communication.RealTimeClock;
+import shipremote.communication.ShipData;
+import shipremote.communication.ShipDataType;
+
+/**
+ * Publishes the ShipData received by an INetworkClient to subscribers with a
+ * demand of their own, like a java.util.concurrent.Flow.Publisher.
+ * <p>
+ * The client thread only puts the ShipData into the buffer of every
+ * subscription, the delivery runs on an Executor. A slow subscriber never
+ * blocks the client, its OverflowPolicy decides what happens when its buffer
+ * is full.
+ * </p>
+ * 
+ * <pre>
+ * TelemetryPublisher publisher = new TelemetryPublisher(client);
+ * publisher.route(ShipDataType.SONAR).buffer(OverflowPolicy.KEEP_LATEST, 1)
+ *     .subscribe(subscriber);
+ * </pre>
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class TelemetryPublisher implements ITelemetryPublisher,
+    IBatchDataReceiverListener {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+
+  /**
+   * Default buffer capacity of a subscription.
+   */
+  public static final int DEFAULT_CAPACITY = 256;
+  private final Executor executor;
+  private final ExecutorService ownExecutor;
+  private final IClock clock;
+  private final TelemetryView allData;
+  private final List<TelemetrySubscription> subscriptions;
+  private volatile boolean isClosed = false;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor. Subscribers are served by daemon threads of a pool of the
+   * publisher, sample windows follow the system time.
+   * 
+   * @param client
+   *          The INetworkClient to publish the received ShipData of.
+   */
+  public TelemetryPublisher(final INetworkClient client) {
+    this(client, null, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param client
+   *          The INetworkClient to publish the received ShipData of.
+   * @param executor
+   *          The Executor that delivers to the subscribers, null for a pool
+   *          of the publisher.
+   * @param clock
+   *          The IClock of the sample windows and lag times, null for a
+   *          RealTimeClock.
+   */
+  public TelemetryPublisher(final INetworkClient client,
+      final Executor executor, final IClock clock) {
+    if (executor == null) {
+      this.ownExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(final Runnable task) {
+          final Thread thread = new Thread(task, "TelemetryPublisher");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      this.executor = this.ownExecutor;
+    } else {
+      this.ownExecutor = null;
+      this.executor = executor;
+    }
+    this.clock = clock == null ? new RealTimeClock() : clock;
+    this.allData = new TelemetryView(this, null, 0,
+        OverflowPolicy.DROP_OLDEST, DEFAULT_CAPACITY);
+    this.subscriptions = new CopyOnWriteArrayList<TelemetrySubscription>();
+    client.addBatchDataReceiverListener(this);
+  }
+
+  // ///////////////////////////////
+  // operators
+  // ///////////////////////////////
+  /**
+   * Delivers only one type of ShipData.
+   * 
+   * @param dataType
+   *          The ShipDataType to deliver.
+   * @return A TelemetryView.
+   * @see TelemetryView#route(ShipDataType)
+   */
+  public TelemetryView route(final ShipDataType dataType) {
+    return this.allData.route(dataType);
+  }
+
+  /**
+   * Delivers at most the latest ShipData of every time window.
+   * 
+   * @param window
+   *          The length of the window in milliseconds.
+   * @return A TelemetryView.
+   * @see TelemetryView#sample(long)
+   */
+  public TelemetryView sample(final long window) {
+    return this.allData.sample(window);
+  }
+
+  /**
+   * Sets how ShipData is buffered for a slow subscriber. The default is
+   * OverflowPolicy.DROP_OLDEST with DEFAULT_CAPACITY.
+   * 
+   * @param policy
+   *          The OverflowPolicy.
+   * @param capacity
+   *          The maximum number of buffered ShipData.
+   * @return A TelemetryView.
+   * @see TelemetryView#buffer(OverflowPolicy, int)
+   */
+  public TelemetryView buffer(final OverflowPolicy policy, final int capacity) {
+    return this.allData.buffer(policy, capacity);
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.telemetry.ITelemetryPublisher#subscribe(shipremote
+   * .communication.telemetry.ITelemetrySubscriber)
+   */
+  public void subscribe(final ITelemetrySubscriber subscriber) {
+    this.allData.subscribe(subscriber);
+  }
+
+  /**
+   * Adds a subscriber for all ShipData and returns its subscription.
+   * 
+   * @param subscriber
+   *          The ITelemetrySubscriber.
+   * @return The TelemetrySubscription with the lag metrics.
+   */
+  public TelemetrySubscription subscribeWithMetrics(
+      final ITelemetrySubscriber subscriber) {
+    return this.allData.subscribeWithMetrics(subscriber);
+  }
+
+  /**
+   * Gets the active subscriptions. Provides the lag metrics of every
+   * subscriber.
+   * 
+   * @return A copy of the list of subscriptions.
+   */
+  public List<TelemetrySubscription> getSubscriptions() {
+    return new ArrayList<TelemetrySubscription>(this.subscriptions);
+  }
+
+  /**
+   * Completes all subscriptions after their buffered ShipData is delivered.
+   * Received ShipData is not published anymore. The sample windows of the
+   * subscriptions are cancelled on the clock, other tasks of a shared clock
+   * keep running.
+   */
+  public void close() {
+    this.isClosed = true;
+    for (final TelemetrySubscription subscription : this.subscriptions) {
+      subscription.complete();
+    }
+    if (this.ownExecutor != null) {
+      // delivers what was scheduled, then the threads end
+      this.ownExecutor.shutdown();
+    }
+  }
+
+  // ////////////////////////////////
+  // IBatchDataReceiverListener implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.IBatchDataReceiverListener#dataReceived(shipremote
+   * .communication.ShipData[], int)
+   */
+  public void dataReceived(final ShipData[] receivedData, final int count) {
+    if (this.isClosed) {
+      return;
+    }
+    for (final TelemetrySubscription subscription : this.subscriptions) {
+      if (subscription.isTerminated()) {
+        this.subscriptions.remove(subscription);
+        continue;
+      }
+      for (int i = 0; i < count; i++) {
+        subscription.offer(receivedData[i]);
+      }
+    }
+  }
+
+  // ///////////////////////////////
+  // package methods
+  // ///////////////////////////////
+  TelemetrySubscription subscribe(final ITelemetrySubscriber subscriber,
+      final ShipDataType routeType, final long sampleWindow,
+      final OverflowPolicy overflowPolicy, final int capacity) {
+    final TelemetrySubscription subscription = new TelemetrySubscription(
+        subscriber, this.executor, this.clock, routeType, sampleWindow,
+        overflowPolicy, capacity);
+    subscription.signalSubscribe();
+    if (sampleWindow > 0) {
+      // ends the windows, cancelled when the subscription ends
+      subscription.setSampleTask(this.clock.schedule(new Runnable() {
+        public void run() {
+          subscription.sample();
+        }
+      }, sampleWindow, sampleWindow));
+    }
+    this.subscriptions.add(subscription);
+    if (this.isClosed) {
+      subscription.complete();
+    }
+    return subscription;
+  }
+
+}
@@ -0,0 +1,361 @@
+package shipremote.communication.telemetry;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import shipremote.communication.IClock;
+import shipremote.communication.IClockTask;
+import shipremote.communication.ShipData;
+import shipremote.communication.ShipDataType;
+
+/**
+ * The subscription of one subscriber of a TelemetryPublisher. Received
+ * ShipData is buffered here and delivered on the Executor of the publisher as
+ * far as the subscriber requested it. Provides the lag metrics of the
+ * subscriber.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class TelemetrySubscription implements ITelemetrySubscription, Runnable {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final ITelemetrySubscriber subscriber;
+  private final Executor executor;
+  private final IClock clock;
+  private final ShipDataType routeType;
+  private final long sampleWindow;
+  private final OverflowPolicy overflowPolicy;
+  private final ShipData[] buffer;
+  private final long[] receiveTimes;
+  private final AtomicInteger pendingDrains = new AtomicInteger();
+  private int head = 0;
+  private int count = 0;
+  private long demand = 0;
+  private ShipData sample = null;
+  private long sampleTime = 0;
+  private boolean isCancelled = false;
+  private boolean isCompleted = false;
+  private boolean isTerminated = false;
+  private Throwable error = null;
+  private IClockTask sampleTask = null;
+  private long receivedCount = 0;
+  private long deliveredCount = 0;
+  private long droppedCount = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  TelemetrySubscription(final ITelemetrySubscriber subscriber,
+      final Executor executor, final IClock clock, final ShipDataType routeType,
+      final long sampleWindow, final OverflowPolicy overflowPolicy,
+      final int capacity) {
+    this.subscriber = subscriber;
+    this.executor = executor;
+    this.clock = clock;
+    this.routeType = routeType;
+    this.sampleWindow = sampleWindow;
+    this.overflowPolicy = overflowPolicy;
+    final int size = overflowPolicy == OverflowPolicy.KEEP_LATEST ? 1 : Math
+        .max(1, capacity);
+    this.buffer = new ShipData[size];
+    this.receiveTimes = new long[size];
+  }
+
+  // ///////////////////////////////
+  // metrics
+  // ///////////////////////////////
+  /**
+   * Gets the number of ShipData received for the subscriber and not delivered
+   * yet.
+   * 
+   * @return The lag in ShipData.
+   */
+  public synchronized int getLag() {
+    return this.count;
+  }
+
+  /**
+   * Gets how long the oldest buffered ShipData is waiting.
+   * 
+   * @return The lag in nanoseconds, 0 if nothing is buffered.
+   */
+  public long getLagTime() {
+    // read outside of the lock, a clock may run sample() holding its own lock
+    final long now = this.clock.nanoTime();
+    synchronized (this) {
+      return this.count == 0 ? 0 : now - this.receiveTimes[this.head];
+    }
+  }
+
+  /**
+   * Gets the number of ShipData that passed the routing and sampling of the
+   * subscription.
+   * 
+   * @return The received count.
+   */
+  public synchronized long getReceivedCount() {
+    return this.receivedCount;
+  }
+
+  /**
+   * Gets the number of ShipData delivered to onNext().
+   * 
+   * @return The delivered count.
+   */
+  public synchronized long getDeliveredCount() {
+    return this.deliveredCount;
+  }
+
+  /**
+   * Gets the number of ShipData discarded by the OverflowPolicy.
+   * 
+   * @return The dropped count.
+   */
+  public synchronized long getDroppedCount() {
+    return this.droppedCount;
+  }
+
+  /**
+   * Gets the requested and not yet delivered number of ShipData.
+   * 
+   * @return The demand, Long.MAX_VALUE for unbounded.
+   */
+  public synchronized long getDemand() {
+    return this.demand;
+  }
+
+  /**
+   * Checks whether the subscription ended by cancel(), onError() or
+   * onComplete().
+   * 
+   * @return True if nothing is delivered anymore.
+   */
+  public synchronized boolean isTerminated() {
+    return this.isCancelled || this.isTerminated;
+  }
+
+  @Override
+  public String toString() {
+    final long lagTime = this.getLagTime();
+    synchronized (this) {
+      return (this.routeType == null ? "ALL" : this.routeType.name()) + " "
+          + this.overflowPolicy.name() + ": lag=" + this.count + " ("
+          + (lagTime / 1000000L) + "ms), received=" + this.receivedCount
+          + ", delivered=" + this.deliveredCount + ", dropped="
+          + this.droppedCount;
+    }
+  }
+
+  // ////////////////////////////////
+  // ITelemetrySubscription implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.telemetry.ITelemetrySubscription#request(long)
+   */
+  public void request(final long n) {
+    synchronized (this) {
+      if (this.isCancelled || this.isTerminated) {
+        return;
+      }
+      if (n <= 0) {
+        this.fail(new IllegalArgumentException("Non-positive request: " + n));
+      } else {
+        this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+      }
+    }
+    if (n <= 0) {
+      this.cancelSampleTask();
+    }
+    this.scheduleDrain();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.communication.telemetry.ITelemetrySubscription#cancel()
+   */
+  public void cancel() {
+    synchronized (this) {
+      this.isCancelled = true;
+      this.clearBuffer();
+    }
+    this.cancelSampleTask();
+  }
+
+  /**
+   * Delivers buffered ShipData as far as requested. Runs on the Executor.
+   */
+  public void run() {
+    int missed = 1;
+    do {
+      this.drain();
+      missed = this.pendingDrains.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  // ///////////////////////////////
+  // package methods
+  // ///////////////////////////////
+  void offer(final ShipData shipData) {
+    // read outside of the lock, a clock may run sample() holding its own lock
+    final long now = this.clock.nanoTime();
+    synchronized (this) {
+      if (this.isCancelled || this.isCompleted || this.error != null) {
+        return;
+      }
+      if (this.routeType != null && shipData.getDataType() != this.routeType) {
+        return;
+      }
+      if (this.sampleWindow > 0) {
+        // delivered by sample() at the end of the window
+        this.sample = shipData;
+        this.sampleTime = now;
+        return;
+      }
+      this.enqueue(shipData, now);
+    }
+    this.scheduleDrain();
+  }
+
+  void sample() {
+    synchronized (this) {
+      if (this.sample == null || this.isCancelled || this.error != null) {
+        return;
+      }
+      this.enqueue(this.sample, this.sampleTime);
+      this.sample = null;
+    }
+    this.scheduleDrain();
+  }
+
+  void complete() {
+    synchronized (this) {
+      if (this.sample != null && this.error == null) {
+        // the last window ends early
+        this.enqueue(this.sample, this.sampleTime);
+        this.sample = null;
+      }
+      this.isCompleted = true;
+    }
+    this.cancelSampleTask();
+    this.scheduleDrain();
+  }
+
+  void setSampleTask(final IClockTask task) {
+    synchronized (this) {
+      if (!this.isCancelled && !this.isCompleted && this.error == null) {
+        this.sampleTask = task;
+        return;
+      }
+    }
+    // ended before the task was scheduled
+    task.cancel();
+  }
+
+  void signalSubscribe() {
+    this.subscriber.onSubscribe(this);
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private void enqueue(final ShipData shipData, final long receiveTime) {
+    this.receivedCount++;
+    if (this.count == this.buffer.length) {
+      if (this.overflowPolicy == OverflowPolicy.BOUNDED_BUFFER) {
+        this.fail(new IllegalStateException("Telemetry buffer of "
+            + this.buffer.length + " overflowed."));
+        return;
+      }
+      // DROP_OLDEST and KEEP_LATEST
+      this.buffer[this.head] = null;
+      this.head = (this.head + 1) % this.buffer.length;
+      this.count--;
+      this.droppedCount++;
+    }
+    final int tail = (this.head + this.count) % this.buffer.length;
+    this.buffer[tail] = shipData;
+    this.receiveTimes[tail] = receiveTime;
+    this.count++;
+  }
+
+  private void fail(final Throwable throwable) {
+    this.error = throwable;
+    this.droppedCount += this.count;
+    this.clearBuffer();
+  }
+
+  private void cancelSampleTask() {
+    final IClockTask task;
+    synchronized (this) {
+      task = this.sampleTask;
+      this.sampleTask = null;
+    }
+    // outside of the lock, a clock may run sample() holding its own lock
+    if (task != null) {
+      task.cancel();
+    }
+  }
+
+  private void clearBuffer() {
+    for (int i = 0; i < this.buffer.length; i++) {
+      this.buffer[i] = null;
+    }
+    this.head = 0;
+    this.count = 0;
+  }
+
+  private void scheduleDrain() {
+    // only one drain runs at a time, so onNext() is never called concurrently
+    if (this.pendingDrains.getAndIncrement() == 0) {
+      this.executor.execute(this);
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      final ShipData next;
+      final Throwable failure;
+      synchronized (this) {
+        if (this.isCancelled || this.isTerminated) {
+          return;
+        }
+        failure = this.error;
+        if (failure != null) {
+          this.isTerminated = true;
+          next = null;
+        } else if (this.count > 0 && this.demand > 0) {
+          next = this.buffer[this.head];
+          this.buffer[this.head] = null;
+          this.head = (this.head + 1) % this.buffer.length;
+          this.count--;
+          if (this.demand != Long.MAX_VALUE) {
+            this.demand--;
+          }
+          this.deliveredCount++;
+        } else if (this.count == 0 && this.isCompleted) {
+          this.isTerminated = true;
+          next = null;
+        } else {
+          return;
+        }
+      }
+      if (failure != null) {
+        this.subscriber.onError(failure);
+        return;
+      }
+      if (next == null) {
+        this.subscriber.onComplete();
+        return;
+      }
+      this.subscriber.onNext(next);
+    }
+  }
+
+}
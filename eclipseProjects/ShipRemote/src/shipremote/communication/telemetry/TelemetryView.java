@@ -0,0 +1,116 @@
+package shipremote.communication.telemetry;
+
+import shipremote.communication.ShipDataType;
+
+/**
+ * An ITelemetryPublisher that delivers a part of the ShipData of a
+ * TelemetryPublisher. Views are immutable, the operators return a new view:
+ * 
+ * <pre>
+ * publisher.route(ShipDataType.SONAR).sample(200).subscribe(subscriber);
+ * </pre>
+ * 
+ * Routing and sampling are done when the ShipData is received, before it is
+ * buffered, so they do not use buffer space.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class TelemetryView implements ITelemetryPublisher {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final TelemetryPublisher publisher;
+  private final ShipDataType routeType;
+  private final long sampleWindow;
+  private final OverflowPolicy overflowPolicy;
+  private final int capacity;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  TelemetryView(final TelemetryPublisher publisher,
+      final ShipDataType routeType, final long sampleWindow,
+      final OverflowPolicy overflowPolicy, final int capacity) {
+    this.publisher = publisher;
+    this.routeType = routeType;
+    this.sampleWindow = sampleWindow;
+    this.overflowPolicy = overflowPolicy;
+    this.capacity = capacity;
+  }
+
+  // ///////////////////////////////
+  // operators
+  // ///////////////////////////////
+  /**
+   * Delivers only one type of ShipData.
+   * 
+   * @param dataType
+   *          The ShipDataType to deliver.
+   * @return The new TelemetryView.
+   */
+  public TelemetryView route(final ShipDataType dataType) {
+    return new TelemetryView(this.publisher, dataType, this.sampleWindow,
+        this.overflowPolicy, this.capacity);
+  }
+
+  /**
+   * Delivers at most the latest ShipData of every time window.
+   * 
+   * @param window
+   *          The length of the window in milliseconds.
+   * @return The new TelemetryView.
+   */
+  public TelemetryView sample(final long window) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("Non-positive window.");
+    }
+    return new TelemetryView(this.publisher, this.routeType, window,
+        this.overflowPolicy, this.capacity);
+  }
+
+  /**
+   * Sets how ShipData is buffered for a slow subscriber.
+   * 
+   * @param policy
+   *          The OverflowPolicy.
+   * @param bufferCapacity
+   *          The maximum number of buffered ShipData, ignored for
+   *          OverflowPolicy.KEEP_LATEST.
+   * @return The new TelemetryView.
+   */
+  public TelemetryView buffer(final OverflowPolicy policy,
+      final int bufferCapacity) {
+    return new TelemetryView(this.publisher, this.routeType,
+        this.sampleWindow, policy, bufferCapacity);
+  }
+
+  // ////////////////////////////////
+  // ITelemetryPublisher implementation
+  // ////////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.communication.telemetry.ITelemetryPublisher#subscribe(shipremote
+   * .communication.telemetry.ITelemetrySubscriber)
+   */
+  public void subscribe(final ITelemetrySubscriber subscriber) {
+    this.subscribeWithMetrics(subscriber);
+  }
+
+  /**
+   * Adds a subscriber like subscribe() and returns its subscription.
+   * 
+   * @param subscriber
+   *          The ITelemetrySubscriber.
+   * @return The TelemetrySubscription with the lag metrics.
+   */
+  public TelemetrySubscription subscribeWithMetrics(
+      final ITelemetrySubscriber subscriber) {
+    return this.publisher.subscribe(subscriber, this.routeType,
+        this.sampleWindow, this.overflowPolicy, this.capacity);
+  }
+
+}
@@ -0,0 +1,78 @@
+package shipremote.control;
+
+import shipremote.ui.GesturesView;
+import shipremote.ui.TextViewOutput;
+import android.util.Log;
+
+/**
+ * The IControllerUI of the ShipRemote application. Logs to the Android log,
+ * shows toasts by Main and the state in the TextViewOutput.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+class AndroidControllerUI implements IControllerUI {
+
+  private GesturesView gestureView = null;
+
+  /**
+   * Constructor.
+   * 
+   * @param gestureView
+   *          The GesturesView, provides the resources.
+   */
+  AndroidControllerUI(final GesturesView gestureView) {
+    this.gestureView = gestureView;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#log(java.lang.String)
+   */
+  public void log(final String text) {
+    Main.log(text);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#logError(java.lang.String,
+   * java.lang.Throwable)
+   */
+  public void logError(final String text, final Throwable e) {
+    if (e != null) {
+      Log.e(Main.SHIP_REMOTE_TAG, text, e);
+    } else {
+      Log.e(Main.SHIP_REMOTE_TAG, text);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#showToast(java.lang.String)
+   */
+  public void showToast(final String text) {
+    Main.showToast(text);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#showStatus(java.lang.String)
+   */
+  public void showStatus(final String text) {
+    TextViewOutput.setText(text);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#getString(int)
+   */
+  public String getString(final int resId) {
+    return this.gestureView.getContext().getString(resId);
+  }
+
+}
@@ -0,0 +1,147 @@
+package shipremote.control;
+
+import java.lang.reflect.Field;
+
+import shipremote.res.R;
+
+/**
+ * An IControllerUI for a plain JVM. Prints the output to System.out if it is
+ * verbose, otherwise only counts it, e.g. for a benchmark.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class ConsoleControllerUI implements IControllerUI {
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final boolean isVerbose;
+  private volatile String status = "";
+  private volatile long logCount = 0;
+  private volatile long errorCount = 0;
+  private volatile long toastCount = 0;
+  private volatile long statusCount = 0;
+
+  // ///////////////////////////////
+  // constructor
+  // ///////////////////////////////
+  /**
+   * Constructor.
+   * 
+   * @param isVerbose
+   *          True to print the output, false to only count it.
+   */
+  public ConsoleControllerUI(final boolean isVerbose) {
+    this.isVerbose = isVerbose;
+  }
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /**
+   * Gets the last status shown.
+   * 
+   * @return The status text.
+   */
+  public String getStatus() {
+    return this.status;
+  }
+
+  /**
+   * @return The number of log messages.
+   */
+  public long getLogCount() {
+    return this.logCount;
+  }
+
+  /**
+   * @return The number of errors.
+   */
+  public long getErrorCount() {
+    return this.errorCount;
+  }
+
+  /**
+   * @return The number of toasts.
+   */
+  public long getToastCount() {
+    return this.toastCount;
+  }
+
+  /**
+   * @return The number of status updates.
+   */
+  public long getStatusCount() {
+    return this.statusCount;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#log(java.lang.String)
+   */
+  public void log(final String text) {
+    this.logCount++;
+    if (this.isVerbose) {
+      System.out.println(text);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#logError(java.lang.String,
+   * java.lang.Throwable)
+   */
+  public void logError(final String text, final Throwable e) {
+    this.errorCount++;
+    // errors are printed in any case
+    System.err.println(text);
+    if (e != null) {
+      e.printStackTrace();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#showToast(java.lang.String)
+   */
+  public void showToast(final String text) {
+    this.toastCount++;
+    if (this.isVerbose) {
+      System.out.println("[" + text + "]");
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#showStatus(java.lang.String)
+   */
+  public void showStatus(final String text) {
+    this.statusCount++;
+    this.status = text;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IControllerUI#getString(int)
+   */
+  public String getString(final int resId) {
+    // without the Android resources the name of the text has to do
+    for (final Field field : R.string.class.getFields()) {
+      try {
+        if (field.getInt(null) == resId) {
+          return field.getName();
+        }
+      } catch (final IllegalAccessException e) {
+        // public fields only
+      }
+    }
+    return "0x" + Integer.toHexString(resId);
+  }
+
+}
@@ -0,0 +1,624 @@
+package shipremote.control;
+
+import java.io.IOException;
+
+import shipremote.ai.base.IShipAI;
+import shipremote.ai.base.IShipAIDecision;
+import shipremote.ai.base.ShipAIDecisionMessage;
+import shipremote.ai.base.ShipAIWorker;
+import shipremote.ai.base.ShipState;
+import shipremote.ai.filter.ISonarFilter;
+import shipremote.communication.ExecutionMode;
+import shipremote.communication.IBatchDataReceiverListener;
+import shipremote.communication.IClock;
+import shipremote.communication.IClockTask;
+import shipremote.communication.IFrameTap;
+import shipremote.communication.INetworkClient;
+import shipremote.communication.LatencyHistogram;
+import shipremote.communication.PingTracker;
+import shipremote.communication.RealTimeClock;
+import shipremote.communication.ShipData;
+import shipremote.communication.ShipDataType;
+import shipremote.res.R;
+import shipremote.ui.IUserInputListener;
+import shipremote.ui.SlideDirection;
+
+/**
+ * The platform neutral part of the controller: the state machine of the
+ * slides, the AI results, the alive timer and the ranging. It runs on the
+ * thread of an IEventLoop and shows its output by an IControllerUI, so it
+ * runs on Android (see ShipController) as well as on a plain JVM, e.g. with a
+ * QueueEventLoop and a ConsoleControllerUI.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class ControllerCore implements IBatchDataReceiverListener,
+    IUserInputListener, IMessageHandler {
+
+  // /////////////////////////////
+  // constants
+  // /////////////////////////////
+
+  private static final int SHIPDATARECEIVED = 0x213;
+  private static final int IAMALIVE = 0x214;
+  private static final int PING = 0x215;
+  private static final int ALIVETIMEOUT = 10000;
+  private static final int PINGINTERVAL = 1000;
+  private static final int RTT_LOG_PINGS = 10;
+  private static final int STEERINGSTEP = 1;
+  private static final int SPEED_STEP = 1;
+
+  // /////////////////////////////
+  // private member
+  // /////////////////////////////
+  private IEventLoop eventLoop = null;
+  private IControllerUI ui = null;
+  private INetworkClient tcpClient = null;
+  private boolean isUserInputAvailable = false;
+  private SpeedControl speedControl = null;
+  private SteeringControl steeringControl = null;
+  private int objectDistance = 0;
+  private ShipData receivedShipData = ShipData.valueOf(ShipDataType.INVALID,
+      0);
+  private IClock clock = null;
+  private IClockTask aliveTask = null;
+  private IClockTask pingTask = null;
+  private ShipDataType lastSlideCommandType = ShipDataType.INVALID;
+  private ShipAIWorker aiWorker = null;
+  private ShipAIDecisionMessage aiDecision = null;
+  private volatile ISonarFilter sonarFilter = null;
+  private boolean kiEnabled = false;
+  private PingTracker pingTracker = null;
+  private volatile IFrameTap frameTap = null;
+
+  /**
+   * Constructor. With a clock that is not real time, e.g. the VirtualClock of
+   * a ReplayClient, messages and the AI are processed on the calling thread,
+   * so a replay is deterministic.
+   * 
+   * @param eventLoop
+   *          The IEventLoop the controller runs on.
+   * @param ui
+   *          The IControllerUI for the output.
+   * @param tcpClient
+   *          A INetworkClient.
+   * @param shipAI
+   *          A IShipAI
+   * @param clock
+   *          The IClock for the timers and the ping times.
+   * @param executionMode
+   *          The ExecutionMode of the AI worker thread.
+   */
+  public ControllerCore(final IEventLoop eventLoop, final IControllerUI ui,
+      final INetworkClient tcpClient, final IShipAI shipAI,
+      final IClock clock, final ExecutionMode executionMode) {
+    this.eventLoop = eventLoop;
+    this.eventLoop.setMessageHandler(this);
+    this.ui = ui;
+    this.tcpClient = tcpClient;
+    this.tcpClient.addBatchDataReceiverListener(this);
+    this.speedControl = new SpeedControl();
+    this.steeringControl = new SteeringControl();
+    this.clock = clock;
+    this.aiWorker = new ShipAIWorker(shipAI, clock, executionMode,
+        new Runnable() {
+          public void run() {
+            ControllerCore.this.decisionReady();
+          }
+        });
+    this.aiDecision = new ShipAIDecisionMessage();
+    this.pingTracker = new PingTracker();
+  }
+
+  // /////////////////////////////
+  // public methods
+  // /////////////////////////////
+
+  /**
+   * Starts the controller.
+   */
+  public void start() {
+    if (this.clock.isRealTime()) {
+      this.aiWorker.start();
+    }
+    this.startTCPListening();
+    this.startAliveTimer();
+    this.startRanging();
+    this.updateUI();
+  }
+
+  /**
+   * Stops the controller.
+   */
+  public void stop() {
+    this.stopRanging();
+    this.stopAliveTimer();
+    this.stopTCPListening();
+    this.aiWorker.stop();
+  }
+
+  /**
+   * Sets a tap that sees every frame the controller receives and sends, e.g.
+   * a FrameJournal. Works with every INetworkClient, do not tap the client
+   * as well.
+   * 
+   * @param frameTap
+   *          The IFrameTap, null to remove it.
+   */
+  public void setFrameTap(final IFrameTap frameTap) {
+    this.frameTap = frameTap;
+  }
+
+  /**
+   * Sets the filter for the sonar distances before they reach the AI and the
+   * status, e.g. a SonarFilterChain. Set it before start(), the filter runs
+   * on the thread of the event loop.
+   * 
+   * @param sonarFilter
+   *          The ISonarFilter, null for the raw distances.
+   */
+  public void setSonarFilter(final ISonarFilter sonarFilter) {
+    this.sonarFilter = sonarFilter;
+  }
+
+  /**
+   * Gets the AI worker, e.g. for its thread count, staleness and evaluation
+   * times.
+   * 
+   * @return The ShipAIWorker.
+   */
+  public ShipAIWorker getAIWorker() {
+    return this.aiWorker;
+  }
+
+  /**
+   * Gets the round trip times measured with PING frames.
+   * 
+   * @return The LatencyHistogram in microseconds.
+   */
+  public LatencyHistogram getRttHistogram() {
+    return this.pingTracker.getHistogram();
+  }
+
+  // /////////////////////////////
+  // overridden methods
+  // /////////////////////////////
+
+  @Override
+  public synchronized void dataReceived(final ShipData[] receivedData,
+      final int count) {
+
+    // take the receive time of echoed pings before anything else
+    this.recordPingEchoes(receivedData, count);
+    this.tapReceivedData(receivedData, count);
+    if (this.isUserInputAvailable || count == 0) {
+      return;
+    }
+    final boolean isMessagePending = this.eventLoop
+        .hasPending(ControllerCore.SHIPDATARECEIVED);
+    // only the freshest sonar value of a burst is processed
+    final int sonarIndex = this.indexOfLatest(ShipDataType.SONAR,
+        receivedData, count);
+    final int lastIndex = this.indexOfLatest(null, receivedData, count);
+    final ShipData shipData;
+    if (sonarIndex >= 0) {
+      shipData = receivedData[sonarIndex];
+    } else if (!isMessagePending && lastIndex >= 0) {
+      shipData = receivedData[lastIndex];
+    } else {
+      // keep the pending value
+      return;
+    }
+    // ShipData is immutable, no copy needed
+    this.receivedShipData = shipData;
+
+    if (!isMessagePending) {
+      // send one message to UI-Thread to process the burst
+      this.postMessage(ControllerCore.SHIPDATARECEIVED);
+    }
+  }
+
+  private void tapReceivedData(final ShipData[] receivedData, final int count) {
+    final IFrameTap tap = this.frameTap;
+    if (tap != null) {
+      for (int i = 0; i < count; i++) {
+        tap.frame(IFrameTap.DIRECTION_IN, receivedData[i].getDataType(),
+            receivedData[i].getDataValue());
+      }
+    }
+  }
+
+  private void tapSentCommand(final ShipDataType commandType, final int value) {
+    final IFrameTap tap = this.frameTap;
+    if (tap != null) {
+      tap.frame(IFrameTap.DIRECTION_OUT, commandType, value);
+    }
+  }
+
+  private void recordPingEchoes(final ShipData[] receivedData,
+      final int count) {
+    for (int i = 0; i < count; i++) {
+      if (receivedData[i].getDataType() == ShipDataType.PING) {
+        this.pingTracker.pingReceived(receivedData[i].getDataValue(),
+            this.clock.nanoTime());
+      }
+    }
+  }
+
+  // latest frame of a type (null for any type), ping echoes excluded
+  private int indexOfLatest(final ShipDataType dataType,
+      final ShipData[] receivedData, final int count) {
+    for (int i = count - 1; i >= 0; i--) {
+      final ShipDataType type = receivedData[i].getDataType();
+      if (type != ShipDataType.PING && (dataType == null || type == dataType)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Sends a message to the event loop. With a virtual clock the message is
+   * handled right away, the replay thread advances the clock and must not
+   * run ahead of the controller.
+   * 
+   * @param what
+   *          The message id.
+   */
+  void postMessage(final int what) {
+    if (this.clock.isRealTime()) {
+      this.eventLoop.post(what);
+    } else {
+      this.handleMessage(what);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IMessageHandler#handleMessage(int)
+   */
+  public void handleMessage(final int what) {
+
+    switch (what) {
+      case SHIPDATARECEIVED:
+        // process received sensor data
+        this.computeReceivedData();
+        this.ui.log("==> " + this.receivedShipData.toString());
+        break;
+      case IAMALIVE:
+        // tell the ship i'm still there
+        this.sendCommand(ShipDataType.ALIVE, 0);
+        break;
+      case PING:
+        // measure the round trip time
+        this.sendPing();
+        break;
+      case ShipAIWorker.DATA_PROCESSED_BY_AI:
+        // the ship AI finished the processing
+        if (this.aiWorker.receiveDecision(this.aiDecision)
+            && this.updateSpeedAndSteeringAngleWithAIDecisionData()) {
+          this.sendCommandsFromAIToShip();
+        }
+        break;
+    }
+    this.updateUI();
+  }
+
+  @Override
+  public void onDoubleTab() {
+
+    // stop the ship
+    this.stopShip();
+    this.printStatus();
+    this.ui.log(this.ui.getString(R.string.shipResetInfo));
+  }
+
+  @Override
+  public void onSlide(final SlideDirection direction, final int value) {
+
+    if (this.verticalSlide(direction)) {
+      // set the speed for the ship
+      this.setSpeedByDirection(direction);
+      this.lastSlideCommandType = this.getCurrentSpeedDirectionType();
+    } else if (this.horizontalSlide(direction)) {
+      // set the steering angle for the ship
+      this.setSteeringAngleByDirection(direction);
+      this.lastSlideCommandType = ShipDataType.DIRECTION;
+    } else {
+      // not a valid gesture
+      this.onSlideGestureAbord();
+      return;
+    }
+    // update the UI
+    this.updateUI();
+  }
+
+  private void setSteeringAngleByDirection(final SlideDirection direction) {
+    if (direction == SlideDirection.LEFT) {
+      this.steeringControl.steerLeft(STEERINGSTEP);
+    } else if (direction == SlideDirection.RIGHT) {
+      this.steeringControl.steerRight(STEERINGSTEP);
+    }
+  }
+
+  private void setSpeedByDirection(final SlideDirection direction) {
+    if (direction == SlideDirection.UP) {
+      this.speedControl.increaseSpeed(SPEED_STEP);
+    } else if (direction == SlideDirection.DOWN) {
+      this.speedControl.decreaseSpeed(SPEED_STEP);
+    }
+  }
+
+  private ShipDataType getCurrentSpeedDirectionType() {
+    return this.speedControl.isBackward() ? ShipDataType.SPEED_BACKWARD
+        : ShipDataType.SPEED_FORWARD;
+  }
+
+  private boolean horizontalSlide(final SlideDirection direction) {
+    return direction == SlideDirection.LEFT
+        || direction == SlideDirection.RIGHT;
+  }
+
+  private boolean verticalSlide(final SlideDirection direction) {
+    return direction == SlideDirection.UP || direction == SlideDirection.DOWN;
+  }
+
+  @Override
+  public void onSlideStart() {
+    this.isUserInputAvailable = true;
+  }
+
+  @Override
+  public void onSlideEnd() {
+    if (this.lastSlideCommandType != ShipDataType.INVALID) {
+      // get the command value
+      int value = this.getShipDataValueByLastComandType();
+      // send the data
+      this.sendCommand(this.lastSlideCommandType, value);
+      this.lastSlideCommandType = ShipDataType.INVALID;
+    }
+    this.isUserInputAvailable = false;
+  }
+
+  private int getShipDataValueByLastComandType() {
+    final int value = this.lastSlideCommandType == ShipDataType.DIRECTION ? this.steeringControl
+        .getCurrentAngle()
+        : this.speedControl.getCurrentSpeed();
+    return value;
+  }
+
+  @Override
+  public void onSlideGestureAbord() {
+    this.ui.showToast(this.ui.getString(R.string.gestureAbord));
+  }
+
+  @Override
+  public void onLongPress() {
+    this.kiEnabled = !this.kiEnabled;
+    String msg = "KI " + (this.kiEnabled ? "aktivert." : "deaktiviert.");
+    this.ui.showToast(msg);
+    this.ui.log(msg);
+  }
+
+  // /////////////////////////////
+  // private methods
+  // /////////////////////////////
+
+  private void computeReceivedData() {
+
+    final ShipData shipData;
+    synchronized (this) {
+      shipData = this.receivedShipData;
+    }
+    final ShipDataType dataType = shipData.getDataType();
+    final int dataValue = shipData.getDataValue();
+
+    if (dataType == ShipDataType.SONAR) {
+      // update object distance
+      final ISonarFilter filter = this.sonarFilter;
+      this.objectDistance = filter != null ? filter.filter(dataValue,
+          this.clock.nanoTime()) : dataValue;
+
+      // process the received data with the AI
+      // controller gets message if processor finished.
+      this.processDataWithAI();
+    }
+  }
+
+  private void processDataWithAI() {
+    if (!this.kiEnabled) {
+      return;
+    }
+    // the worker evaluates the freshest state, older ones are overwritten
+    this.aiWorker.publish(this.getShipState());
+    if (!this.clock.isRealTime()) {
+      // process in step with the virtual clock
+      this.aiWorker.processPending();
+    }
+  }
+
+  // called by the AI worker when a decision is ready
+  private void decisionReady() {
+    // a pending message takes the latest decision anyway
+    if (this.clock.isRealTime()
+        && this.eventLoop.hasPending(ShipAIWorker.DATA_PROCESSED_BY_AI)) {
+      return;
+    }
+    this.postMessage(ShipAIWorker.DATA_PROCESSED_BY_AI);
+  }
+
+  private boolean updateSpeedAndSteeringAngleWithAIDecisionData() {
+    boolean dataChanged = false;
+    // the decision delivered by the AI worker
+    final IShipAIDecision decision = this.aiDecision;
+    // update state data for UI
+    final int speed = decision.getSpeed();
+    if (speedChanged(decision)) {
+      this.speedControl.setCurrentSpeed(decision.isSpeedBackward() ? -speed
+          : speed);
+      dataChanged = true;
+    }
+    if (steeringAngleChanged(decision)) {
+      this.steeringControl.setCurrentAngle(decision.getDirection());
+      dataChanged = true;
+    }
+    return dataChanged;
+  }
+
+  private boolean speedChanged(final IShipAIDecision decision) {
+    return decision.getSpeed() != this.speedControl.getCurrentSpeed()
+        || decision.isSpeedBackward() != this.speedControl.isBackward();
+  }
+
+  private boolean steeringAngleChanged(final IShipAIDecision decision) {
+    return decision.getDirection() != this.steeringControl.getCurrentAngle();
+  }
+
+  private void sendCommandsFromAIToShip() {
+    // send commands
+    this.sendCommand(this.getSpeedCommandType(), this.speedControl
+        .getCurrentSpeed());
+    this.sendCommand(ShipDataType.DIRECTION, this.steeringControl
+        .getCurrentAngle());
+  }
+
+  private ShipState getShipState() {
+    final ShipState state = new ShipState(this.objectDistance,
+        this.steeringControl.getCurrentAngle(), this.speedControl
+            .getCurrentSpeed(), this.speedControl.isBackward(), this.clock
+            .nanoTime());
+    return state;
+  }
+
+  private ShipDataType getSpeedCommandType() {
+    return this.speedControl.isBackward() ? ShipDataType.SPEED_BACKWARD
+        : ShipDataType.SPEED_FORWARD;
+  }
+
+  private boolean isTcpNotNullAndConnected() {
+    return this.tcpClient != null && this.tcpClient.isConnected();
+  }
+
+  private void printStatus() {
+    final int angle = this.steeringControl.getCurrentAngle();
+    final int distance = this.objectDistance;
+    final int speed = this.speedControl.getCurrentSpeed();
+    final boolean back = this.speedControl.isBackward();
+
+    final StringBuilder outputText = new StringBuilder();
+    outputText.append("Ship state");
+    outputText.append("\n==========");
+    outputText.append("\nCurrent Speed: " + (back ? "-" : "") + speed);
+    outputText.append("\nDirection: " + this.getDirection(angle) + " (" + angle
+        + ")");
+    outputText.append("\nObject distance: " + distance + "cm");
+    this.ui.showStatus(outputText.toString());
+  }
+
+  private String getDirection(final int angle) {
+    if (angle >= 0 && angle < 90) {
+      return "left";
+    } else if (angle > 90 && angle <= 180) {
+      return "right";
+    }
+    return "straight";
+  }
+
+  private void sendCommand(final ShipDataType commandType, final int value) {
+    if (this.isTcpNotNullAndConnected() && commandType != null) {
+      try {
+        this.tcpClient.sendData(commandType, value);
+        this.tapSentCommand(commandType, value);
+        this.ui.log("<== " + commandType.name() + "(" + value + ")");
+      } catch (final IOException e) {
+        e.printStackTrace();
+        String errMsg = this.ui.getString(R.string.sendDataError) + "\n";
+        errMsg += e.getMessage();
+        this.ui.logError(errMsg, e);
+        this.ui.showToast(errMsg);
+      }
+    }
+  }
+
+  private void startAliveTimer() {
+    this.stopAliveTimer();
+    this.aliveTask = this.clock.schedule(new MessageTimerTask(this, IAMALIVE),
+        ALIVETIMEOUT, ALIVETIMEOUT);
+    this.pingTask = this.clock.schedule(new MessageTimerTask(this, PING),
+        PINGINTERVAL, PINGINTERVAL);
+    this.ui.log("AliveTimer gestartet");
+  }
+
+  private void sendPing() {
+    if (!this.isTcpNotNullAndConnected()) {
+      return;
+    }
+    final int id = this.pingTracker.nextPing(this.clock.nanoTime());
+    try {
+      // not logged, one ping per second would flood the log
+      this.tcpClient.sendData(ShipDataType.PING, id);
+      this.tapSentCommand(ShipDataType.PING, id);
+    } catch (final IOException e) {
+      this.ui.logError(e.getMessage(), e);
+    }
+    if (this.pingTracker.getSentCount() % RTT_LOG_PINGS == 0) {
+      this.ui.log("RTT " + this.pingTracker.getHistogram());
+    }
+  }
+
+  private void startRanging() {
+    if (this.isTcpNotNullAndConnected()) {
+      this.sendCommand(ShipDataType.INIT_RANGING, 0);
+    }
+  }
+
+  private void startTCPListening() {
+    if (this.isTcpNotNullAndConnected()) {
+      this.tcpClient.listen();
+    } else {
+      final String errMsg = this.ui.getString(R.string.tcpListeningError);
+      this.ui.logError(errMsg, null);
+      this.ui.showToast(errMsg);
+    }
+  }
+
+  private void stopAliveTimer() {
+    // only the own tasks, the clock may be shared
+    if (this.aliveTask != null) {
+      this.aliveTask.cancel();
+      this.aliveTask = null;
+    }
+    if (this.pingTask != null) {
+      this.pingTask.cancel();
+      this.pingTask = null;
+    }
+  }
+
+  private void stopRanging() {
+    if (this.isTcpNotNullAndConnected()) {
+      this.sendCommand(ShipDataType.STOP_RANGING, 0);
+    }
+  }
+
+  private void stopShip() {
+    this.speedControl.resetSpeed();
+    this.steeringControl.reset();
+    this.sendCommand(ShipDataType.DIRECTION, this.steeringControl
+        .getCurrentAngle());
+    this.sendCommand(ShipDataType.SPEED_FORWARD, this.speedControl
+        .getCurrentSpeed());
+  }
+
+  private void stopTCPListening() {
+    if (this.isTcpNotNullAndConnected()) {
+      this.tcpClient.stopListening();
+    }
+  }
+
+  private void updateUI() {
+    this.printStatus();
+  }
+
+}
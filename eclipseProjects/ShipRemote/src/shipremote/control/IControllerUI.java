@@ -0,0 +1,55 @@
+package shipremote.control;
+
+/**
+ * Interface for everything a ControllerCore shows to the user. On Android the
+ * AndroidControllerUI writes to the log, toasts and the TextView, on a plain
+ * JVM a ConsoleControllerUI prints or counts the output.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface IControllerUI {
+
+  /**
+   * Writes a message to the debug log.
+   * 
+   * @param text
+   *          The message.
+   */
+  public void log(String text);
+
+  /**
+   * Writes an error to the log.
+   * 
+   * @param text
+   *          The message.
+   * @param e
+   *          The cause, may be null.
+   */
+  public void logError(String text, Throwable e);
+
+  /**
+   * Shows a short notification.
+   * 
+   * @param text
+   *          The notification.
+   */
+  public void showToast(String text);
+
+  /**
+   * Shows the state of the ship.
+   * 
+   * @param text
+   *          The state text, replaces the previous one.
+   */
+  public void showStatus(String text);
+
+  /**
+   * Gets a text of the application resources.
+   * 
+   * @param resId
+   *          The id of the text, one of R.string.
+   * @return The text.
+   */
+  public String getString(int resId);
+}
@@ -0,0 +1,38 @@
+package shipremote.control;
+
+/**
+ * Interface for the thread a ControllerCore runs on. Messages posted from any
+ * thread are handed to the IMessageHandler one after the other on the thread
+ * of the loop. On Android this is the UI thread (see ShipController), on a
+ * plain JVM a QueueEventLoop.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface IEventLoop {
+
+  /**
+   * Sets the receiver of the messages.
+   * 
+   * @param handler
+   *          The IMessageHandler.
+   */
+  public void setMessageHandler(IMessageHandler handler);
+
+  /**
+   * Posts a message to the handler. Returns at once.
+   * 
+   * @param what
+   *          The message id.
+   */
+  public void post(int what);
+
+  /**
+   * Checks whether a message is posted but not handled yet.
+   * 
+   * @param what
+   *          The message id.
+   * @return True if a message with the id is pending, else false.
+   */
+  public boolean hasPending(int what);
+}
@@ -0,0 +1,18 @@
+package shipremote.control;
+
+/**
+ * Interface for the receiver of the messages of an IEventLoop.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public interface IMessageHandler {
+
+  /**
+   * Handles a message. Called on the thread of the event loop.
+   * 
+   * @param what
+   *          The message id.
+   */
+  public void handleMessage(int what);
+}
@@ -2,7 +2,8 @@ package shipremote.control;
 
 import shipremote.ai.ShipAIFactory;
 import shipremote.communication.INetworkClient;
-import shipremote.communication.TCPClient;
+import shipremote.communication.NioTCPClient;
+import shipremote.communication.ReconnectingClient;
 import shipremote.res.R;
 import shipremote.ui.GesturesView;
 import shipremote.ui.TextViewOutput;
@@ -41,7 +42,7 @@ public class Main extends Activity {
     Main._instance = this;
     this.gestureView = (GesturesView) this.findViewById(R.id.GesturesView);
     TextViewOutput.setTextView(this.gestureView);
-    this.networkClient = new TCPClient();
+    this.networkClient = new ReconnectingClient(new NioTCPClient());
     this.networkClient.setConnectionTimeout(10000);
     this.controller = new ShipController(this.gestureView, this.networkClient,
         ShipAIFactory.getShipAI());
@@ -1,25 +1,20 @@
 package shipremote.control;
 
-import java.util.TimerTask;
+class MessageTimerTask implements Runnable {
 
-import android.os.Handler;
-
-class MessageTimerTask extends TimerTask {
-
-	private Handler handler = null;
+	private ControllerCore controller = null;
 	private int messageID = 0;
 	
 	
 	
-	public MessageTimerTask(Handler handler, int messageID) {
+	public MessageTimerTask(ControllerCore controller, int messageID) {
 		super();
-		this.handler = handler;
+		this.controller = controller;
 		this.messageID = messageID;
 	}
 
-	@Override
 	public void run() {
-		handler.sendEmptyMessage(this.messageID);
+		controller.postMessage(this.messageID);
 	}
 
 }
@@ -0,0 +1,141 @@
+package shipremote.control;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An IEventLoop for a plain JVM. Posted messages wait in a queue until the
+ * loop thread, started by start(), or a caller of processPending() hands them
+ * to the handler.
+ * 
+ * @author Andreas Gnther
+ * 
+ */
+public class QueueEventLoop implements IEventLoop, Runnable {
+
+  // a message id that is never posted by a controller
+  private static final Integer STOP = Integer.valueOf(Integer.MIN_VALUE);
+
+  // ///////////////////////////////
+  // fields
+  // ///////////////////////////////
+  private final BlockingQueue<Integer> queue =
+      new LinkedBlockingQueue<Integer>();
+  private volatile IMessageHandler messageHandler = null;
+  private Thread thread = null;
+  private volatile long handledCount = 0;
+
+  // ///////////////////////////////
+  // public methods
+  // ///////////////////////////////
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * shipremote.control.IEventLoop#setMessageHandler(shipremote.control.IMessageHandler
+   * )
+   */
+  public void setMessageHandler(final IMessageHandler handler) {
+    this.messageHandler = handler;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IEventLoop#post(int)
+   */
+  public void post(final int what) {
+    this.queue.add(Integer.valueOf(what));
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see shipremote.control.IEventLoop#hasPending(int)
+   */
+  public boolean hasPending(final int what) {
+    return this.queue.contains(Integer.valueOf(what));
+  }
+
+  /**
+   * Gets the number of messages handed to the handler.
+   * 
+   * @return The handled message count.
+   */
+  public long getHandledCount() {
+    return this.handledCount;
+  }
+
+  /**
+   * Handles all pending messages on the calling thread. For a loop that is
+   * not started, e.g. in a benchmark.
+   * 
+   * @return The number of handled messages.
+   */
+  public int processPending() {
+    int count = 0;
+    Integer what = this.queue.poll();
+    while (what != null) {
+      if (what != STOP) {
+        this.dispatch(what.intValue());
+        count++;
+      }
+      what = this.queue.poll();
+    }
+    return count;
+  }
+
+  /**
+   * Starts the loop thread.
+   */
+  public synchronized void start() {
+    if (this.thread == null) {
+      this.thread = new Thread(this, "QueueEventLoop");
+      this.thread.start();
+    }
+  }
+
+  /**
+   * Stops the loop thread after the messages posted before and waits for it.
+   * 
+   * @throws InterruptedException
+   */
+  public void stop() throws InterruptedException {
+    final Thread current;
+    synchronized (this) {
+      current = this.thread;
+      this.thread = null;
+    }
+    if (current != null) {
+      this.queue.add(STOP);
+      current.join();
+    }
+  }
+
+  /**
+   * Runs the loop until stop() is called.
+   */
+  public void run() {
+    try {
+      Integer what = this.queue.take();
+      while (what != STOP) {
+        this.dispatch(what.intValue());
+        what = this.queue.take();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // ///////////////////////////////
+  // private methods
+  // ///////////////////////////////
+  private void dispatch(final int what) {
+    final IMessageHandler handler = this.messageHandler;
+    if (handler != null) {
+      handler.handleMessage(what);
+    }
+    this.handledCount++;
+  }
+
+}
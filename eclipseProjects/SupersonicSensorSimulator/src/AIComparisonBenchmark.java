@@ -0,0 +1,302 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import shipremote.ai.ShipAIFactory;
+import shipremote.communication.ExecutionMode;
+import shipremote.communication.IBatchDataReceiverListener;
+import shipremote.communication.IDataReceiverListener;
+import shipremote.communication.INetworkClient;
+import shipremote.communication.ShipData;
+import shipremote.communication.ShipDataType;
+import shipremote.communication.VirtualClock;
+import shipremote.control.ConsoleControllerUI;
+import shipremote.control.ControllerCore;
+import shipremote.control.QueueEventLoop;
+
+/**
+ * Drives a headless ControllerCore in closed loop with a PhysicsScenario and
+ * compares how the ais keep the ship off the walls of the pool. Every ai runs
+ * the same approach trials per sonar interval: the ship starts at one of
+ * START_POSITIONS, heads towards a wall, the pillar or the pier and the trial
+ * ends after TRIAL_TIME or at the first collision. The world is stepped on
+ * the 10 ms tick of the scenario and the VirtualClock of the controller
+ * follows the world time.
+ * <p>
+ * A danger starts when the true time to collision, the ray cast distance
+ * divided by the forward speed, drops below DANGER_TIME while the ship
+ * cruises straight ahead. The reaction latency is the time from there to the
+ * first command that slows down, goes backward or steers away. A danger that
+ * ends in a collision before any reaction is counted as missed.
+ * </p>
+ *
+ * <pre>
+ * AIComparisonBenchmark [-ais dangerlevel,ttc] [-intervals 100,250,500,1000]
+ *                       [-noise 3]
+ * </pre>
+ */
+public class AIComparisonBenchmark {
+
+  private static final double TICK = 0.01;
+  private static final double TRIAL_TIME = 12;
+  private static final double DANGER_TIME = 2.0;
+  private static final int CRUISE_SPEED = 100;
+  private static final int STRAIGHT = 90;
+  // x, y and heading: towards the walls of the pool and the pier
+  private static final double[][] START_POSITIONS = { { 100, 170, 0 },
+      { 100, 170, 20 }, { 250, 300, 0 }, { 300, 180, 90 }, { 400, 250, -90 },
+      { 300, 200, 180 }, { 480, 150, -30 }, { 200, 250, 135 } };
+
+  private final String ai;
+  private final long sonarInterval;
+  private final double noise;
+  private LoopbackClient client = null;
+  private PhysicsScenario scenario = null;
+  private double dangerStart = -1;
+  private int trialCount = 0;
+  private int collisionCount = 0;
+  private double minClearance = Double.MAX_VALUE;
+  private double clearanceSum = 0;
+  private int dangerCount = 0;
+  private int reactionCount = 0;
+  private int missedCount = 0;
+  private double latencySum = 0;
+  private double maxLatency = 0;
+  private int commandCount = 0;
+
+  /**
+   * @param args
+   *          See the class comment.
+   */
+  public static void main(String[] args) throws Exception {
+    String ais = ShipAIFactory.DANGER_LEVEL_AI + ","
+        + ShipAIFactory.TIME_TO_COLLISION_AI;
+    String intervals = "100,250,500,1000";
+    double noise = 3;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-ais")) {
+        ais = args[i + 1];
+      } else if (args[i].equals("-intervals")) {
+        intervals = args[i + 1];
+      } else if (args[i].equals("-noise")) {
+        noise = Double.parseDouble(args[i + 1]);
+      }
+    }
+    System.out.println(String.format("%d trials of %.0f s, noise %.1f cm, "
+        + "danger below %.1f s time to collision", START_POSITIONS.length,
+        TRIAL_TIME, noise, DANGER_TIME));
+    for (String interval : intervals.split(",")) {
+      for (String ai : ais.split(",")) {
+        AIComparisonBenchmark benchmark = new AIComparisonBenchmark(ai, Long
+            .parseLong(interval), noise);
+        for (int i = 0; i < START_POSITIONS.length; i++) {
+          benchmark.runTrial(START_POSITIONS[i], i);
+        }
+        System.out.println(String.format("%-12s %4s ms: %s", ai, interval,
+            benchmark.getResult()));
+      }
+    }
+  }
+
+  private AIComparisonBenchmark(String ai, long sonarInterval, double noise) {
+    this.ai = ai;
+    this.sonarInterval = sonarInterval;
+    this.noise = noise;
+  }
+
+  private void runTrial(double[] start, long seed) throws Exception {
+    ShipWorld world = ShipWorld.createPool(start[0], start[1], start[2]);
+    // the same seed for every ai, so they see the same noise
+    this.scenario = new PhysicsScenario(world, (long) (TICK * 1000),
+        this.noise, seed);
+    this.client = new LoopbackClient(this);
+    this.dangerStart = -1;
+    VirtualClock clock = new VirtualClock();
+    // a new ai for every trial, it may keep a history
+    ControllerCore core = new ControllerCore(new QueueEventLoop(),
+        new ConsoleControllerUI(false), this.client, ShipAIFactory
+            .getShipAI(this.ai), clock, ExecutionMode.PLATFORM);
+    this.client.connect("loopback", 0);
+    core.start();
+    // enable the AI
+    core.onLongPress();
+    int ticksPerFrame = Math.max(1, (int) Math.round(this.sonarInterval
+        / 1000.0 / TICK));
+    long ticks = Math.round(TRIAL_TIME / TICK);
+    for (long tick = 1; tick <= ticks; tick++) {
+      // one tick of the world
+      int range = this.scenario.nextRange();
+      clock.advanceTo(Math.round(world.getTime() * 1e9));
+      if (!this.observe(world)) {
+        break;
+      }
+      if (tick % ticksPerFrame == 0) {
+        this.client.deliver(range);
+      }
+    }
+    core.stop();
+    this.client.disconnect();
+    this.trialCount++;
+    this.minClearance = Math.min(this.minClearance, world.getMinClearance());
+    this.clearanceSum += world.getMinClearance();
+    this.commandCount += this.client.commandCount;
+  }
+
+  private boolean observe(ShipWorld world) {
+    if (world.getCollisionCount() > 0) {
+      this.collisionCount++;
+      if (this.dangerStart >= 0) {
+        this.missedCount++;
+      }
+      return false;
+    }
+    double speed = world.getSpeed();
+    boolean isDanger = speed > 0
+        && world.castSonar() / speed < DANGER_TIME;
+    if (this.dangerStart < 0) {
+      if (isDanger && this.client.isCruising()) {
+        this.dangerStart = world.getTime();
+        this.dangerCount++;
+      }
+    } else if (!isDanger) {
+      // e.g. the ship drifted past the obstacle
+      this.dangerStart = -1;
+    }
+    return true;
+  }
+
+  private void commandSent() {
+    if (this.dangerStart >= 0 && !this.client.isCruising()) {
+      double latency = this.scenario.getWorld().getTime() - this.dangerStart;
+      this.latencySum += latency;
+      this.maxLatency = Math.max(this.maxLatency, latency);
+      this.reactionCount++;
+      this.dangerStart = -1;
+    }
+  }
+
+  private String getResult() {
+    return String.format("%d/%d collisions, clearance min %5.1f mean %5.1f "
+        + "cm, %2d dangers, %d missed, latency mean %4.0f max %4.0f ms, %4d "
+        + "commands", this.collisionCount, this.trialCount,
+        this.minClearance, this.clearanceSum / this.trialCount,
+        this.dangerCount, this.missedCount, this.reactionCount == 0 ? 0
+            : 1000 * this.latencySum / this.reactionCount,
+        1000 * this.maxLatency, this.commandCount);
+  }
+
+  /**
+   * An INetworkClient that hands the commands of the controller to the
+   * PhysicsScenario and delivers the sonar values to the listeners on the
+   * calling thread.
+   */
+  private static class LoopbackClient implements INetworkClient {
+
+    private final AIComparisonBenchmark benchmark;
+    private final List<IDataReceiverListener> listeners =
+        new CopyOnWriteArrayList<IDataReceiverListener>();
+    private final List<IBatchDataReceiverListener> batchListeners =
+        new CopyOnWriteArrayList<IBatchDataReceiverListener>();
+    private final ShipData[] batch = new ShipData[1];
+    private boolean isConnected = false;
+    private boolean isListening = false;
+    private int speed = 0;
+    private boolean isBackward = false;
+    private int direction = STRAIGHT;
+    private int commandCount = 0;
+
+    LoopbackClient(AIComparisonBenchmark benchmark) {
+      this.benchmark = benchmark;
+    }
+
+    boolean isCruising() {
+      return !this.isBackward && this.speed >= CRUISE_SPEED
+          && this.direction == STRAIGHT;
+    }
+
+    void deliver(int range) {
+      if (!this.isListening) {
+        return;
+      }
+      ShipData data = ShipData.valueOf(ShipDataType.SONAR, range);
+      for (IDataReceiverListener listener : this.listeners) {
+        listener.dataReceived(data);
+      }
+      this.batch[0] = data;
+      for (IBatchDataReceiverListener listener : this.batchListeners) {
+        listener.dataReceived(this.batch, 1);
+      }
+    }
+
+    public boolean isConnected() {
+      return this.isConnected;
+    }
+
+    public int getConnectionTimeout() {
+      return 0;
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+    }
+
+    public void connect(String host, int port) {
+      this.isConnected = true;
+    }
+
+    public void disconnect() {
+      this.isConnected = false;
+      this.isListening = false;
+    }
+
+    public boolean sendData(ShipData shipCommand) throws IOException {
+      return shipCommand != null
+          && this.sendData(shipCommand.getDataType(), shipCommand
+              .getDataValue());
+    }
+
+    public boolean sendData(ShipDataType dataType, int value)
+        throws IOException {
+      if (!this.isConnected || dataType == null) {
+        return false;
+      }
+      switch (dataType) {
+        case SPEED_FORWARD:
+        case SPEED_BACKWARD:
+          this.speed = value;
+          this.isBackward = dataType == ShipDataType.SPEED_BACKWARD;
+          break;
+        case DIRECTION:
+          this.direction = value;
+          break;
+        default:
+          return true;
+      }
+      this.commandCount++;
+      this.benchmark.scenario.commandReceived(dataType, value);
+      this.benchmark.commandSent();
+      return true;
+    }
+
+    public byte[] readData() {
+      return null;
+    }
+
+    public void addDataReceiverListener(IDataReceiverListener listener) {
+      this.listeners.add(listener);
+    }
+
+    public void addBatchDataReceiverListener(
+        IBatchDataReceiverListener listener) {
+      this.batchListeners.add(listener);
+    }
+
+    public void listen() {
+      this.isListening = true;
+    }
+
+    public void stopListening() {
+      this.isListening = false;
+    }
+  }
+
+}
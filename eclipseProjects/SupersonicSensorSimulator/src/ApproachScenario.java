@@ -0,0 +1,27 @@
+import shipremote.communication.ShipDataType;
+
+/**
+ * An obstacle that comes closer by a fixed step per sonar frame. When it is
+ * reached, the next obstacle appears at the maximum range.
+ */
+public class ApproachScenario implements ISonarScenario {
+
+  private static final int MAX_RANGE = 255;
+  private static final int MIN_RANGE = 10;
+  private static final int STEP = 5;
+  private int range = MAX_RANGE;
+
+  public int nextRange() {
+    final int current = this.range;
+    this.range = current - STEP < MIN_RANGE ? MAX_RANGE : current - STEP;
+    return current;
+  }
+
+  public void commandReceived(ShipDataType dataType, int value) {
+    // the obstacle does not depend on the ship
+  }
+
+  public String getSummary() {
+    return null;
+  }
+}
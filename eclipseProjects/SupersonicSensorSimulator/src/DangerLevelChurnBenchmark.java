@@ -0,0 +1,89 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import shipremote.ai.DangerLevelAI;
+import shipremote.ai.DangerLevelFactory;
+
+/**
+ * Replays a session through the ControllerCore with the AI enabled, once with
+ * the decisions of the distances alone and once with the DangerLevelAI and
+ * its hysteresis and dwell time, and counts the SPEED and DIRECTION commands
+ * sent. The session is a recorded FrameJournal or, without one, a synthetic
+ * one whose distance hovers around every boundary of the DangerLevels.
+ *
+ * <pre>
+ * DangerLevelChurnBenchmark [-journal directory]
+ * </pre>
+ */
+public class DangerLevelChurnBenchmark {
+
+  private static final int[] HOVER_DISTANCES = { 250, 200, 150, 100 };
+  private static final int FRAMES_PER_DISTANCE = 600;
+  private static final long FRAME_INTERVAL = 100000000L;
+  private static final double NOISE = 4;
+  private static final double DRIFT = 8;
+
+  private final List<long[]> samples = new ArrayList<long[]>();
+  private File journal = null;
+
+  /**
+   * @param args
+   *          See the class comment.
+   */
+  public static void main(String[] args) throws Exception {
+    DangerLevelChurnBenchmark benchmark = new DangerLevelChurnBenchmark();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-journal")) {
+        benchmark.journal = new File(args[i + 1]);
+      }
+    }
+    benchmark.loadSession();
+    System.out.println((benchmark.journal != null ? "journal "
+        + benchmark.journal : "synthetic session")
+        + ", " + benchmark.samples.size() + " sonar frames, hysteresis "
+        + DangerLevelFactory.HYSTERESIS + " cm, dwell time "
+        + DangerLevelFactory.MIN_DWELL_TIME + " ms");
+
+    long stateless = SessionReplay.countCommands(benchmark.samples,
+        SessionReplay.createStatelessAI(), null);
+    DangerLevelAI ai = new DangerLevelAI();
+    long stateful = SessionReplay.countCommands(benchmark.samples, ai, null);
+    System.out.println(String.format("without hysteresis %6d commands",
+        stateless));
+    System.out.println(String.format("with hysteresis    %6d commands, "
+        + "%.1f%% saved", stateful, stateless == 0 ? 0.0 : 100.0
+        * (stateless - stateful) / stateless));
+    System.out.println(String.format("level changes %d of %d, %d decisions"
+        + " held", ai.getTransitionCount(), ai.getRawTransitionCount(), ai
+        .getHeldCount()));
+    StringBuilder line = new StringBuilder("entered");
+    for (int level = 0; level <= DangerLevelFactory.MAX_DANGERLEVEL; level++) {
+      line.append(String.format(" level %d: %d", level, ai
+          .getTransitionCount(level)));
+      line.append(level < DangerLevelFactory.MAX_DANGERLEVEL ? "," : "");
+    }
+    System.out.println(line);
+  }
+
+  private void loadSession() throws Exception {
+    if (this.journal != null) {
+      this.samples.addAll(SessionReplay.loadSonarSamples(this.journal));
+      return;
+    }
+    // a slow drift with noise around every boundary
+    Random random = new Random(1);
+    int frame = 0;
+    for (int distance : HOVER_DISTANCES) {
+      for (int i = 0; i < FRAMES_PER_DISTANCE; i++) {
+        double drift = DRIFT * Math.sin(2 * Math.PI * i / 100.0);
+        int measured = (int) Math.round(distance + drift
+            + random.nextGaussian() * NOISE);
+        this.samples.add(new long[] { frame++ * FRAME_INTERVAL,
+            Math.max(0, Math.min(255, measured)) });
+      }
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import shipremote.ai.DangerLevelAI;
+import shipremote.ai.DangerLevelDecisionTable;
+import shipremote.ai.base.IShipAIDecision;
+import shipremote.ai.base.ShipState;
+
+/**
+ * Compares the scan of the danger level ranges with the compiled
+ * DangerLevelDecisionTable of the DangerLevelAI. Checks first that both give
+ * the same decision for every distance from 0 to 255, then runs both over all
+ * distances. The allocated bytes are read from the
+ * com.sun.management.ThreadMXBean of the JVM, if it is available.
+ */
+public class DecisionTableBenchmark {
+
+  private static final int WARMUP_ROUNDS = 20000;
+  private static final int ROUNDS = 200000;
+  private static final int DISTANCES =
+      DangerLevelDecisionTable.MAX_DISTANCE + 1;
+
+  private final DangerLevelAI ai = new DangerLevelAI();
+  private final ShipState state = new ShipState(0, 90, 0, false);
+  private long checksum = 0;
+  // keep the last decision reachable, so the allocation is not optimized away
+  private IShipAIDecision lastDecision = null;
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) throws Exception {
+    DecisionTableBenchmark benchmark = new DecisionTableBenchmark();
+    int mismatch = benchmark.ai.verifyDecisionTable();
+    if (mismatch >= 0) {
+      System.out.println("decision table differs from the scan at distance "
+          + mismatch);
+      System.exit(1);
+    }
+    System.out.println("decision table equals the scan for distance 0 to "
+        + DangerLevelDecisionTable.MAX_DISTANCE + ", "
+        + benchmark.ai.getDecisionTable().getDecisionCount()
+        + " shared decisions");
+    benchmark.run(false, WARMUP_ROUNDS);
+    benchmark.run(true, WARMUP_ROUNDS);
+    for (int table = 0; table < 2; table++) {
+      final long bytesBefore = getAllocatedBytes();
+      final long start = System.nanoTime();
+      benchmark.run(table == 1, ROUNDS);
+      final long elapsed = System.nanoTime() - start;
+      final long allocated = getAllocatedBytes() - bytesBefore;
+      final long decisions = (long) ROUNDS * DISTANCES;
+      System.out.println((table == 1 ? "table: " : "scan:  ")
+          + (elapsed * 10 / decisions) / 10.0 + " ns/decision, "
+          + (bytesBefore < 0 ? "n/a" : String.valueOf(Math.round(allocated
+              * 10.0 / decisions) / 10.0)) + " bytes/decision");
+    }
+    System.out.println("checksum " + benchmark.checksum);
+  }
+
+  private void run(boolean table, int rounds) {
+    for (int round = 0; round < rounds; round++) {
+      for (int distance = 0; distance < DISTANCES; distance++) {
+        this.state.setObjectDistance(distance);
+        final IShipAIDecision decision = table ? this.ai.getDecisionTable()
+            .getDecision(distance) : this.ai.getDecisionByScan(this.state);
+        this.checksum += decision.getSpeed() + decision.getDirection();
+        this.lastDecision = decision;
+      }
+    }
+  }
+
+  private static long getAllocatedBytes() {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    try {
+      final Method method = Class.forName("com.sun.management.ThreadMXBean")
+          .getMethod("getThreadAllocatedBytes", long.class);
+      return ((Long) method.invoke(bean, Thread.currentThread().getId()))
+          .longValue();
+    } catch (final Exception e) {
+      return -1;
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import shipremote.communication.ExecutionMode;
+import shipremote.communication.IBatchDataReceiverListener;
+import shipremote.communication.LatencyHistogram;
+import shipremote.communication.ShipCommandFactory;
+import shipremote.communication.ShipData;
+import shipremote.communication.TCPClient;
+import shipremote.communication.WaitStrategy;
+
+/**
+ * Compares the ExecutionModes of the TCPClient with many connections. An
+ * in-process server sends one sonar frame per connection every few
+ * milliseconds, the benchmark measures the frame latency from the write to
+ * the listener, the number of platform threads, the used heap and the
+ * resident memory of the process (Linux only), which includes the thread
+ * stacks.
+ */
+public class ExecutionModeBenchmark {
+
+  private static final int[] CONNECTION_COUNTS = { 16, 128 };
+  private static final int RUNTIME = 3000;
+  private static final int SEND_INTERVAL = 5;
+
+  private final LatencyHistogram latency = new LatencyHistogram();
+  // send time per frame value, frames are numbered round by round
+  private final long[] sendTimes = new long[256];
+  private volatile boolean isStreaming = true;
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) throws Exception {
+    if (!ExecutionMode.isVirtualThreadAvailable()) {
+      System.out.println("No virtual threads on this JVM, "
+          + "VIRTUAL uses platform threads with blocking reads.");
+    }
+    for (final int connectionCount : CONNECTION_COUNTS) {
+      for (final ExecutionMode mode : ExecutionMode.values()) {
+        new ExecutionModeBenchmark().run(mode, connectionCount);
+      }
+    }
+  }
+
+  private void run(ExecutionMode mode, int connectionCount) throws Exception {
+    final ServerSocket server = new ServerSocket(0);
+    final long heapBefore = getUsedHeap();
+    final long residentBefore = getResidentMemory();
+    final IBatchDataReceiverListener listener = new IBatchDataReceiverListener() {
+      public void dataReceived(ShipData[] receivedData, int count) {
+        final long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+          final long sent = ExecutionModeBenchmark.this.sendTimes[receivedData[i]
+              .getDataValue()];
+          ExecutionModeBenchmark.this.latency.record((now - sent) / 1000);
+        }
+      }
+    };
+    final List<TCPClient> clients = new ArrayList<TCPClient>();
+    final List<Socket> ships = new ArrayList<Socket>();
+    for (int i = 0; i < connectionCount; i++) {
+      final TCPClient client = new TCPClient(WaitStrategy.PARK, mode);
+      client.addBatchDataReceiverListener(listener);
+      client.connect("127.0.0.1", server.getLocalPort());
+      client.listen();
+      clients.add(client);
+      final Socket ship = server.accept();
+      ship.setTcpNoDelay(true);
+      ships.add(ship);
+    }
+    final int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+    final long heap = getUsedHeap() - heapBefore;
+    final long resident = getResidentMemory() - residentBefore;
+
+    final Thread streamer = this.startStreamer(ships);
+    Thread.sleep(RUNTIME);
+    this.isStreaming = false;
+    streamer.join();
+
+    System.out.println(mode + ", " + connectionCount + " connections: "
+        + threads + " platform threads, " + (heap / 1024) + " KB heap, "
+        + (residentBefore < 0 ? "n/a" : String.valueOf(resident))
+        + " KB resident, latency " + this.latency);
+
+    for (final TCPClient client : clients) {
+      client.disconnect();
+    }
+    for (final Socket ship : ships) {
+      ship.close();
+    }
+    server.close();
+  }
+
+  private Thread startStreamer(final List<Socket> ships) {
+    final Thread streamer = new Thread(new Runnable() {
+      public void run() {
+        final byte[] frame = new byte[ShipCommandFactory.FRAME_LENGTH];
+        int round = 0;
+        try {
+          // the first rounds are not measured
+          while (ExecutionModeBenchmark.this.isStreaming) {
+            final int value = round++ & 0xFF;
+            System.arraycopy(ShipCommandFactory.getSonarFrame(value), 0,
+                frame, 0, frame.length);
+            ExecutionModeBenchmark.this.sendTimes[value] = System.nanoTime();
+            for (final Socket ship : ships) {
+              final OutputStream out = ship.getOutputStream();
+              out.write(frame);
+            }
+            if (round == 100) {
+              ExecutionModeBenchmark.this.latency.reset();
+            }
+            Thread.sleep(SEND_INTERVAL);
+          }
+        } catch (IOException e) {
+          e.printStackTrace();
+        } catch (InterruptedException e) {
+          // stop streaming
+        }
+      }
+    }, "Streamer");
+    streamer.start();
+    return streamer;
+  }
+
+  private static long getResidentMemory() {
+    try {
+      final BufferedReader reader = new BufferedReader(new FileReader(
+          "/proc/self/status"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.startsWith("VmRSS:")) {
+            return Long.parseLong(line.substring(6).replace("kB", "").trim());
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (final IOException e) {
+      // not on Linux
+    }
+    return -1;
+  }
+
+  private static long getUsedHeap() throws InterruptedException {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import shipremote.communication.IDataReceiverListener;
+import shipremote.communication.ShipCommandFactory;
+import shipremote.communication.ShipConnection;
+import shipremote.communication.ShipConnectionManager;
+import shipremote.communication.ShipData;
+import shipremote.communication.ShipDataType;
+
+/**
+ * Measures the ShipConnectionManager with 1, 16 and 256 simulated ships. An
+ * in-process server streams sonar frames to every ship, the benchmark counts
+ * the delivered frames and the number of live threads.
+ */
+public class FleetBenchmark {
+
+  private static final int[] FLEET_SIZES = { 1, 16, 256 };
+  private static final int RUNTIME = 3000;
+  private static final int FRAMES_PER_WRITE = 64;
+
+  private final AtomicLong receivedFrames = new AtomicLong();
+  private volatile boolean isStreaming = true;
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) throws Exception {
+    for (final int fleetSize : FLEET_SIZES) {
+      new FleetBenchmark().run(fleetSize);
+    }
+  }
+
+  private void run(int fleetSize) throws Exception {
+    final ServerSocketChannel server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+    final int port = server.socket().getLocalPort();
+    final int threadsBefore = Thread.activeCount();
+
+    final ShipConnectionManager manager = new ShipConnectionManager();
+    final IDataReceiverListener listener = new IDataReceiverListener() {
+      public void dataReceived(ShipData shipData) {
+        FleetBenchmark.this.receivedFrames.incrementAndGet();
+      }
+    };
+    final List<SocketChannel> ships = new ArrayList<SocketChannel>();
+    for (int i = 0; i < fleetSize; i++) {
+      final ShipConnection connection = manager.createConnection();
+      connection.addDataReceiverListener(listener);
+      connection.connect("127.0.0.1", port);
+      connection.listen();
+      ships.add(server.accept());
+    }
+    final int threadsDuring = Thread.activeCount();
+
+    final Thread streamer = this.startStreamer(ships);
+    final long start = System.nanoTime();
+    Thread.sleep(RUNTIME);
+    final long frames = this.receivedFrames.get();
+    final long elapsed = System.nanoTime() - start;
+    this.isStreaming = false;
+    streamer.join();
+
+    System.out.println(fleetSize + " ships: "
+        + (frames * 1000000000L / elapsed) + " frames/s, "
+        + manager.getLoopCount() + " loops, "
+        + manager.getConnectionCount() + " connections, "
+        + (threadsDuring - threadsBefore) + " additional threads");
+
+    manager.shutdown();
+    for (final SocketChannel ship : ships) {
+      ship.close();
+    }
+    server.close();
+  }
+
+  private Thread startStreamer(final List<SocketChannel> ships) {
+    final ByteBuffer frames = ByteBuffer
+        .allocateDirect(FRAMES_PER_WRITE * ShipCommandFactory.FRAME_LENGTH);
+    for (int i = 0; i < FRAMES_PER_WRITE; i++) {
+      ShipCommandFactory.putFrame(frames, ShipDataType.SONAR, i);
+    }
+    final Thread streamer = new Thread(new Runnable() {
+      public void run() {
+        try {
+          while (FleetBenchmark.this.isStreaming) {
+            for (final SocketChannel ship : ships) {
+              frames.rewind();
+              while (frames.hasRemaining()) {
+                ship.write(frames);
+              }
+            }
+          }
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }, "FleetStreamer");
+    streamer.start();
+    return streamer;
+  }
+
+}
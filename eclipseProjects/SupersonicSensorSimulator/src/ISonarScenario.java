@@ -0,0 +1,32 @@
+import shipremote.communication.ShipDataType;
+
+/**
+ * Interface for the sonar values the simulator sends to one client. Every
+ * client gets a scenario instance of its own.
+ */
+public interface ISonarScenario {
+
+  /**
+   * Gets the next sonar value. Called once per sonar frame.
+   * 
+   * @return The range in cm, 0 to 255.
+   */
+  public int nextRange();
+
+  /**
+   * Called for every command the client sends, PING and VERSION excluded.
+   * 
+   * @param dataType
+   *          The type of the command.
+   * @param value
+   *          The value of the command.
+   */
+  public void commandReceived(ShipDataType dataType, int value);
+
+  /**
+   * Gets a summary of the run, logged when the client disconnects.
+   * 
+   * @return The summary, null if the scenario has nothing to report.
+   */
+  public String getSummary();
+}
@@ -0,0 +1,69 @@
+import java.io.File;
+
+import shipremote.communication.FrameJournal;
+import shipremote.communication.FrameJournalReader;
+import shipremote.communication.IFrameTap;
+import shipremote.communication.ShipDataType;
+
+/**
+ * Measures the write and read throughput of the FrameJournal. Records are
+ * appended into small segments so the rollover is part of the measurement,
+ * then the whole journal is read back with a FrameJournalReader.
+ */
+public class JournalBenchmark {
+
+  private static final int RECORDS = 10000000;
+  private static final int WARMUP_RECORDS = 1000000;
+  private static final int SEGMENT_SIZE = 1024 * 1024;
+
+  /**
+   * @param args
+   *          Optional journal directory, default is a temporary directory.
+   */
+  public static void main(String[] args) throws Exception {
+    final File directory = args.length > 0 ? new File(args[0]) : new File(
+        System.getProperty("java.io.tmpdir"), "journal-benchmark");
+    deleteSegments(directory);
+
+    final FrameJournal journal = new FrameJournal(directory, SEGMENT_SIZE);
+    write(journal, WARMUP_RECORDS);
+    long start = System.nanoTime();
+    write(journal, RECORDS);
+    long elapsed = System.nanoTime() - start;
+    journal.close();
+    System.out.println("write: " + (RECORDS * 1000000000L / elapsed)
+        + " records/s, " + journal.getSegmentCount() + " segments");
+
+    final FrameJournalReader reader = new FrameJournalReader(directory);
+    long records = 0;
+    long checksum = 0;
+    start = System.nanoTime();
+    while (reader.next()) {
+      records++;
+      checksum += reader.getDataValue();
+    }
+    elapsed = System.nanoTime() - start;
+    System.out.println("read: " + (records * 1000000000L / elapsed)
+        + " records/s, " + records + " records, checksum " + checksum);
+    deleteSegments(directory);
+  }
+
+  private static void write(FrameJournal journal, int records) {
+    for (int i = 0; i < records; i++) {
+      journal.append(i, (i & 1) == 0 ? IFrameTap.DIRECTION_IN
+          : IFrameTap.DIRECTION_OUT, ShipDataType.SONAR, i & 0xFF);
+    }
+  }
+
+  private static void deleteSegments(File directory) {
+    final File[] files = directory.listFiles();
+    if (files != null) {
+      for (final File file : files) {
+        if (file.getName().startsWith("journal-")) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+import shipremote.communication.ShipDataType;
+
+/**
+ * Cycles through the four danger levels, one level per sonar frame. The
+ * original behaviour of the simulator.
+ */
+public class LevelScenario implements ISonarScenario {
+
+  private static final int LEVELVALUE_ONE = 230;
+  private static final int LEVELVALUE_TWO = 175;
+  private static final int LEVELVALUE_THREE = 125;
+  private static final int LEVELVALUE_FOUR = 80;
+  private int dangerLevel = 1;
+
+  public int nextRange() {
+    final int range = this.getSonarRange();
+    this.nextDangerLevel();
+    return range;
+  }
+
+  public void commandReceived(ShipDataType dataType, int value) {
+    // the levels do not depend on the ship
+  }
+
+  public String getSummary() {
+    return null;
+  }
+
+  private void nextDangerLevel() {
+    if (this.dangerLevel == 4) {
+      this.dangerLevel = 1;
+    } else {
+      this.dangerLevel++;
+    }
+  }
+
+  private int getSonarRange() {
+    switch (this.dangerLevel) {
+      case 4:
+        return LEVELVALUE_FOUR;
+      case 3:
+        return LEVELVALUE_THREE;
+      case 2:
+        return LEVELVALUE_TWO;
+      case 1:
+        return LEVELVALUE_ONE;
+      default:
+        return LEVELVALUE_ONE;
+    }
+  }
+}
@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import shipremote.communication.IClock;
+import shipremote.communication.IDataReceiverListener;
+import shipremote.communication.RealTimeClock;
+import shipremote.communication.RingConsumer;
+import shipremote.communication.ShipCommandFactory;
+import shipremote.communication.ShipData;
+import shipremote.communication.TCPClient;
+import shipremote.communication.VirtualClock;
+
+/**
+ * Stress-tests the receiving side of the remote. An in-process server pushes
+ * SONAR frames over many connections into TCPClients, one pacer per
+ * connection, and counts what the FrameDecoder and the listener chain of the
+ * clients actually deliver. Sweeping the rate shows where TCPClient
+ * saturates.
+ * 
+ * <pre>
+ * LoadGenerator [-connections 1,16] [-rates 1,100,1000,10000,0]
+ *     [-pattern steady|burst|fragmented] [-seconds 3] [-virtual stepMicros]
+ * </pre>
+ * 
+ * A rate of 0 is line rate. steady writes every frame on its own, burst
+ * writes BURST_SIZE frames at once, fragmented splits the frames over writes
+ * of FRAGMENT_SIZE bytes. -virtual paces on a VirtualClock that moves by a
+ * fixed step per generator pass, so the offered schedule does not depend on
+ * the machine.
+ */
+public class LoadGenerator {
+
+  private static final int BURST_SIZE = 32;
+  private static final int FRAGMENT_SIZE = 3;
+  private static final int BLOCK_FRAMES = 256;
+  private static final int DRAIN_TIME = 500;
+  private static final double SATURATION = 0.99;
+
+  private final AtomicLong deliveredCount = new AtomicLong();
+  private final String pattern;
+  private final long virtualStep;
+  private final ByteBuffer frameBlock;
+
+  /**
+   * A server side connection with its pacer and the frames not written yet.
+   */
+  private static class Connection {
+    final SocketChannel channel;
+    final LoadPacer pacer;
+    final ByteBuffer pending;
+    long sentCount = 0;
+
+    Connection(SocketChannel channel, LoadPacer pacer, ByteBuffer block) {
+      this.channel = channel;
+      this.pacer = pacer;
+      this.pending = block.duplicate();
+      this.pending.limit(0);
+    }
+  }
+
+  /**
+   * @param args
+   *          See the class comment.
+   */
+  public static void main(String[] args) throws Exception {
+    int[] connections = { 1, 16 };
+    double[] rates = { 1, 100, 1000, 10000, LoadPacer.LINE_RATE };
+    String pattern = "steady";
+    int seconds = 3;
+    long virtualStep = 0;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-connections")) {
+        String[] values = args[i + 1].split(",");
+        connections = new int[values.length];
+        for (int j = 0; j < values.length; j++) {
+          connections[j] = Integer.parseInt(values[j]);
+        }
+      } else if (args[i].equals("-rates")) {
+        String[] values = args[i + 1].split(",");
+        rates = new double[values.length];
+        for (int j = 0; j < values.length; j++) {
+          rates[j] = Double.parseDouble(values[j]);
+        }
+      } else if (args[i].equals("-pattern")) {
+        pattern = args[i + 1];
+      } else if (args[i].equals("-seconds")) {
+        seconds = Integer.parseInt(args[i + 1]);
+      } else if (args[i].equals("-virtual")) {
+        virtualStep = Long.parseLong(args[i + 1]) * 1000;
+      }
+    }
+    if (!pattern.equals("steady") && !pattern.equals("burst")
+        && !pattern.equals("fragmented")) {
+      throw new IllegalArgumentException("Unknown pattern: " + pattern);
+    }
+    LoadGenerator generator = new LoadGenerator(pattern, virtualStep);
+    for (int connectionCount : connections) {
+      for (double rate : rates) {
+        generator.run(connectionCount, rate, seconds * 1000L);
+      }
+    }
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param pattern
+   *          steady, burst or fragmented.
+   * @param virtualStep
+   *          The step of the VirtualClock in nanoseconds per generator pass,
+   *          0 to pace on the real time.
+   */
+  public LoadGenerator(String pattern, long virtualStep) {
+    this.pattern = pattern;
+    this.virtualStep = virtualStep;
+    this.frameBlock = ByteBuffer.allocateDirect(BLOCK_FRAMES
+        * ShipCommandFactory.FRAME_LENGTH);
+    for (int i = 0; i < BLOCK_FRAMES; i++) {
+      this.frameBlock.put(ShipCommandFactory.getSonarFrame(i));
+    }
+    this.frameBlock.flip();
+  }
+
+  private void run(int connectionCount, double rate, long runtime)
+      throws Exception {
+    ServerSocketChannel server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+    int port = server.socket().getLocalPort();
+    IClock clock = this.virtualStep > 0 ? new VirtualClock()
+        : new RealTimeClock();
+    IDataReceiverListener listener = new IDataReceiverListener() {
+      public void dataReceived(ShipData shipData) {
+        LoadGenerator.this.deliveredCount.incrementAndGet();
+      }
+    };
+
+    List<TCPClient> clients = new ArrayList<TCPClient>();
+    List<Connection> connections = new ArrayList<Connection>();
+    for (int i = 0; i < connectionCount; i++) {
+      TCPClient client = new TCPClient();
+      client.addDataReceiverListener(listener);
+      client.connect("127.0.0.1", port);
+      client.listen();
+      clients.add(client);
+      SocketChannel channel = server.accept();
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      connections.add(new Connection(channel, new LoadPacer(clock, rate),
+          this.frameBlock));
+    }
+    this.deliveredCount.set(0);
+
+    long start = System.nanoTime();
+    long end = start + runtime * 1000000L;
+    for (Connection connection : connections) {
+      connection.pacer.start();
+    }
+    long offered = 0;
+    while (System.nanoTime() < end) {
+      if (clock instanceof VirtualClock) {
+        ((VirtualClock) clock).advance(this.virtualStep);
+      }
+      long idle = Long.MAX_VALUE;
+      for (Connection connection : connections) {
+        this.serve(connection);
+        idle = Math.min(idle, connection.pacer.getNanosUntilNext());
+      }
+      if (idle > 0 && clock.isRealTime()) {
+        LockSupport.parkNanos(Math.min(idle, 1000000L));
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    long sent = 0;
+    long backlog = 0;
+    for (Connection connection : connections) {
+      long unsent = connection.pending.remaining()
+          / ShipCommandFactory.FRAME_LENGTH;
+      sent += connection.sentCount - unsent;
+      backlog += connection.pacer.getBacklog() + unsent;
+      offered += connection.pacer.getReleasedCount()
+          + connection.pacer.getBacklog();
+    }
+    Thread.sleep(DRAIN_TIME);
+
+    long decoded = 0;
+    long lost = 0;
+    for (TCPClient client : clients) {
+      decoded += client.getFrameDecoder().getFrameCount();
+      for (RingConsumer consumer : client.getFrameRingBuffer().getConsumers()) {
+        lost += consumer.getLostCount();
+      }
+    }
+    long delivered = this.deliveredCount.get();
+    String rateText = rate == LoadPacer.LINE_RATE ? "line rate" : (long) rate
+        + " Hz";
+    System.out.println(connectionCount + " connections, " + rateText + ", "
+        + this.pattern + ": offered " + offered + ", sent " + sent
+        + ", decoded " + decoded + ", delivered " + delivered + " ("
+        + (delivered * 1000000000L / elapsed) + " frames/s), lost " + lost
+        + ", backlog " + backlog
+        + (delivered < SATURATION * offered ? " SATURATED" : ""));
+
+    for (TCPClient client : clients) {
+      client.stopListening();
+      client.disconnect();
+    }
+    for (Connection connection : connections) {
+      connection.channel.close();
+    }
+    server.close();
+  }
+
+  private void serve(Connection connection) throws IOException {
+    if (!connection.pending.hasRemaining()) {
+      int limit = this.pattern.equals("burst") ? BURST_SIZE : BLOCK_FRAMES;
+      if (this.pattern.equals("burst") && !connection.pacer.isLineRate()
+          && connection.pacer.getBacklog() < BURST_SIZE) {
+        // wait until a whole burst is due
+        return;
+      }
+      int offset = (int) (connection.sentCount % BLOCK_FRAMES);
+      int count = (int) connection.pacer.release(Math.min(this.pattern
+          .equals("steady") ? 1 : limit, BLOCK_FRAMES - offset));
+      if (count == 0) {
+        return;
+      }
+      connection.pending.limit((offset + count)
+          * ShipCommandFactory.FRAME_LENGTH);
+      connection.pending.position(offset * ShipCommandFactory.FRAME_LENGTH);
+      connection.sentCount += count;
+    }
+    if (this.pattern.equals("fragmented")) {
+      int limit = connection.pending.limit();
+      connection.pending.limit(Math.min(limit, connection.pending.position()
+          + FRAGMENT_SIZE));
+      connection.channel.write(connection.pending);
+      connection.pending.limit(limit);
+    } else {
+      connection.channel.write(connection.pending);
+    }
+  }
+
+}
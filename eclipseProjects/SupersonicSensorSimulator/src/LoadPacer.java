@@ -0,0 +1,91 @@
+import shipremote.communication.IClock;
+
+/**
+ * Releases frames at a fixed rate on the time of an IClock. The schedule is
+ * open-loop: frame n is due at start + n / rate, no matter how late the
+ * previous frames were sent, so a slow receiver shows up as backlog instead
+ * of silently lowering the offered load. With a VirtualClock the schedule is
+ * the same in every run.
+ */
+public class LoadPacer {
+
+  /**
+   * The rate for sending as fast as the connection accepts.
+   */
+  public static final double LINE_RATE = 0;
+  private static final double NANOS_PER_SECOND = 1000000000.0;
+  private final IClock clock;
+  private final double rate;
+  private long startTime = 0;
+  private long releasedCount = 0;
+
+  /**
+   * Constructor.
+   * 
+   * @param clock
+   *          The IClock of the schedule.
+   * @param rate
+   *          The frames per second, LINE_RATE for no limit.
+   */
+  public LoadPacer(IClock clock, double rate) {
+    this.clock = clock;
+    this.rate = rate;
+  }
+
+  /**
+   * Starts the schedule at the current time of the clock.
+   */
+  public void start() {
+    this.startTime = this.clock.nanoTime();
+    this.releasedCount = 0;
+  }
+
+  public boolean isLineRate() {
+    return this.rate == LINE_RATE;
+  }
+
+  /**
+   * Gets the number of frames that are due but not released yet.
+   * 
+   * @return The backlog, 0 at line rate.
+   */
+  public long getBacklog() {
+    if (this.isLineRate()) {
+      return 0;
+    }
+    long due = (long) ((this.clock.nanoTime() - this.startTime) * this.rate
+        / NANOS_PER_SECOND);
+    return Math.max(0, due - this.releasedCount);
+  }
+
+  /**
+   * Releases the due frames.
+   * 
+   * @param max
+   *          The maximum number of frames to release.
+   * @return The number of frames to send now.
+   */
+  public long release(long max) {
+    long count = this.isLineRate() ? max : Math.min(max, this.getBacklog());
+    this.releasedCount += count;
+    return count;
+  }
+
+  /**
+   * Gets the time until the next frame is due.
+   * 
+   * @return The time in nanoseconds, 0 if a frame is due or at line rate.
+   */
+  public long getNanosUntilNext() {
+    if (this.isLineRate()) {
+      return 0;
+    }
+    long next = this.startTime
+        + (long) ((this.releasedCount + 1) * NANOS_PER_SECOND / this.rate);
+    return Math.max(0, next - this.clock.nanoTime());
+  }
+
+  public long getReleasedCount() {
+    return this.releasedCount;
+  }
+}
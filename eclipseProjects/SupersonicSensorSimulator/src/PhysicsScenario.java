@@ -0,0 +1,79 @@
+import java.util.Random;
+
+import shipremote.communication.ShipDataType;
+
+/**
+ * Closes the loop between the remote and the ship: the speed and direction
+ * commands of the client move the hull through a ShipWorld, the sonar values
+ * are ray cast against its walls. The world is stepped on a fixed tick, one
+ * sonar interval of simulated time per sonar frame, so a run does not depend
+ * on the load of the simulator.
+ */
+public class PhysicsScenario implements ISonarScenario {
+
+  private static final double TICK = 0.01;
+  private final ShipWorld world;
+  private final Random random;
+  private final double noise;
+  private final int ticksPerFrame;
+
+  /**
+   * Constructor.
+   * 
+   * @param world
+   *          The ShipWorld to drive.
+   * @param sonarInterval
+   *          The time between two sonar frames in milliseconds.
+   * @param noise
+   *          The standard deviation of the sonar noise in cm, 0 for none.
+   * @param seed
+   *          The seed of the noise.
+   */
+  public PhysicsScenario(ShipWorld world, long sonarInterval, double noise,
+      long seed) {
+    this.world = world;
+    this.noise = noise;
+    this.random = new Random(seed);
+    this.ticksPerFrame = Math.max(1, (int) Math.round(sonarInterval / 1000.0
+        / TICK));
+  }
+
+  public ShipWorld getWorld() {
+    return this.world;
+  }
+
+  public int nextRange() {
+    for (int i = 0; i < this.ticksPerFrame; i++) {
+      this.world.step(TICK);
+    }
+    double range = this.world.castSonar();
+    if (this.noise > 0) {
+      range += this.random.nextGaussian() * this.noise;
+    }
+    return (int) Math.max(0, Math.min(ShipWorld.MAX_RANGE, Math.round(range)));
+  }
+
+  public void commandReceived(ShipDataType dataType, int value) {
+    switch (dataType) {
+      case SPEED_FORWARD:
+        this.world.setSpeed(value, false);
+        break;
+      case SPEED_BACKWARD:
+        this.world.setSpeed(value, true);
+        break;
+      case DIRECTION:
+        this.world.setDirection(value);
+        break;
+      default:
+        break;
+    }
+  }
+
+  public String getSummary() {
+    double clearance = this.world.getMinClearance();
+    return String.format("%.1f s, %d collisions, min clearance %s",
+        this.world.getTime(), this.world.getCollisionCount(),
+        clearance == Double.MAX_VALUE ? "n/a" : String.format("%.1f cm",
+            clearance));
+  }
+}
@@ -0,0 +1,92 @@
+import java.nio.ByteBuffer;
+
+import shipremote.communication.FrameDecoder;
+import shipremote.communication.ShipCommandFactory;
+import shipremote.communication.ShipDataType;
+import shipremote.communication.ShipFrameV2;
+
+/**
+ * Compares the encode and decode throughput of protocol version 1 and 2. A
+ * block of frames is encoded into a ByteBuffer and fed through a FrameDecoder
+ * again and again.
+ */
+public class ProtocolBenchmark {
+
+  private static final int FRAMES_PER_BLOCK = 1024;
+  private static final int WARMUP_ROUNDS = 2000;
+  private static final int ROUNDS = 10000;
+  private static final int FORMAT_V1 = 1;
+  private static final int FORMAT_V2 = 2;
+  private static final int FORMAT_V2_TIMESTAMP = 3;
+
+  private final ByteBuffer block = ByteBuffer.allocate(FRAMES_PER_BLOCK
+      * ShipFrameV2.LENGTH_WITH_TIMESTAMP);
+  private final FrameDecoder decoder = new FrameDecoder(4096);
+  private long checksum = 0;
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) {
+    ProtocolBenchmark benchmark = new ProtocolBenchmark();
+    for (int format = FORMAT_V1; format <= FORMAT_V2_TIMESTAMP; format++) {
+      benchmark.run(format, WARMUP_ROUNDS);
+    }
+    for (int format = FORMAT_V1; format <= FORMAT_V2_TIMESTAMP; format++) {
+      long start = System.nanoTime();
+      long bytes = benchmark.run(format, ROUNDS);
+      long elapsed = System.nanoTime() - start;
+      long frames = (long) ROUNDS * FRAMES_PER_BLOCK;
+      System.out.println(getName(format) + ": "
+          + (frames * 1000000000L / elapsed) + " frames/s, "
+          + (bytes * 1000L / elapsed) + " MB/s");
+    }
+    System.out.println("checksum " + benchmark.checksum);
+  }
+
+  private long run(int format, int rounds) {
+    long bytes = 0;
+    for (int round = 0; round < rounds; round++) {
+      this.encode(format, round);
+      this.block.flip();
+      bytes += this.block.remaining();
+      while (this.block.hasRemaining()) {
+        this.decoder.put(this.block);
+        while (this.decoder.nextFrame()) {
+          this.checksum += this.decoder.getFrameValue();
+        }
+      }
+    }
+    return bytes;
+  }
+
+  private void encode(int format, int round) {
+    this.block.clear();
+    for (int i = 0; i < FRAMES_PER_BLOCK; i++) {
+      int value = (round + i) & 0xFF;
+      switch (format) {
+        case FORMAT_V1:
+          ShipCommandFactory.putFrame(this.block, ShipDataType.SONAR, value);
+          break;
+        case FORMAT_V2:
+          ShipFrameV2.put(this.block, ShipDataType.SONAR, value);
+          break;
+        default:
+          ShipFrameV2.put(this.block, ShipDataType.SONAR, value, i);
+          break;
+      }
+    }
+  }
+
+  private static String getName(int format) {
+    switch (format) {
+      case FORMAT_V1:
+        return "v1";
+      case FORMAT_V2:
+        return "v2";
+      default:
+        return "v2 + timestamp";
+    }
+  }
+
+}
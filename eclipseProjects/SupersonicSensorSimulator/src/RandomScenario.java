@@ -0,0 +1,40 @@
+import java.util.Random;
+
+import shipremote.communication.ShipDataType;
+
+/**
+ * A random walk of the range. Seeded per client, so a client sees the same
+ * values in every run.
+ */
+public class RandomScenario implements ISonarScenario {
+
+  private static final int MAX_RANGE = 255;
+  private static final int MIN_RANGE = 10;
+  private static final int MAX_STEP = 20;
+  private final Random random;
+  private int range = MAX_RANGE / 2;
+
+  /**
+   * Constructor.
+   * 
+   * @param seed
+   *          The seed of the random walk.
+   */
+  public RandomScenario(long seed) {
+    this.random = new Random(seed);
+  }
+
+  public int nextRange() {
+    final int step = this.random.nextInt(2 * MAX_STEP + 1) - MAX_STEP;
+    this.range = Math.max(MIN_RANGE, Math.min(MAX_RANGE, this.range + step));
+    return this.range;
+  }
+
+  public void commandReceived(ShipDataType dataType, int value) {
+    // the walk does not depend on the ship
+  }
+
+  public String getSummary() {
+    return null;
+  }
+}
@@ -0,0 +1,104 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import shipremote.ai.DangerLevelAI;
+import shipremote.ai.base.IShipAI;
+import shipremote.ai.base.IShipAIDecision;
+import shipremote.ai.base.ShipState;
+import shipremote.ai.filter.ISonarFilter;
+import shipremote.communication.ExecutionMode;
+import shipremote.communication.FrameJournalReader;
+import shipremote.communication.ReplayClient;
+import shipremote.communication.ReplayCommand;
+import shipremote.communication.ShipDataType;
+import shipremote.communication.VirtualClock;
+import shipremote.control.ConsoleControllerUI;
+import shipremote.control.ControllerCore;
+import shipremote.control.QueueEventLoop;
+
+/**
+ * Replays sonar sessions through a headless ControllerCore with the AI
+ * enabled, for the benchmarks that count the commands an ai sends. A session
+ * is a list of { time in nanoseconds, distance } samples.
+ */
+public class SessionReplay {
+
+  /**
+   * Loads the received sonar frames of a FrameJournal.
+   * 
+   * @param journal
+   *          The directory of the journal.
+   * @return The samples.
+   */
+  public static List<long[]> loadSonarSamples(File journal)
+      throws IOException {
+    List<long[]> samples = new ArrayList<long[]>();
+    FrameJournalReader reader = new FrameJournalReader(journal);
+    while (reader.next()) {
+      if (reader.getDataType() == ShipDataType.SONAR) {
+        samples.add(new long[] { reader.getTimestamp(),
+            reader.getDataValue() });
+      }
+    }
+    return samples;
+  }
+
+  /**
+   * Creates an ai that decides by the DangerLevels of the distance alone,
+   * without the hysteresis and dwell time of the DangerLevelAI.
+   * 
+   * @return The IShipAI.
+   */
+  public static IShipAI createStatelessAI() {
+    final DangerLevelAI reference = new DangerLevelAI();
+    return new IShipAI() {
+      public IShipAIDecision getDecision(ShipState data) {
+        return reference.getDecisionByScan(data);
+      }
+    };
+  }
+
+  /**
+   * Replays a session as fast as possible and counts the SPEED and DIRECTION
+   * commands sent.
+   * 
+   * @param samples
+   *          The session.
+   * @param ai
+   *          The IShipAI of the controller.
+   * @param filter
+   *          The sonar filter of the controller, null for none.
+   * @return The number of commands.
+   */
+  public static long countCommands(List<long[]> samples, IShipAI ai,
+      ISonarFilter filter) throws Exception {
+    VirtualClock clock = new VirtualClock();
+    ReplayClient client = new ReplayClient(clock);
+    for (long[] sample : samples) {
+      client.addFrame(sample[0], ShipDataType.SONAR, (int) sample[1]);
+    }
+    ControllerCore core = new ControllerCore(new QueueEventLoop(),
+        new ConsoleControllerUI(false), client, ai, clock,
+        ExecutionMode.PLATFORM);
+    core.setSonarFilter(filter);
+    client.connect("replay", 0);
+    core.start();
+    // enable the AI
+    core.onLongPress();
+    client.replay(ReplayClient.AS_FAST_AS_POSSIBLE);
+    core.stop();
+    long commands = 0;
+    for (ReplayCommand command : client.getCapturedCommands()) {
+      ShipDataType type = command.getDataType();
+      if (type == ShipDataType.SPEED_FORWARD
+          || type == ShipDataType.SPEED_BACKWARD
+          || type == ShipDataType.DIRECTION) {
+        commands++;
+      }
+    }
+    return commands;
+  }
+
+}
@@ -0,0 +1,104 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import shipremote.communication.ShipCommandFactory;
+import shipremote.communication.ShipData;
+import shipremote.communication.ShipDataType;
+
+/**
+ * Compares a ShipData per frame with the shared ShipData instances. Every
+ * round decodes a block of sonar frames into ShipData and encodes a command
+ * frame for each of them. The allocated bytes are read from the
+ * com.sun.management.ThreadMXBean of the JVM, if it is available.
+ */
+public class ShipDataBenchmark {
+
+  private static final int FRAMES_PER_BLOCK = 1024;
+  private static final int WARMUP_ROUNDS = 5000;
+  private static final int ROUNDS = 20000;
+
+  private final ByteBuffer received = ByteBuffer.allocate(FRAMES_PER_BLOCK
+      * ShipCommandFactory.FRAME_LENGTH);
+  private final ByteBuffer sendBuffer = ByteBuffer
+      .allocate(ShipCommandFactory.FRAME_LENGTH);
+  private long checksum = 0;
+  // keep the last frame reachable, so the allocation is not optimized away
+  private ShipData lastShared = null;
+  private MutableShipData lastMutable = null;
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) throws Exception {
+    ShipDataBenchmark benchmark = new ShipDataBenchmark();
+    for (int i = 0; i < FRAMES_PER_BLOCK; i++) {
+      ShipCommandFactory.putFrame(benchmark.received, ShipDataType.SONAR, i);
+    }
+    benchmark.run(false, WARMUP_ROUNDS);
+    benchmark.run(true, WARMUP_ROUNDS);
+    for (int shared = 0; shared < 2; shared++) {
+      final long bytesBefore = getAllocatedBytes();
+      final long start = System.nanoTime();
+      benchmark.run(shared == 1, ROUNDS);
+      final long elapsed = System.nanoTime() - start;
+      final long allocated = getAllocatedBytes() - bytesBefore;
+      final long frames = (long) ROUNDS * FRAMES_PER_BLOCK;
+      System.out.println((shared == 1 ? "shared ShipData: " : "new ShipData:    ")
+          + (frames * 1000000000L / elapsed) + " frames/s, "
+          + (bytesBefore < 0 ? "n/a" : String.valueOf(Math.round(allocated
+              * 10.0 / frames) / 10.0)) + " bytes/frame");
+    }
+    System.out.println("checksum " + benchmark.checksum);
+  }
+
+  private void run(boolean shared, int rounds) {
+    for (int round = 0; round < rounds; round++) {
+      for (int i = 0; i < FRAMES_PER_BLOCK; i++) {
+        final int index = i * ShipCommandFactory.FRAME_LENGTH;
+        final ShipDataType type = ShipCommandFactory.getFrameType(
+            this.received, index);
+        final int value = ShipCommandFactory.getFrameValue(this.received,
+            index);
+        this.sendBuffer.clear();
+        if (shared) {
+          final ShipData data = ShipData.valueOf(type, value);
+          ShipCommandFactory.getCommand(ShipDataType.DIRECTION,
+              data.getDataValue()).putFrame(this.sendBuffer);
+          this.lastShared = data;
+        } else {
+          // what the clients did before: a ShipData and a frame per command
+          final MutableShipData data = new MutableShipData(type, value);
+          this.sendBuffer.put(ShipCommandFactory.getDirectionFrame(data.value));
+          this.lastMutable = data;
+        }
+        this.checksum += this.sendBuffer.get(2);
+      }
+    }
+  }
+
+  private static final class MutableShipData {
+
+    private ShipDataType type;
+    private int value;
+
+    private MutableShipData(ShipDataType type, int value) {
+      this.type = type;
+      this.value = value;
+    }
+  }
+
+  private static long getAllocatedBytes() {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    try {
+      final Method method = Class.forName("com.sun.management.ThreadMXBean")
+          .getMethod("getThreadAllocatedBytes", long.class);
+      return ((Long) method.invoke(bean, Thread.currentThread().getId()))
+          .longValue();
+    } catch (final Exception e) {
+      return -1;
+    }
+  }
+
+}
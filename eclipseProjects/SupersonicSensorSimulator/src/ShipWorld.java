@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A 2D kinematic model of the ship in a map of wall segments. All lengths are
+ * in cm, the time in seconds. The hull is a circle around its centre, the
+ * sonar looks ahead from the bow. The commanded speed and rudder angle move
+ * the hull on every step(), a hull touching a wall stops and counts a
+ * collision.
+ */
+public class ShipWorld {
+
+  /**
+   * The maximum range of the sonar.
+   */
+  public static final double MAX_RANGE = 255;
+  // a speed command of 100 percent
+  private static final double MAX_SPEED = 100;
+  private static final double MAX_RUDDER = Math.toRadians(35);
+  // time constant of the speed, the hull does not stop at once
+  private static final double SPEED_LAG = 0.5;
+  private static final double HULL_LENGTH = 40;
+  // the bow is on the hull circle
+  private static final double HULL_RADIUS = HULL_LENGTH / 2;
+  // a hull pushing against a wall counts as one collision
+  private static final double CONTACT_RELEASE = 1;
+  private final List<double[]> walls = new ArrayList<double[]>();
+  private final double startX;
+  private final double startY;
+  private final double startHeading;
+  private double x;
+  private double y;
+  private double heading;
+  private double speed = 0;
+  private double commandedSpeed = 0;
+  private double rudder = 0;
+  private double time = 0;
+  private boolean isInContact = false;
+  private int collisionCount = 0;
+  private double minClearance = Double.MAX_VALUE;
+
+  /**
+   * Constructor. The map is empty.
+   * 
+   * @param x
+   *          The start position of the hull.
+   * @param y
+   *          The start position of the hull.
+   * @param heading
+   *          The start heading in degrees, 0 along the x axis, counter
+   *          clockwise.
+   */
+  public ShipWorld(double x, double y, double heading) {
+    this.startX = x;
+    this.startY = y;
+    this.startHeading = Math.toRadians(heading);
+    this.reset();
+  }
+
+  /**
+   * Creates the default map: a 600 x 400 cm pool with a pillar and a pier.
+   * 
+   * @return The ShipWorld with the hull in the lower left corner, heading
+   *         along the x axis.
+   */
+  public static ShipWorld createPool() {
+    return createPool(60, 80, 0);
+  }
+
+  /**
+   * Creates the default map with the hull at another start.
+   * 
+   * @param x
+   *          The start position of the hull.
+   * @param y
+   *          The start position of the hull.
+   * @param heading
+   *          The start heading in degrees.
+   * @return The ShipWorld.
+   */
+  public static ShipWorld createPool(double x, double y, double heading) {
+    ShipWorld world = new ShipWorld(x, y, heading);
+    world.addBox(0, 0, 600, 400);
+    world.addBox(280, 40, 320, 120);
+    world.addWall(450, 400, 450, 220);
+    return world;
+  }
+
+  /**
+   * Adds a wall.
+   */
+  public void addWall(double x1, double y1, double x2, double y2) {
+    this.walls.add(new double[] { x1, y1, x2, y2 });
+  }
+
+  /**
+   * Adds the four walls of an axis parallel rectangle.
+   */
+  public void addBox(double x1, double y1, double x2, double y2) {
+    this.addWall(x1, y1, x2, y1);
+    this.addWall(x2, y1, x2, y2);
+    this.addWall(x2, y2, x1, y2);
+    this.addWall(x1, y2, x1, y1);
+  }
+
+  /**
+   * Puts the hull back to its start and clears the run statistics. The walls
+   * are kept.
+   */
+  public void reset() {
+    this.x = this.startX;
+    this.y = this.startY;
+    this.heading = this.startHeading;
+    this.speed = 0;
+    this.commandedSpeed = 0;
+    this.rudder = 0;
+    this.time = 0;
+    this.isInContact = false;
+    this.collisionCount = 0;
+    this.minClearance = Double.MAX_VALUE;
+  }
+
+  /**
+   * Sets the commanded speed.
+   * 
+   * @param percent
+   *          The speed command, 0 to 100.
+   * @param isBackward
+   *          True for backward.
+   */
+  public void setSpeed(int percent, boolean isBackward) {
+    double speed = Math.max(0, Math.min(100, percent)) * MAX_SPEED / 100;
+    this.commandedSpeed = isBackward ? -speed : speed;
+  }
+
+  /**
+   * Sets the rudder.
+   * 
+   * @param direction
+   *          The direction command, 0 full left, 90 straight, 180 full right.
+   */
+  public void setDirection(int direction) {
+    int clamped = Math.max(0, Math.min(180, direction));
+    this.rudder = (clamped - 90) / 90.0 * MAX_RUDDER;
+  }
+
+  /**
+   * Moves the hull by one tick.
+   * 
+   * @param dt
+   *          The length of the tick in seconds.
+   */
+  public void step(double dt) {
+    this.speed += (this.commandedSpeed - this.speed)
+        * Math.min(1, dt / SPEED_LAG);
+    // bicycle model, a positive rudder turns right
+    double turn = this.speed * Math.tan(this.rudder) / HULL_LENGTH * dt;
+    double newHeading = this.heading - turn;
+    double newX = this.x + this.speed * Math.cos(newHeading) * dt;
+    double newY = this.y + this.speed * Math.sin(newHeading) * dt;
+    this.time += dt;
+    this.heading = newHeading;
+    double clearance = this.getClearance(newX, newY);
+    if (clearance < 0) {
+      // the hull stops at the wall instead of passing through
+      this.speed = 0;
+      if (!this.isInContact) {
+        this.collisionCount++;
+        this.isInContact = true;
+      }
+      this.minClearance = Math.min(this.minClearance, clearance);
+      return;
+    }
+    this.x = newX;
+    this.y = newY;
+    if (clearance > CONTACT_RELEASE) {
+      this.isInContact = false;
+    }
+    this.minClearance = Math.min(this.minClearance, clearance);
+  }
+
+  /**
+   * Casts the sonar ray from the bow along the heading.
+   * 
+   * @return The distance to the nearest wall, MAX_RANGE if none is in range.
+   */
+  public double castSonar() {
+    double dx = Math.cos(this.heading);
+    double dy = Math.sin(this.heading);
+    double bowX = this.x + dx * HULL_LENGTH / 2;
+    double bowY = this.y + dy * HULL_LENGTH / 2;
+    double nearest = MAX_RANGE;
+    for (double[] wall : this.walls) {
+      double ex = wall[2] - wall[0];
+      double ey = wall[3] - wall[1];
+      double denominator = dx * ey - dy * ex;
+      if (denominator == 0) {
+        // parallel to the wall
+        continue;
+      }
+      double wx = wall[0] - bowX;
+      double wy = wall[1] - bowY;
+      double t = (wx * ey - wy * ex) / denominator;
+      double u = (wx * dy - wy * dx) / denominator;
+      if (t >= 0 && u >= 0 && u <= 1 && t < nearest) {
+        nearest = t;
+      }
+    }
+    return nearest;
+  }
+
+  /**
+   * Gets the distance between the hull and the nearest wall.
+   * 
+   * @return The clearance, negative if the hull touches a wall.
+   */
+  public double getClearance() {
+    return this.getClearance(this.x, this.y);
+  }
+
+  public double getX() {
+    return this.x;
+  }
+
+  public double getY() {
+    return this.y;
+  }
+
+  /**
+   * @return The heading in degrees, 0 along the x axis, counter clockwise.
+   */
+  public double getHeading() {
+    return Math.toDegrees(this.heading);
+  }
+
+  public double getSpeed() {
+    return this.speed;
+  }
+
+  public double getTime() {
+    return this.time;
+  }
+
+  /**
+   * @return The number of times the hull hit a wall since the last reset.
+   */
+  public int getCollisionCount() {
+    return this.collisionCount;
+  }
+
+  /**
+   * @return The smallest clearance since the last reset, Double.MAX_VALUE
+   *         before the first step.
+   */
+  public double getMinClearance() {
+    return this.minClearance;
+  }
+
+  private double getClearance(double px, double py) {
+    double nearest = Double.MAX_VALUE;
+    for (double[] wall : this.walls) {
+      double ex = wall[2] - wall[0];
+      double ey = wall[3] - wall[1];
+      double lengthSquared = ex * ex + ey * ey;
+      double u = lengthSquared == 0 ? 0 : ((px - wall[0]) * ex + (py - wall[1])
+          * ey)
+          / lengthSquared;
+      u = Math.max(0, Math.min(1, u));
+      double distX = px - (wall[0] + u * ex);
+      double distY = py - (wall[1] + u * ey);
+      nearest = Math.min(nearest, Math.sqrt(distX * distX + distY * distY));
+    }
+    return nearest - HULL_RADIUS;
+  }
+
+}
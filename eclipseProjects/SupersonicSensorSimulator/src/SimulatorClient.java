@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import shipremote.communication.FrameDecoder;
+import shipremote.communication.ShipCommandFactory;
+import shipremote.communication.ShipDataType;
+import shipremote.communication.ShipFrameV2;
+
+/**
+ * One client of the SimulatorServer. Sends the sonar values of its scenario
+ * at its own rate, echoes every received frame like the ship does and logs
+ * the received commands.
+ */
+public class SimulatorClient {
+
+  private static final int READ_BUFFER_SIZE = 512;
+  private static final int WRITE_BUFFER_SIZE = 4096;
+  private final int id;
+  private final SocketChannel channel;
+  private final SelectionKey key;
+  private final ISonarScenario scenario;
+  private final long sonarInterval;
+  private final boolean isV2Supported;
+  private final FrameDecoder frameDecoder = new FrameDecoder();
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+  // kept in fill mode between the writes
+  private final ByteBuffer writeBuffer = ByteBuffer
+      .allocate(WRITE_BUFFER_SIZE);
+  private int protocolVersion = 1;
+  private long nextSonarTime;
+  private long sonarCount = 0;
+  private long commandCount = 0;
+  private long pingCount = 0;
+  private long droppedCount = 0;
+
+  /**
+   * Constructor.
+   * 
+   * @param id
+   *          The number of the client, used in the log.
+   * @param channel
+   *          The non-blocking SocketChannel of the client.
+   * @param key
+   *          The SelectionKey of the channel.
+   * @param scenario
+   *          The ISonarScenario of the client.
+   * @param sonarInterval
+   *          The time between two sonar frames in milliseconds.
+   * @param isV2Supported
+   *          False to simulate an old firmware that only speaks version 1.
+   * @param now
+   *          The current time in milliseconds.
+   */
+  public SimulatorClient(int id, SocketChannel channel, SelectionKey key,
+      ISonarScenario scenario, long sonarInterval, boolean isV2Supported,
+      long now) {
+    this.id = id;
+    this.channel = channel;
+    this.key = key;
+    this.scenario = scenario;
+    this.sonarInterval = sonarInterval;
+    this.isV2Supported = isV2Supported;
+    this.nextSonarTime = now;
+  }
+
+  public ISonarScenario getScenario() {
+    return this.scenario;
+  }
+
+  public int getId() {
+    return this.id;
+  }
+
+  public long getNextSonarTime() {
+    return this.nextSonarTime;
+  }
+
+  public long getSonarCount() {
+    return this.sonarCount;
+  }
+
+  public long getCommandCount() {
+    return this.commandCount;
+  }
+
+  public long getPingCount() {
+    return this.pingCount;
+  }
+
+  /**
+   * Gets the number of frames dropped because the client did not read.
+   * 
+   * @return The dropped count.
+   */
+  public long getDroppedCount() {
+    return this.droppedCount;
+  }
+
+  /**
+   * Reads and handles the available frames.
+   * 
+   * @throws IOException
+   *           If reading failed or the client closed the connection.
+   */
+  public void read() throws IOException {
+    if (this.channel.read(this.readBuffer) < 0) {
+      throw new IOException("Connection closed by client.");
+    }
+    this.readBuffer.flip();
+    while (this.readBuffer.hasRemaining()) {
+      this.frameDecoder.put(this.readBuffer);
+      while (this.frameDecoder.nextFrame()) {
+        this.handleFrame(this.frameDecoder.getFrameType(), this.frameDecoder
+            .getFrameValue(), this.frameDecoder.getFrameVersion());
+      }
+    }
+    this.readBuffer.clear();
+    this.flush();
+  }
+
+  /**
+   * Sends the sonar frames that are due.
+   * 
+   * @param now
+   *          The current time in milliseconds.
+   * @throws IOException
+   */
+  public void sendDueSonar(long now) throws IOException {
+    if (now < this.nextSonarTime) {
+      return;
+    }
+    this.putFrame(ShipDataType.SONAR, this.scenario.nextRange(),
+        this.protocolVersion);
+    this.sonarCount++;
+    this.nextSonarTime += this.sonarInterval;
+    if (this.nextSonarTime < now) {
+      // fell behind, keep the rate instead of sending a burst
+      this.nextSonarTime = now + this.sonarInterval;
+    }
+    this.flush();
+  }
+
+  /**
+   * Writes as much of the pending bytes as the socket takes.
+   * 
+   * @throws IOException
+   */
+  public void flush() throws IOException {
+    this.writeBuffer.flip();
+    this.channel.write(this.writeBuffer);
+    this.writeBuffer.compact();
+    // wait for OP_WRITE only while bytes are left
+    this.key.interestOps(this.writeBuffer.position() > 0 ? SelectionKey.OP_READ
+        | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+  }
+
+  /**
+   * Closes the connection.
+   */
+  public void close() {
+    this.key.cancel();
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "client " + this.id;
+  }
+
+  private void handleFrame(ShipDataType type, int value, int version) {
+    if (type == ShipDataType.VERSION && this.isV2Supported
+        && value >= ShipFrameV2.VERSION) {
+      // answer the handshake in v2
+      this.protocolVersion = ShipFrameV2.VERSION;
+      this.putFrame(type, ShipFrameV2.VERSION, ShipFrameV2.VERSION);
+      System.out.println(this + ": protocol version " + this.protocolVersion);
+      return;
+    }
+    // the ship echoes every frame in the version it was received
+    this.putFrame(type, value, version);
+    if (type == ShipDataType.PING) {
+      this.pingCount++;
+    } else if (type != ShipDataType.VERSION) {
+      this.commandCount++;
+      this.scenario.commandReceived(type, value);
+      System.out.println(this + ": " + type + "(" + value + ")");
+    }
+  }
+
+  private void putFrame(ShipDataType type, int value, int version) {
+    if (this.writeBuffer.remaining() < ShipFrameV2.LENGTH_WITH_TIMESTAMP) {
+      // the client does not read, do not buffer without limit
+      this.droppedCount++;
+      return;
+    }
+    if (version >= ShipFrameV2.VERSION) {
+      ShipFrameV2.put(this.writeBuffer, type, value, ShipFrameV2
+          .currentTimestamp());
+    } else {
+      ShipCommandFactory.putFrame(this.writeBuffer, type, value);
+    }
+  }
+
+}
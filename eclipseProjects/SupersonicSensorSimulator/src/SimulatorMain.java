@@ -1,54 +1,85 @@
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
-import javax.net.ServerSocketFactory;
-
-import shipremote.communication.ShipCommandFactory;
+import shipremote.communication.DatagramFrame;
+import shipremote.communication.ShipDataType;
 
 public class SimulatorMain {
 
-  private static final int LEVELVALUE_ONE = 230;
-  private static final int LEVELVALUE_TWO = 175;
-  private static final int LEVELVALUE_THREE = 125;
-  private static final int LEVELVALUE_FOUR = 80;
   private static final int SLEEPTIME = 1000;
   private static final int PORT = 2000;
-  private int dangerLevel = 1;
-  //private InputStream inputStream = null;
-  private OutputStream outputStream = null;
+  private int udpSequence = 0;
+  private ISonarScenario udpScenario = new LevelScenario();
 
   /**
    * @param args
+   *          -udp to simulate via UDP, -v1 to simulate an old firmware that
+   *          only speaks protocol version 1, -scenarios followed by a comma
+   *          separated list of scenario specs "name:intervalMs" the TCP
+   *          clients get round-robin, e.g. levels:1000,approach:100,random:50
+   *          or physics:50:2 for the ship model with 2 cm sonar noise.
    */
   public static void main(String[] args) {
-    new SimulatorMain().start();
+    SimulatorMain simulator = new SimulatorMain();
+    boolean isUdp = false;
+    boolean isV2Supported = true;
+    String[] scenarios = new String[] { SimulatorServer.DEFAULT_SCENARIO };
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-udp")) {
+        isUdp = true;
+      } else if (args[i].equals("-v1")) {
+        isV2Supported = false;
+      } else if (args[i].equals("-scenarios") && i + 1 < args.length) {
+        scenarios = args[++i].split(",");
+      }
+    }
+    if (isUdp) {
+      simulator.startUdp();
+    } else {
+      try {
+        new SimulatorServer(PORT, scenarios, isV2Supported).run();
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
+    }
   }
 
-  private void start() {
+  private void startUdp() {
     try {
-      ServerSocketFactory serverSocketFactory = ServerSocketFactory
-          .getDefault();
-      ServerSocket serverSocket = serverSocketFactory.createServerSocket(PORT);
-
-      System.out.println("Waiting for client to connect...");
-      Socket clientSocket = serverSocket.accept();
-      System.out.println("Client to connected.");
-      
-      //this.inputStream = clientSocket.getInputStream();
-      this.outputStream = clientSocket.getOutputStream();
+      DatagramChannel channel = DatagramChannel.open();
+      channel.socket().bind(new InetSocketAddress(PORT));
+      channel.configureBlocking(false);
+      ByteBuffer buffer = ByteBuffer.allocate(DatagramFrame.LENGTH * 4);
+      SocketAddress client = null;
+      long nextSensorData = System.currentTimeMillis();
 
+      System.out.println("Waiting for UDP client on port " + PORT + "...");
       while (true) {
-
-        this.sendSensorData();
-
-        if (this.dangerLevel == 4) {
-          this.dangerLevel = 1;
-        } else {
-          this.dangerLevel++;
+        buffer.clear();
+        SocketAddress sender = channel.receive(buffer);
+        if (sender != null) {
+          if (client == null) {
+            System.out.println("Client connected: " + sender);
+          }
+          client = sender;
+          buffer.flip();
+          this.receiveDatagram(channel, buffer, client);
+          continue;
         }
-        Thread.sleep(SLEEPTIME);
+        if (client != null && System.currentTimeMillis() >= nextSensorData) {
+          buffer.clear();
+          int range = this.udpScenario.nextRange();
+          DatagramFrame.put(buffer, (byte) 0, this.udpSequence++,
+              ShipDataType.SONAR, range);
+          buffer.flip();
+          channel.send(buffer, client);
+          System.out.println(range & 0xFF);
+          nextSensorData += SLEEPTIME;
+        }
+        Thread.sleep(10);
       }
 
     } catch (IOException ex) {
@@ -56,33 +87,30 @@ public class SimulatorMain {
     } catch (InterruptedException interuptEx) {
       interuptEx.printStackTrace();
     }
-
   }
 
-  private void sendSensorData() throws IOException {
-    if (this.outputStream != null) {
-      byte[] command = this.getSonarCommand();
-      this.outputStream.write(command);
-      System.out.println((this.getSonarRange()) & 0xFF);
+  private void receiveDatagram(DatagramChannel channel, ByteBuffer datagram,
+      SocketAddress client) throws IOException {
+    if (!DatagramFrame.isDatagram(datagram)) {
+      return;
     }
-  }
-
-  private byte[] getSonarCommand() {
-    return ShipCommandFactory.getSonarFrame(this.getSonarRange());
-  }
-
-  private int getSonarRange() {
-    switch (this.dangerLevel) {
-      case 4:
-        return LEVELVALUE_FOUR;
-      case 3:
-        return LEVELVALUE_THREE;
-      case 2:
-        return LEVELVALUE_TWO;
-      case 1:
-        return LEVELVALUE_ONE;
-      default:
-        return LEVELVALUE_ONE;
+    int sequence = DatagramFrame.getSequence(datagram);
+    ShipDataType type = DatagramFrame.getDataType(datagram);
+    System.out.println("#" + sequence + " " + type + "("
+        + DatagramFrame.getDataValue(datagram) + ")");
+    if ((DatagramFrame.getFlags(datagram) & DatagramFrame.FLAG_RELIABLE) != 0) {
+      ByteBuffer ack = ByteBuffer.allocate(DatagramFrame.LENGTH);
+      DatagramFrame.put(ack, DatagramFrame.FLAG_ACK, sequence, type, 0);
+      ack.flip();
+      channel.send(ack, client);
+    }
+    if (type == ShipDataType.PING) {
+      // echo with our own sequence, like the ship echoes every frame
+      ByteBuffer echo = ByteBuffer.allocate(DatagramFrame.LENGTH);
+      DatagramFrame.put(echo, (byte) 0, this.udpSequence++, type,
+          DatagramFrame.getDataValue(datagram));
+      echo.flip();
+      channel.send(echo, client);
     }
   }
 }
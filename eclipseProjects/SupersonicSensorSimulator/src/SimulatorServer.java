@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A selector based simulator that serves any number of clients with one
+ * thread. Every client gets a scenario and a sonar rate of its own, taken
+ * round-robin from the scenario specs, e.g. "levels:1000" for the danger
+ * levels every 1000 ms or "physics:50:2" for the ShipWorld with 2 cm sonar
+ * noise every 50 ms.
+ */
+public class SimulatorServer {
+
+  /**
+   * The default scenario spec, the original behaviour of the simulator.
+   */
+  public static final String DEFAULT_SCENARIO = "levels:1000";
+  private static final long DEFAULT_INTERVAL = 1000;
+  private static final double DEFAULT_NOISE = 2;
+  private static final long STATS_INTERVAL = 10000;
+  private final int port;
+  private final String[] scenarioSpecs;
+  private final boolean isV2Supported;
+  private final List<SimulatorClient> clients = new ArrayList<SimulatorClient>();
+  private Selector selector = null;
+  private int acceptedCount = 0;
+
+  /**
+   * Constructor.
+   * 
+   * @param port
+   *          The TCP port to listen on.
+   * @param scenarioSpecs
+   *          The scenario specs "name:interval[:noise]", assigned
+   *          round-robin. Names are levels, approach, random and physics, the
+   *          noise in cm applies to physics only.
+   * @param isV2Supported
+   *          False to simulate an old firmware that only speaks version 1.
+   */
+  public SimulatorServer(int port, String[] scenarioSpecs,
+      boolean isV2Supported) {
+    this.port = port;
+    this.scenarioSpecs = scenarioSpecs.length == 0 ? new String[] { DEFAULT_SCENARIO }
+        : scenarioSpecs;
+    this.isV2Supported = isV2Supported;
+    for (String spec : this.scenarioSpecs) {
+      // fail before the first client connects
+      createScenario(spec, 0);
+      getInterval(spec);
+    }
+  }
+
+  /**
+   * Runs the server until the thread is interrupted.
+   * 
+   * @throws IOException
+   */
+  public void run() throws IOException {
+    this.selector = Selector.open();
+    ServerSocketChannel server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress(this.port));
+    server.configureBlocking(false);
+    server.register(this.selector, SelectionKey.OP_ACCEPT);
+    System.out.println("Waiting for clients on port " + this.port + "...");
+
+    long nextStats = System.currentTimeMillis() + STATS_INTERVAL;
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        this.selector.select(this.getSelectTimeout());
+        Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (key.isValid() && key.isAcceptable()) {
+            this.accept(server);
+          } else {
+            this.serve(key);
+          }
+        }
+        long now = System.currentTimeMillis();
+        for (SimulatorClient client : new ArrayList<SimulatorClient>(
+            this.clients)) {
+          try {
+            client.sendDueSonar(now);
+          } catch (IOException e) {
+            this.close(client, e);
+          }
+        }
+        if (now >= nextStats) {
+          this.printStats();
+          nextStats = now + STATS_INTERVAL;
+        }
+      }
+    } finally {
+      for (SimulatorClient client : this.clients) {
+        client.close();
+      }
+      server.close();
+      this.selector.close();
+    }
+  }
+
+  private long getSelectTimeout() {
+    if (this.clients.isEmpty()) {
+      return STATS_INTERVAL;
+    }
+    long next = Long.MAX_VALUE;
+    for (SimulatorClient client : this.clients) {
+      next = Math.min(next, client.getNextSonarTime());
+    }
+    // 0 would block without timeout
+    return Math.max(1, next - System.currentTimeMillis());
+  }
+
+  private void accept(ServerSocketChannel server) throws IOException {
+    SocketChannel channel = server.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+    String spec = this.scenarioSpecs[this.acceptedCount
+        % this.scenarioSpecs.length];
+    int id = ++this.acceptedCount;
+    SimulatorClient client = new SimulatorClient(id, channel, key,
+        createScenario(spec, id), getInterval(spec), this.isV2Supported,
+        System.currentTimeMillis());
+    key.attach(client);
+    this.clients.add(client);
+    System.out.println(client + " connected from "
+        + channel.socket().getRemoteSocketAddress() + ", scenario " + spec);
+  }
+
+  private void serve(SelectionKey key) {
+    SimulatorClient client = (SimulatorClient) key.attachment();
+    try {
+      if (key.isValid() && key.isWritable()) {
+        client.flush();
+      }
+      if (key.isValid() && key.isReadable()) {
+        client.read();
+      }
+    } catch (IOException e) {
+      this.close(client, e);
+    }
+  }
+
+  private void close(SimulatorClient client, IOException e) {
+    client.close();
+    this.clients.remove(client);
+    System.out.println(client + " disconnected (" + e.getMessage() + "), "
+        + client.getSonarCount() + " sonar frames, "
+        + client.getCommandCount() + " commands, " + client.getPingCount()
+        + " pings");
+    String summary = client.getScenario().getSummary();
+    if (summary != null) {
+      System.out.println(client + " run: " + summary);
+    }
+  }
+
+  private void printStats() {
+    long dropped = 0;
+    for (SimulatorClient client : this.clients) {
+      dropped += client.getDroppedCount();
+    }
+    System.out.println(this.clients.size() + " clients, "
+        + this.acceptedCount + " accepted, " + dropped + " frames dropped");
+  }
+
+  private static ISonarScenario createScenario(String spec, int clientId) {
+    String[] fields = spec.split(":");
+    if (fields[0].equals("levels")) {
+      return new LevelScenario();
+    } else if (fields[0].equals("approach")) {
+      return new ApproachScenario();
+    } else if (fields[0].equals("random")) {
+      return new RandomScenario(clientId);
+    } else if (fields[0].equals("physics")) {
+      double noise = fields.length > 2 ? Double.parseDouble(fields[2])
+          : DEFAULT_NOISE;
+      return new PhysicsScenario(ShipWorld.createPool(), getInterval(spec),
+          noise, clientId);
+    }
+    throw new IllegalArgumentException("Unknown scenario: " + spec);
+  }
+
+  private static long getInterval(String spec) {
+    String[] fields = spec.split(":");
+    if (fields.length < 2) {
+      return DEFAULT_INTERVAL;
+    }
+    long interval = Long.parseLong(fields[1]);
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Non-positive interval: " + spec);
+    }
+    return interval;
+  }
+
+}
@@ -0,0 +1,145 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import shipremote.ai.DangerLevelAI;
+import shipremote.ai.base.IShipAIDecision;
+import shipremote.ai.base.ShipState;
+import shipremote.ai.filter.SonarFilterChain;
+
+/**
+ * Replays a session through the ControllerCore with the AI enabled, once per
+ * sonar filter, and counts the SPEED and DIRECTION commands the AI sends. The
+ * session is a recorded FrameJournal or, without one, a synthetic approach
+ * with noise and dropouts. For the synthetic session the decisions on the
+ * filtered distances are also compared with the decisions on the noise-free
+ * distances.
+ * 
+ * <pre>
+ * SonarFilterBenchmark [-journal directory] [-filters none;median:5;...]
+ * </pre>
+ */
+public class SonarFilterBenchmark {
+
+  private static final String DEFAULT_FILTERS =
+      "none;median:5;exponential:0.3;kalman:100:8;median:5,kalman:100:8";
+  private static final int SESSION_FRAMES = 3000;
+  private static final long FRAME_INTERVAL = 100000000L;
+  private static final double NOISE = 6;
+  private static final double DROPOUT_RATE = 0.03;
+  private static final int COST_ROUNDS = 1000;
+
+  private final List<long[]> samples = new ArrayList<long[]>();
+  private final List<Integer> truth = new ArrayList<Integer>();
+  private File journal = null;
+  private long checksum = 0;
+
+  /**
+   * @param args
+   *          See the class comment.
+   */
+  public static void main(String[] args) throws Exception {
+    SonarFilterBenchmark benchmark = new SonarFilterBenchmark();
+    String filters = DEFAULT_FILTERS;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-journal")) {
+        benchmark.journal = new File(args[i + 1]);
+      } else if (args[i].equals("-filters")) {
+        filters = args[i + 1];
+      }
+    }
+    benchmark.loadSession();
+    System.out.println((benchmark.journal != null ? "journal "
+        + benchmark.journal : "synthetic session")
+        + ", " + benchmark.samples.size() + " sonar frames");
+    long baseline = -1;
+    for (String spec : filters.split(";")) {
+      // the decisions of the distances alone, the hysteresis of the
+      // DangerLevelAI would hide what the filter saves
+      long commands = SessionReplay.countCommands(benchmark.samples,
+          SessionReplay.createStatelessAI(), SonarFilterChain.parse(spec));
+      if (baseline < 0) {
+        baseline = commands;
+      }
+      StringBuilder line = new StringBuilder();
+      line.append(String.format("%-22s %5d commands, %5.1f%% saved", spec,
+          commands, baseline == 0 ? 0.0 : 100.0 * (baseline - commands)
+              / baseline));
+      if (!benchmark.truth.isEmpty()) {
+        line.append(String.format(", %4d wrong decisions",
+            benchmark.countWrongDecisions(SonarFilterChain.parse(spec))));
+      }
+      line.append(String.format(", %.0f ns/sample", benchmark
+          .measureCost(SonarFilterChain.parse(spec))));
+      System.out.println(line);
+    }
+  }
+
+  private void loadSession() throws Exception {
+    if (this.journal != null) {
+      this.samples.addAll(SessionReplay.loadSonarSamples(this.journal));
+      return;
+    }
+    // an obstacle coming closer and going away again every 30 seconds
+    Random random = new Random(1);
+    for (int i = 0; i < SESSION_FRAMES; i++) {
+      int phase = i % 300;
+      int distance = 250 - 220 * Math.min(phase, 300 - phase) / 150;
+      int measured = (int) Math.round(distance + random.nextGaussian()
+          * NOISE);
+      if (random.nextDouble() < DROPOUT_RATE) {
+        // a lost echo reads as the maximum, a cross talk as 0
+        measured = random.nextBoolean() ? 255 : 0;
+      }
+      this.truth.add(Integer.valueOf(distance));
+      this.samples.add(new long[] { i * FRAME_INTERVAL,
+          Math.max(0, Math.min(255, measured)) });
+    }
+  }
+
+  private int countWrongDecisions(SonarFilterChain filter) {
+    // the decisions of the distances alone, without the hysteresis of the ai
+    DangerLevelAI ai = new DangerLevelAI();
+    ShipState filtered = new ShipState(0, 90, 0, false);
+    ShipState expected = new ShipState(0, 90, 0, false);
+    int wrong = 0;
+    for (int i = 0; i < this.samples.size(); i++) {
+      long[] sample = this.samples.get(i);
+      filtered.setObjectDistance(filter.filter((int) sample[1], sample[0]));
+      expected.setObjectDistance(this.truth.get(i).intValue());
+      IShipAIDecision a = ai.getDecisionByScan(filtered);
+      IShipAIDecision b = ai.getDecisionByScan(expected);
+      if (a.getSpeed() != b.getSpeed()
+          || a.isSpeedBackward() != b.isSpeedBackward()
+          || a.getDirection() != b.getDirection()) {
+        wrong++;
+      }
+    }
+    return wrong;
+  }
+
+  private double measureCost(SonarFilterChain filter) {
+    int size = this.samples.size();
+    int[] values = new int[size];
+    long[] times = new long[size];
+    for (int i = 0; i < size; i++) {
+      times[i] = this.samples.get(i)[0];
+      values[i] = (int) this.samples.get(i)[1];
+    }
+    long start = 0;
+    // the first half warms up
+    for (int round = 0; round < COST_ROUNDS; round++) {
+      if (round == COST_ROUNDS / 2) {
+        start = System.nanoTime();
+      }
+      filter.reset();
+      for (int i = 0; i < size; i++) {
+        this.checksum += filter.filter(values[i], times[i]);
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    return (double) elapsed / ((long) (COST_ROUNDS - COST_ROUNDS / 2) * size);
+  }
+
+}